@@ -0,0 +1,58 @@
+package com.github.alfasgd.salem.benchmarks;
+
+import com.github.alfasgd.salem.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the throughput of the parallel bulk role list generation for different levels of parallelism.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BulkGenerationBenchmark
+{
+    private static final int RoleListCount = 1 << 20;
+
+    @Param({ "1", "2", "4", "8" })
+    public int parallelism;
+
+    private ForkJoinPool pool;
+    private PreparedRoleList preparedRoleList;
+    private long seed;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        pool = new ForkJoinPool(parallelism);
+        preparedRoleList = RoleListFactory.CovenRanked.prepare(GamePackTypes.Coven);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        pool.shutdown();
+    }
+
+    /**
+     * Generates {@value #RoleListCount} role lists, counting the generated ones.
+     */
+    @Benchmark
+    @OperationsPerInvocation(RoleListCount)
+    public long generateBulk()
+    {
+        var generated = new LongAdder();
+        BulkRoleListGenerator.generate(pool, preparedRoleList, RoleListCount, seed++, (index, roles) ->
+        {
+            if (roles != null)
+                generated.increment();
+        });
+        return generated.sum();
+    }
+}
@@ -0,0 +1,54 @@
+package com.github.alfasgd.salem.benchmarks;
+
+import com.github.alfasgd.salem.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * Compares the random number generator algorithms on the role list generation hot path, both through the validating
+ * {@link RoleListGenerator} path and through a {@link PreparedRoleList}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RandomGeneratorBenchmark
+{
+    @Param({ "Random", "SplittableRandom", "ThreadLocalRandom", "L32X64MixRandom", "L64X128MixRandom", "Xoroshiro128PlusPlus", "Xoshiro256PlusPlus" })
+    public String algorithm;
+
+    private RoleList roleList;
+    private PreparedRoleList preparedRoleList;
+    private RoleListGenerator generator;
+    private RoleSlot[] destination;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        roleList = RoleListFactory.CovenRanked;
+        preparedRoleList = roleList.prepare(GamePackTypes.Coven);
+        destination = new RoleSlot[roleList.getRoleSlots().length];
+
+        if (algorithm.equals("ThreadLocalRandom"))
+            generator = new RoleListGenerator(ThreadLocalRandom.current());
+        else
+            generator = new RoleListGenerator(RandomGeneratorFactory.of(algorithm).create(0));
+    }
+
+    @Benchmark
+    public boolean generate()
+    {
+        return generator.generate(roleList, GamePackTypes.Coven, destination);
+    }
+
+    @Benchmark
+    public boolean generatePrepared()
+    {
+        return generator.generate(preparedRoleList, destination);
+    }
+}
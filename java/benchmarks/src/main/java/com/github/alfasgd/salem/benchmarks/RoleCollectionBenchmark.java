@@ -0,0 +1,63 @@
+package com.github.alfasgd.salem.benchmarks;
+
+import com.github.alfasgd.salem.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the queries, copying and mutation of {@link RoleCollection} instances.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RoleCollectionBenchmark
+{
+    @Param({ "TownInvestigative", "MafiaAny", "NeutralKilling", "Any" })
+    public String alignment;
+
+    @Param({ "Town", "Neutral" })
+    public Faction faction;
+
+    private RoleAlignment roleAlignment;
+    private RoleCollection collection;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException
+    {
+        roleAlignment = (RoleAlignment)RoleAlignment.class.getField(alignment).get(null);
+        collection = RoleCollection.getAllAvailableRolesCollection();
+    }
+
+    @Benchmark
+    public Class<? extends Role>[] getByAlignment()
+    {
+        return collection.get(roleAlignment);
+    }
+
+    @Benchmark
+    public Class<? extends Role>[] getByFaction()
+    {
+        return collection.get(faction);
+    }
+
+    @Benchmark
+    public RoleCollection copy()
+    {
+        return new RoleCollection(collection);
+    }
+
+    @Benchmark
+    public RoleCollection mutate()
+    {
+        var copy = new RoleCollection(collection);
+        copy.remove(Jailor.class);
+        copy.clearFaction(faction);
+        copy.clearAlignment(roleAlignment);
+        copy.add(Jailor.class);
+        return copy;
+    }
+}
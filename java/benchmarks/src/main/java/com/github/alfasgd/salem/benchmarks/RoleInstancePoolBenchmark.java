@@ -0,0 +1,54 @@
+package com.github.alfasgd.salem.benchmarks;
+
+import com.github.alfasgd.salem.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the role type lookups of the {@link RoleInstancePool} and the formatting of the role names.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RoleInstancePoolBenchmark
+{
+    private RoleInstancePool pool;
+    private Role role;
+    private int roleId;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        pool = RoleInstancePool.getInstance();
+        role = pool.getInstance(Investigator.class);
+        roleId = pool.getRoleId(Investigator.class);
+    }
+
+    @Benchmark
+    public Role getInstanceByType()
+    {
+        return pool.getInstance(Investigator.class);
+    }
+
+    @Benchmark
+    public Role getInstanceById()
+    {
+        return pool.getInstance(roleId);
+    }
+
+    @Benchmark
+    public int getRoleId()
+    {
+        return pool.getRoleId(Investigator.class);
+    }
+
+    @Benchmark
+    public String getRoleName()
+    {
+        return role.getRoleName();
+    }
+}
@@ -0,0 +1,115 @@
+package com.github.alfasgd.salem.benchmarks;
+
+import com.github.alfasgd.salem.*;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the exact role probability and faction composition calculations of the presets that are valid in the Coven
+ * game pack. The {@code Mixed} and {@code MixedCustom} parameters measure random role lists of 15 slots that mix the
+ * wildcard slots of every alignment, the latter with registered custom roles whose maximum occurrences are low. Every
+ * invocation calculates all the role lists of the parameter, so the time of these two is the one of the whole mix of
+ * {@value #MixedRoleListCount} role lists.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RoleListAnalysisBenchmark
+{
+    private static final int MixedRoleListCount = 100;
+    private static final String CustomRoles = """
+            Watchman | Town Investigative
+            Vigilante Captain | Town Killing | unique, promotes=Jailor
+            Warden | Town Protective | max=3
+            Smuggler | Mafia Support | max=2
+            Cutthroat | Mafia Killing | max=2
+            Hag | Coven Evil | unique
+            Witch Doctor | Neutral Evil | max=2
+            Drifter | Neutral Benign
+            """;
+    private static final RoleAlignment[] Alignments = { RoleAlignment.Any, RoleAlignment.TownAny, RoleAlignment.MafiaAny,
+            RoleAlignment.CovenAny, RoleAlignment.NeutralAny, RoleAlignment.TownInvestigative, RoleAlignment.TownKilling,
+            RoleAlignment.TownProtective, RoleAlignment.TownSupport, RoleAlignment.MafiaDeception, RoleAlignment.MafiaKilling,
+            RoleAlignment.MafiaSupport, RoleAlignment.CovenEvil, RoleAlignment.NeutralBenign, RoleAlignment.NeutralKilling,
+            RoleAlignment.NeutralEvil, RoleAlignment.NeutralChaos };
+
+    @Param({ "CovenClassic", "CovenRanked", "MafiaReturns", "CovenVIP", "CovenLovers", "CovenTownTraitor", "Mixed",
+             "MixedCustom" })
+    public String preset;
+
+    private RoleList[] roleLists;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException, IOException
+    {
+        if (preset.equals("MixedCustom"))
+            RoleInstancePool.getInstance().register(CustomRoleLoader.load(new StringReader(CustomRoles)));
+
+        if (preset.startsWith("Mixed"))
+            roleLists = generateMixedRoleLists();
+        else
+            roleLists = new RoleList[] { (RoleList)RoleListFactory.class.getField(preset).get(null) };
+    }
+
+    /**
+     * Generates random role lists that are valid in the Coven game pack and can be analyzed exactly. A third of the
+     * wildcard slots are {@link RoleAlignment#Any} or faction-wide, which are the slots that share the most roles.
+     */
+    private static RoleList[] generateMixedRoleLists()
+    {
+        var roles = RoleCollection.getStartableRolesCollection(GamePackTypes.Coven).getRoles().toArray(new Role[0]);
+        var random = new Random(0);
+        var result = new ArrayList<RoleList>();
+        while (result.size() < MixedRoleListCount)
+        {
+            var slots = new RoleSlot[15];
+            for (int i = 0; i < slots.length; i++)
+            {
+                if (random.nextInt(10) == 0)
+                    slots[i] = roles[random.nextInt(roles.length)];
+                else
+                    slots[i] = Alignments[random.nextInt(3) == 0 ? random.nextInt(5) : random.nextInt(Alignments.length)];
+            }
+
+            var roleList = new RoleList(slots);
+            if (!roleList.isValidRoleList(GamePackTypes.Coven))
+                continue;
+
+            try
+            {
+                roleList.calculateProbabilities(GamePackTypes.Coven);
+                roleList.calculateFactionComposition(GamePackTypes.Coven);
+            }
+            catch (IllegalArgumentException e)
+            {
+                // Too many limited roles to be modelled exactly
+                continue;
+            }
+            result.add(roleList);
+        }
+        return result.toArray(new RoleList[0]);
+    }
+
+    @Benchmark
+    public void calculateProbabilities(Blackhole blackhole)
+    {
+        for (var roleList : roleLists)
+            blackhole.consume(roleList.calculateProbabilities(GamePackTypes.Coven));
+    }
+
+    @Benchmark
+    public void calculateFactionComposition(Blackhole blackhole)
+    {
+        for (var roleList : roleLists)
+            blackhole.consume(roleList.calculateFactionComposition(GamePackTypes.Coven));
+    }
+}
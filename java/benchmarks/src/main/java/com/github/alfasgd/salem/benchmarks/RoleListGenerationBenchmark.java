@@ -0,0 +1,73 @@
+package com.github.alfasgd.salem.benchmarks;
+
+import com.github.alfasgd.salem.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the generation and validation of every {@link RoleListFactory} preset for every game pack type. Presets
+ * that are invalid for a game pack type measure the cost of rejecting them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RoleListGenerationBenchmark
+{
+    @Param({ "AllAny", "Classic", "ClassicRanked", "Rainbow", "DraculasPalace", "TownTraitor", "CovenClassic",
+             "CovenRanked", "MafiaReturns", "CovenVIP", "CovenLovers", "CovenTownTraitor" })
+    public String preset;
+
+    @Param({ "Classic", "Coven", "All" })
+    public GamePackTypes packTypes;
+
+    private RoleList roleList;
+    private RoleCollection availableRoles;
+    private RoleListGenerator generator;
+    private RoleSlot[] destination;
+
+    @Setup(Level.Trial)
+    public void setup() throws ReflectiveOperationException
+    {
+        roleList = (RoleList)RoleListFactory.class.getField(preset).get(null);
+        availableRoles = RoleCollection.getStartableRolesCollection(packTypes);
+        generator = new RoleListGenerator(0);
+        destination = new RoleSlot[roleList.size()];
+    }
+
+    @Benchmark
+    public RoleList generateRandomRoleList()
+    {
+        return roleList.generateRandomRoleList(packTypes);
+    }
+
+    @Benchmark
+    public RoleList generateRandomRoleListSeeded()
+    {
+        return roleList.generateRandomRoleList(availableRoles, generator);
+    }
+
+    /**
+     * Generates into a reused destination, which should not allocate; run with {@code -prof gc} to measure it.
+     */
+    @Benchmark
+    public boolean generateIntoDestination()
+    {
+        return generator.generate(roleList, availableRoles, destination);
+    }
+
+    @Benchmark
+    public RoleList generateConstrainedRoleList()
+    {
+        return roleList.generateConstrainedRoleList(availableRoles, generator);
+    }
+
+    @Benchmark
+    public boolean isValidRoleList()
+    {
+        return roleList.isValidRoleList(packTypes);
+    }
+}
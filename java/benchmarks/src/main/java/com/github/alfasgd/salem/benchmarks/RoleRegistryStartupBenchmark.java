@@ -0,0 +1,73 @@
+package com.github.alfasgd.salem.benchmarks;
+
+import com.github.alfasgd.salem.Role;
+import org.openjdk.jmh.annotations.*;
+import org.reflections.Reflections;
+import org.reflections.util.ClasspathHelper;
+import org.reflections.util.ConfigurationBuilder;
+import org.reflections.util.FilterBuilder;
+
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cold initialization of the role instance pool. Every invocation loads the library in a fresh class
+ * loader, so that the class loading and the static initialization are measured rather than a warmed up lookup.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 50)
+@Fork(3)
+@State(Scope.Benchmark)
+public class RoleRegistryStartupBenchmark
+{
+    private static final String RolePackage = "com.github.alfasgd.salem";
+
+    private URL[] classPath;
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        classPath = new URL[] { Role.class.getProtectionDomain().getCodeSource().getLocation() };
+    }
+
+    /**
+     * Initializes the role instance pool from the generated role table.
+     */
+    @Benchmark
+    public Object generatedRoleTable() throws Exception
+    {
+        try (var loader = new URLClassLoader(classPath, ClassLoader.getPlatformClassLoader()))
+        {
+            var poolType = Class.forName(RolePackage + ".RoleInstancePool", true, loader);
+            return poolType.getMethod("getInstance").invoke(null);
+        }
+    }
+
+    /**
+     * Initializes the role instances the way the pool used to, by scanning the classpath for the role subtypes and
+     * invoking their parameterless constructors reflectively.
+     */
+    @Benchmark
+    public Object reflectionsClasspathScan() throws Exception
+    {
+        try (var loader = new URLClassLoader(classPath, ClassLoader.getPlatformClassLoader()))
+        {
+            var roleType = Class.forName(RolePackage + ".Role", true, loader);
+            var reflections = new Reflections(new ConfigurationBuilder()
+                    .setUrls(ClasspathHelper.forPackage(RolePackage, loader))
+                    .filterInputsBy(new FilterBuilder().includePackage(RolePackage))
+                    .addClassLoader(loader));
+
+            var instances = new ArrayList<Object>();
+            for (var type : reflections.getSubTypesOf((Class<Object>)roleType))
+                if ((type.getModifiers() & Modifier.FINAL) != 0)
+                    instances.add(type.getConstructor().newInstance());
+            return instances;
+        }
+    }
+}
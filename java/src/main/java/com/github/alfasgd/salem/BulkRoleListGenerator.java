@@ -0,0 +1,146 @@
+package com.github.alfasgd.salem;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.random.RandomGenerator.SplittableGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * Generates large numbers of random role lists out of a {@link PreparedRoleList} in parallel. The work is split into
+ * fixed-size chunks, and every chunk is given a random number generator that is split off the root generator in
+ * an order that only depends on the number of role lists. Therefore, the generated role lists for a given root seed are
+ * identical regardless of the number of available cores.
+ */
+public final class BulkRoleListGenerator
+{
+    /**
+     * The number of role lists that are generated sequentially by a single task.
+     */
+    public static final int ChunkSize = 1024;
+    /**
+     * The name of the splittable random number generator algorithm that is used when only a root seed is provided.
+     */
+    public static final String DefaultAlgorithm = "L64X128MixRandom";
+
+    private BulkRoleListGenerator() { }
+
+    /**
+     * Generates the given number of random role lists in parallel on the common fork-join pool, and passes them to the
+     * given sink.
+     * @param preparedRoleList The prepared role list to generate role lists out of.
+     * @param count The number of role lists to generate.
+     * @param seed The root seed of the generation.
+     * @param sink The sink to pass the generated role lists to. It is called concurrently.
+     */
+    public static void generate(PreparedRoleList preparedRoleList, long count, long seed, RoleListSink sink)
+    {
+        generate(ForkJoinPool.commonPool(), preparedRoleList, count, seed, sink);
+    }
+    /**
+     * Generates the given number of random role lists in parallel on the given fork-join pool, and passes them to the
+     * given sink.
+     * @param pool The fork-join pool to generate the role lists on.
+     * @param preparedRoleList The prepared role list to generate role lists out of.
+     * @param count The number of role lists to generate.
+     * @param seed The root seed of the generation.
+     * @param sink The sink to pass the generated role lists to. It is called concurrently.
+     */
+    public static void generate(ForkJoinPool pool, PreparedRoleList preparedRoleList, long count, long seed, RoleListSink sink)
+    {
+        generate(pool, preparedRoleList, count, createRootGenerator(seed), sink);
+    }
+    /**
+     * Generates the given number of random role lists in parallel on the given fork-join pool, and passes them to the
+     * given sink.
+     * @param pool The fork-join pool to generate the role lists on.
+     * @param preparedRoleList The prepared role list to generate role lists out of.
+     * @param count The number of role lists to generate.
+     * @param root The root splittable random number generator, which the generators of the chunks are split off. It is
+     *             consumed by the generation.
+     * @param sink The sink to pass the generated role lists to. It is called concurrently.
+     */
+    public static void generate(ForkJoinPool pool, PreparedRoleList preparedRoleList, long count, SplittableGenerator root, RoleListSink sink)
+    {
+        if (count < 0)
+            throw new IllegalArgumentException("The number of role lists may not be negative.");
+
+        pool.invoke(new GenerationTask(preparedRoleList, 0, count, root, sink));
+    }
+
+    /**
+     * Generates random role lists in parallel on the common fork-join pool, filling the given array.
+     * @param preparedRoleList The prepared role list to generate role lists out of.
+     * @param seed The root seed of the generation.
+     * @param destination The array to store the generated role lists in. An element is {@code null} if its role list
+     *                    could not be generated.
+     */
+    public static void generate(PreparedRoleList preparedRoleList, long seed, RoleList[] destination)
+    {
+        generate(ForkJoinPool.commonPool(), preparedRoleList, seed, destination);
+    }
+    /**
+     * Generates random role lists in parallel on the given fork-join pool, filling the given array.
+     * @param pool The fork-join pool to generate the role lists on.
+     * @param preparedRoleList The prepared role list to generate role lists out of.
+     * @param seed The root seed of the generation.
+     * @param destination The array to store the generated role lists in. An element is {@code null} if its role list
+     *                    could not be generated.
+     */
+    public static void generate(ForkJoinPool pool, PreparedRoleList preparedRoleList, long seed, RoleList[] destination)
+    {
+        generate(pool, preparedRoleList, destination.length, seed, (index, roles) ->
+                destination[(int)index] = roles == null ? null : new RoleList(roles));
+    }
+
+    private static SplittableGenerator createRootGenerator(long seed)
+    {
+        return RandomGeneratorFactory.<SplittableGenerator>of(DefaultAlgorithm).create(seed);
+    }
+
+    private static final class GenerationTask
+        extends RecursiveAction
+    {
+        private final PreparedRoleList preparedRoleList;
+        private final long start;
+        private final long end;
+        private final SplittableGenerator random;
+        private final RoleListSink sink;
+
+        public GenerationTask(PreparedRoleList preparedRoleList, long start, long end, SplittableGenerator random, RoleListSink sink)
+        {
+            this.preparedRoleList = preparedRoleList;
+            this.start = start;
+            this.end = end;
+            this.random = random;
+            this.sink = sink;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if (end - start <= ChunkSize)
+            {
+                generateChunk();
+                return;
+            }
+
+            // The split point only depends on the range, keeping the splitting order independent of the parallelism
+            long chunkCount = (end - start + ChunkSize - 1) / ChunkSize;
+            long middle = start + chunkCount / 2 * ChunkSize;
+            var left = new GenerationTask(preparedRoleList, start, middle, random.split(), sink);
+            var right = new GenerationTask(preparedRoleList, middle, end, random, sink);
+            invokeAll(left, right);
+        }
+
+        private void generateChunk()
+        {
+            var generator = new RoleListGenerator(random);
+            var roles = new RoleSlot[preparedRoleList.getSlotCount()];
+            for (long index = start; index < end; index++)
+            {
+                boolean generated = generator.generate(preparedRoleList, roles);
+                sink.accept(index, generated ? roles : null);
+            }
+        }
+    }
+}
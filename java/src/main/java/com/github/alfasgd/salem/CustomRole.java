@@ -0,0 +1,115 @@
+package com.github.alfasgd.salem;
+
+import java.util.Locale;
+
+/**
+ * Represents a role that is defined by data instead of by its own type, such as the roles that are loaded by
+ * {@link CustomRoleLoader}. Once registered through {@link RoleInstancePool#register(CustomRole)}, a custom role is
+ * given an ID in the {@link RoleTypeTable} and takes part in role collections, role lists and their generation like
+ * any other role.
+ * <p>
+ * Custom roles are identified by their name, ignoring case, since all of them share the {@link CustomRole} type. The
+ * methods that identify roles by their type, such as {@link RoleInstancePool#getInstance(Class)}, do not find custom
+ * roles, and {@link RoleCollection role collections} only expose them through {@link RoleCollection#getRoles()}; their
+ * instances and IDs must be used instead. Instances are immutable.
+ * </p>
+ */
+public final class CustomRole
+    implements Role
+{
+    private final String name;
+    private final RoleAlignment alignment;
+    private final boolean canStartAs;
+    private final boolean unique;
+    private final int maximumOccurrences;
+    private final boolean covenDLCExclusive;
+    private final boolean unavailableInCovenDLC;
+    private final String promotionTargetName;
+
+    /**
+     * Initializes a new instance of the {@link CustomRole} class, for a startable, non-unique role that is available in
+     * every game pack and does not promote.
+     * @param name The name of the role.
+     * @param alignment The full alignment of the role.
+     */
+    public CustomRole(String name, RoleAlignment alignment)
+    {
+        this(name, alignment, true, false, 15, false, false, null);
+    }
+    /**
+     * Initializes a new instance of the {@link CustomRole} class.
+     * @param name The name of the role. Runs of whitespace within it are replaced by a single space.
+     * @param alignment The full alignment of the role. Neither its faction nor its alignment may be {@code Any}.
+     * @param canStartAs Whether a player can start as the role.
+     * @param unique Whether the role is unique.
+     * @param maximumOccurrences The maximum number of occurrences of the role in a role list. It must be 1 if the role
+     *                           is unique.
+     * @param covenDLCExclusive Whether the role is exclusive to the Coven DLC.
+     * @param unavailableInCovenDLC Whether the role is unavailable in the Coven DLC.
+     * @param promotionTargetName The name of the role that the role promotes into, or {@code null} if it does not
+     *                            promote.
+     */
+    public CustomRole(String name, RoleAlignment alignment, boolean canStartAs, boolean unique, int maximumOccurrences,
+                      boolean covenDLCExclusive, boolean unavailableInCovenDLC, String promotionTargetName)
+    {
+        if (name == null || name.isBlank())
+            throw new IllegalArgumentException("The name of the role may not be empty.");
+        if (alignment.roleFaction == Faction.Any || alignment.roleAlignment == Alignment.Any)
+            throw new IllegalArgumentException("The alignment of a role may not be a wildcard.");
+        if (maximumOccurrences < 1 || maximumOccurrences > RoleList.MaximumSlotCount)
+            throw new IllegalArgumentException("The maximum occurrences must range from 1 to " + RoleList.MaximumSlotCount + ".");
+        if (unique && maximumOccurrences != 1)
+            throw new IllegalArgumentException("A unique role may only occur once.");
+        if (covenDLCExclusive && unavailableInCovenDLC)
+            throw new IllegalArgumentException("A role may not be both exclusive to and unavailable in the Coven DLC.");
+
+        this.name = name.strip().replaceAll("\\s+", " ");
+        this.alignment = alignment;
+        this.canStartAs = canStartAs;
+        this.unique = unique;
+        this.maximumOccurrences = maximumOccurrences;
+        this.covenDLCExclusive = covenDLCExclusive;
+        this.unavailableInCovenDLC = unavailableInCovenDLC;
+        this.promotionTargetName = promotionTargetName;
+    }
+
+    @Override
+    public String getRoleName() { return name; }
+
+    @Override
+    public RoleAlignment getFullAlignment() { return alignment; }
+
+    @Override
+    public boolean canStartAs() { return canStartAs; }
+    @Override
+    public boolean isUnique() { return unique; }
+    @Override
+    public int getMaximumOccurrences() { return maximumOccurrences; }
+
+    @Override
+    public boolean canPromote() { return promotionTargetName != null; }
+    /**
+     * Gets the name of the role that this role promotes into, which is resolved against the registered roles.
+     * @return The name of the promotion target, or {@code null} if this role does not promote.
+     */
+    public String getPromotionTargetName() { return promotionTargetName; }
+
+    @Override
+    public boolean covenDLCExclusive() { return covenDLCExclusive; }
+    @Override
+    public boolean unavailableInCovenDLC() { return unavailableInCovenDLC; }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (!(obj instanceof CustomRole))
+            return false;
+
+        return name.equalsIgnoreCase(((CustomRole)obj).name);
+    }
+    @Override
+    public int hashCode() { return name.toLowerCase(Locale.ROOT).hashCode(); }
+
+    @Override
+    public String toString() { return name; }
+}
@@ -0,0 +1,178 @@
+package com.github.alfasgd.salem;
+
+import java.io.BufferedReader;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Loads {@link CustomRole custom roles} from text, one role per line, so that roles may be added without defining
+ * their own types. Every line contains the name of the role, its full alignment and an optional comma-separated list
+ * of attributes, separated by {@code |}, such as {@code Vigilante Captain | Town Killing | unique, promotes=Jailor}.
+ * Empty lines and lines that start with {@code #} are skipped.
+ * <p>
+ * The alignment is named as by {@link RoleAlignment#toString()}, ignoring case. The attributes are:
+ * </p>
+ * <ul>
+ *     <li>{@code unique}: the role is unique</li>
+ *     <li>{@code max=}<i>n</i>: the role occurs at most <i>n</i> times in a role list</li>
+ *     <li>{@code nostart}: a player cannot start as the role</li>
+ *     <li>{@code coven}: the role is exclusive to the Coven DLC</li>
+ *     <li>{@code classic}: the role is unavailable in the Coven DLC</li>
+ *     <li>{@code promotes=}<i>name</i>: the role promotes into the role with the given name</li>
+ * </ul>
+ */
+public final class CustomRoleLoader
+{
+    private CustomRoleLoader() { }
+
+    /**
+     * Loads the custom roles of the given text.
+     * @param reader The reader of the text.
+     * @return The list of the loaded roles, in the order of their definitions.
+     * @throws IOException If reading the text fails, or the text contains an invalid definition.
+     */
+    public static List<CustomRole> load(Reader reader) throws IOException
+    {
+        var result = new ArrayList<CustomRole>();
+        var lines = new BufferedReader(reader);
+        int lineNumber = 0;
+        String line;
+        while ((line = lines.readLine()) != null)
+        {
+            lineNumber++;
+            line = line.strip();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+
+            try
+            {
+                result.add(parseRole(line));
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new IOException("Invalid role definition at line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+        return result;
+    }
+    /**
+     * Loads the custom roles of the given resource.
+     * @param resourceName The name of the resource, as given to {@link ClassLoader#getResourceAsStream(String)}. Its
+     *                     text must be encoded in UTF-8.
+     * @return The list of the loaded roles, in the order of their definitions.
+     * @throws IOException If the resource does not exist, reading it fails, or it contains an invalid definition.
+     */
+    public static List<CustomRole> load(String resourceName) throws IOException
+    {
+        var stream = CustomRoleLoader.class.getClassLoader().getResourceAsStream(resourceName);
+        if (stream == null)
+            throw new FileNotFoundException("The resource " + resourceName + " does not exist.");
+
+        try (var reader = new InputStreamReader(stream, StandardCharsets.UTF_8))
+        {
+            return load(reader);
+        }
+    }
+
+    /**
+     * Loads the custom roles of the given resource and registers them in the {@link RoleInstancePool}, as a single new
+     * version of the registry.
+     * @param resourceName The name of the resource, as given to {@link ClassLoader#getResourceAsStream(String)}.
+     * @return The number of the registered roles, which excludes the roles whose names are already registered.
+     * @throws IOException If the resource does not exist, reading it fails, or it contains an invalid definition.
+     */
+    public static int register(String resourceName) throws IOException
+    {
+        return RoleInstancePool.getInstance().register(load(resourceName));
+    }
+
+    private static CustomRole parseRole(String line)
+    {
+        var fields = line.split("\\|", -1);
+        if (fields.length < 2 || fields.length > 3)
+            throw new IllegalArgumentException("Expected a name, an alignment and optional attributes, separated by |.");
+
+        var name = fields[0];
+        var alignment = parseAlignment(fields[1]);
+
+        boolean canStartAs = true;
+        boolean unique = false;
+        int maximumOccurrences = -1;
+        boolean covenDLCExclusive = false;
+        boolean unavailableInCovenDLC = false;
+        String promotionTargetName = null;
+        if (fields.length == 3 && !fields[2].isBlank())
+        {
+            for (var attribute : fields[2].split(","))
+            {
+                attribute = attribute.strip();
+                int separator = attribute.indexOf('=');
+                var key = separator < 0 ? attribute : attribute.substring(0, separator).strip();
+                var value = separator < 0 ? null : attribute.substring(separator + 1).strip();
+                switch (key.toLowerCase(Locale.ROOT))
+                {
+                    case "unique":
+                        unique = true;
+                        break;
+                    case "nostart":
+                        canStartAs = false;
+                        break;
+                    case "coven":
+                        covenDLCExclusive = true;
+                        break;
+                    case "classic":
+                        unavailableInCovenDLC = true;
+                        break;
+                    case "max":
+                        maximumOccurrences = parseMaximumOccurrences(value);
+                        break;
+                    case "promotes":
+                        if (value == null || value.isEmpty())
+                            throw new IllegalArgumentException("Expected the name of the promotion target.");
+                        promotionTargetName = value;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown attribute " + attribute + ".");
+                }
+                if (separator >= 0 != (key.equalsIgnoreCase("max") || key.equalsIgnoreCase("promotes")))
+                    throw new IllegalArgumentException("Unexpected value of the attribute " + key + ".");
+            }
+        }
+
+        if (maximumOccurrences < 0)
+            maximumOccurrences = unique ? 1 : RoleList.MaximumSlotCount;
+
+        return new CustomRole(name, alignment, canStartAs, unique, maximumOccurrences, covenDLCExclusive,
+                unavailableInCovenDLC, promotionTargetName);
+    }
+
+    private static RoleAlignment parseAlignment(String text)
+    {
+        var name = text.strip().replaceAll("\\s+", " ");
+        for (int code = 0; code < RoleAlignment.CodeCount; code++)
+        {
+            var alignment = RoleAlignment.fromCode(code);
+            if (alignment.toString().equalsIgnoreCase(name))
+                return alignment;
+        }
+        throw new IllegalArgumentException("Unknown alignment " + name + ".");
+    }
+
+    private static int parseMaximumOccurrences(String value)
+    {
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IllegalArgumentException("Expected the maximum occurrences to be a number.");
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package com.github.alfasgd.salem;
+
+import com.github.alfasgd.salem.common.*;
+
+import java.util.Arrays;
+
+/**
+ * Represents the exact joint distribution of the number of Town, Mafia, Coven and Neutral roles, and the number of
+ * killing roles, in the role lists that {@link RoleList#generateRandomRoleList(RoleCollection)} generates out of a role
+ * list. A role is considered a killing role if its alignment is {@link Alignment#Killing}. The distribution is
+ * conditioned on the generation succeeding; the probability of a slot running out of roles is given by
+ * {@link #getFailureProbability()}.
+ * <p>
+ * The distribution is calculated by convolving the slots of the role list one by one, jointly with the state of the
+ * generation, i.e. the occurrences of the limited roles, which also bound the number of roles of every faction. The
+ * wildcard slots that match the same roles whose occurrences are not tracked, such as the {@link RoleAlignment#Any}
+ * slots, only count how many of these roles they pick, and the compositions of the picks are added at the end.
+ * </p>
+ * <p>
+ * The cost grows with the number of the reachable states. Among the built-in roles only the unique ones are tracked,
+ * so their role lists take well under a millisecond on average, and tens of milliseconds at most, even when they mix
+ * many wildcard slots of different alignments. Wildcard slots that match registered roles whose maximum occurrences
+ * are low but above 1 also track how many of these roles have been chosen once, twice and so on, and role lists that
+ * mix many such slots may take up to a second.
+ * </p>
+ */
+public final class FactionCompositionDistribution
+{
+    private static final int CountBits = 4;
+    private static final int CountMask = (1 << CountBits) - 1;
+    private static final int KillingShift = (Faction.values().length - 1) * CountBits;
+    private static final int CompositionBitCount = KillingShift + CountBits;
+
+    private final int slotCount;
+    private final int[] compositions;
+    private final double[] probabilities;
+    private final double failureProbability;
+
+    private FactionCompositionDistribution(int slotCount, int[] compositions, double[] probabilities, double failureProbability)
+    {
+        this.slotCount = slotCount;
+        this.compositions = compositions;
+        this.probabilities = probabilities;
+        this.failureProbability = failureProbability;
+    }
+
+    /**
+     * Calculates the faction composition distribution of the given role list for the roles that are available in the
+     * given game pack types.
+     * @param roleList The role list.
+     * @param packTypes The game pack types where the role list is applied on.
+     * @return The faction composition distribution, or {@code null} if the role list is invalid.
+     * @throws IllegalArgumentException If the role list has too many wildcard slots that match roles with low maximum
+     *                                  occurrences for its generation to be modelled exactly. The built-in roles never
+     *                                  exceed this limit.
+     */
+    public static FactionCompositionDistribution calculate(RoleList roleList, GamePackTypes packTypes)
+    {
+        return calculate(roleList, RoleCollection.getStartableRolesCollection(packTypes));
+    }
+    /**
+     * Calculates the faction composition distribution of the given role list for the given available roles.
+     * @param roleList The role list.
+     * @param availableRoles The available roles collection.
+     * @return The faction composition distribution, or {@code null} if the role list is invalid.
+     * @throws IllegalArgumentException If the role list has too many wildcard slots that match roles with low maximum
+     *                                  occurrences for its generation to be modelled exactly. The built-in roles never
+     *                                  exceed this limit.
+     */
+    public static FactionCompositionDistribution calculate(RoleList roleList, RoleCollection availableRoles)
+    {
+        // Only the roles that contribute differently to the composition need to be told apart
+        var table = RoleInstancePool.getInstance().getRoleTypeTable();
+        var roleCategories = new int[table.getRoleCount()];
+        for (int id = 0; id < roleCategories.length; id++)
+            roleCategories[id] = (int)getCompositionIncrement(table.getRole(id));
+
+        var model = RoleListGenerationModel.create(roleList, availableRoles.getRoleMask(), roleCategories, -1, CompositionBitCount);
+        if (model == null)
+            return null;
+
+        long fixedComposition = 0;
+        for (var slot : model.getSlots())
+            if (slot instanceof Role)
+                fixedComposition += getCompositionIncrement((Role)slot);
+
+        var groupIncrements = new long[model.getGroupCount()];
+        for (int group = 0; group < groupIncrements.length; group++)
+            groupIncrements[group] = getCompositionIncrement(table.getRole(Long.numberOfTrailingZeros(model.getGroupMask(group))));
+
+        int steps = model.getStepCount();
+        var nextStates = new long[model.getMaximumOutcomeCount()];
+        var outcomeProbabilities = new double[nextStates.length];
+        var outcomeGroups = new int[nextStates.length];
+        var outcomeIncrements = new long[nextStates.length];
+
+        // Whether a slot picks a role of the groups that track no state depends on the state, but which of these groups it
+        // picks does not. The slots that match the same such groups of different categories are therefore pooled, and only
+        // the number of their picks of these groups is tracked, whose compositions are added after the last slot
+        var stepPools = new int[steps];
+        var poolGroupMasks = new long[steps];
+        var poolSizes = new int[steps];
+        var poolDistributions = new LongDoubleHashMap[steps];
+        int poolCount = 0;
+        for (int step = 0; step < steps; step++)
+        {
+            stepPools[step] = -1;
+            int outcomes = model.expand(0, step, nextStates, outcomeProbabilities, outcomeGroups);
+            long groupMask = 0;
+            boolean mixed = false;
+            for (int outcome = 0; outcome < outcomes; outcome++)
+            {
+                int group = outcomeGroups[outcome];
+                if (model.isGroupLimited(group))
+                    continue;
+
+                if (groupMask != 0 && groupIncrements[group] != groupIncrements[Long.numberOfTrailingZeros(groupMask)])
+                    mixed = true;
+                groupMask |= 1L << group;
+            }
+            if (!mixed)
+                continue;
+
+            int pool = 0;
+            while (pool < poolCount && poolGroupMasks[pool] != groupMask)
+                pool++;
+            if (pool == poolCount)
+            {
+                double poolProbability = 0;
+                for (int outcome = 0; outcome < outcomes; outcome++)
+                    if (!model.isGroupLimited(outcomeGroups[outcome]))
+                        poolProbability += outcomeProbabilities[outcome];
+
+                var distribution = new LongDoubleHashMap();
+                for (int outcome = 0; outcome < outcomes; outcome++)
+                    if (!model.isGroupLimited(outcomeGroups[outcome]))
+                        distribution.add(groupIncrements[outcomeGroups[outcome]], outcomeProbabilities[outcome] / poolProbability);
+
+                poolGroupMasks[pool] = groupMask;
+                poolDistributions[pool] = distribution;
+                poolCount++;
+            }
+            poolSizes[pool]++;
+            stepPools[step] = pool;
+        }
+
+        // The pools whose counts do not fit next to the state and the composition are left out
+        var poolShifts = new int[poolCount];
+        int stateShift = CompositionBitCount;
+        for (int pool = 0; pool < poolCount; pool++)
+        {
+            int bits = Integer.SIZE - Integer.numberOfLeadingZeros(poolSizes[pool]);
+            if (stateShift + bits + model.getStateBitCount() > Long.SIZE)
+            {
+                poolShifts[pool] = -1;
+                continue;
+            }
+
+            poolShifts[pool] = stateShift;
+            stateShift += bits;
+        }
+        long lowMask = -1L >>> (Long.SIZE - stateShift);
+
+        var current = new LongDoubleHashMap(1);
+        current.add(fixedComposition, 1);
+        var keys = new long[16];
+        for (int step = 0; step < steps; step++)
+        {
+            int pool = stepPools[step];
+            long poolIncrement = pool < 0 || poolShifts[pool] < 0 ? 0 : 1L << poolShifts[pool];
+
+            // The keys are sorted to bring the entries of every state together, which is then expanded only once
+            int size = current.size();
+            if (keys.length < size)
+                keys = new long[Math.max(size, keys.length * 2)];
+            for (int i = 0, index = 0; i < current.capacity(); i++)
+                if (current.isOccupied(i))
+                    keys[index++] = current.keyAt(i);
+            Arrays.sort(keys, 0, size);
+
+            long liveMask = model.getLiveStateMask(step + 1);
+            var next = new LongDoubleHashMap(size * 2);
+            long expandedState = -1;
+            int outcomes = 0;
+            for (int i = 0; i < size; i++)
+            {
+                long key = keys[i];
+                long state = key >>> stateShift;
+                if (state != expandedState)
+                {
+                    outcomes = model.expand(state, step, nextStates, outcomeProbabilities, outcomeGroups);
+                    outcomes = mergeOutcomes(model, outcomes, nextStates, outcomeProbabilities, outcomeGroups, groupIncrements,
+                            poolIncrement, outcomeIncrements);
+                    expandedState = state;
+                }
+
+                long low = key & lowMask;
+                double probability = current.get(key, 0);
+                for (int outcome = 0; outcome < outcomes; outcome++)
+                {
+                    long nextKey = (nextStates[outcome] & liveMask) << stateShift | (low + outcomeIncrements[outcome]);
+                    next.add(nextKey, probability * outcomeProbabilities[outcome]);
+                }
+            }
+            current = next;
+        }
+
+        // Merge the final states, and replace the counts of the pools by the compositions of their picks
+        var merged = new LongDoubleHashMap(current.size());
+        double successProbability = 0;
+        for (int i = 0; i < current.capacity(); i++)
+        {
+            if (!current.isOccupied(i))
+                continue;
+
+            merged.add(current.keyAt(i) & lowMask, current.valueAt(i));
+            successProbability += current.valueAt(i);
+        }
+
+        for (int pool = 0; pool < poolCount; pool++)
+        {
+            if (poolShifts[pool] < 0)
+                continue;
+
+            var powers = new LongDoubleHashMap[poolSizes[pool] + 1];
+            powers[0] = new LongDoubleHashMap(1);
+            powers[0].add(0, 1);
+            for (int count = 1; count < powers.length; count++)
+                powers[count] = convolve(powers[count - 1], poolDistributions[pool]);
+
+            int bits = Integer.SIZE - Integer.numberOfLeadingZeros(poolSizes[pool]);
+            long countMask = ((1L << bits) - 1) << poolShifts[pool];
+            var expanded = new LongDoubleHashMap(merged.size());
+            for (int i = 0; i < merged.capacity(); i++)
+            {
+                if (!merged.isOccupied(i))
+                    continue;
+
+                long key = merged.keyAt(i);
+                var picks = powers[(int)((key & countMask) >>> poolShifts[pool])];
+                for (int j = 0; j < picks.capacity(); j++)
+                    if (picks.isOccupied(j))
+                        expanded.add((key & ~countMask) + picks.keyAt(j), merged.valueAt(i) * picks.valueAt(j));
+            }
+            merged = expanded;
+        }
+
+        var compositions = new int[merged.size()];
+        for (int i = 0, index = 0; i < merged.capacity(); i++)
+            if (merged.isOccupied(i))
+                compositions[index++] = (int)merged.keyAt(i);
+        Arrays.sort(compositions);
+
+        var probabilities = new double[compositions.length];
+        for (int i = 0; i < compositions.length; i++)
+            probabilities[i] = merged.get(compositions[i], 0) / successProbability;
+
+        return new FactionCompositionDistribution(model.getSlots().length, compositions, probabilities,
+                Math.max(0, 1 - successProbability));
+    }
+
+    /**
+     * Merges the outcomes of a step that pick the groups that track no state, which all leave the state unchanged. Their
+     * key increments are their compositions, which are the same unless the step is pooled, or the pool increment.
+     * @param model The model of the generation.
+     * @param count The number of outcomes.
+     * @param nextStates The states of the outcomes, which are compacted along with the probabilities.
+     * @param probabilities The probabilities of the outcomes.
+     * @param groups The groups of the chosen roles.
+     * @param groupIncrements The composition increments of the groups.
+     * @param poolIncrement The key increment of a pick of a group that tracks no state, or 0 if the step is not pooled.
+     * @param increments The array to store the key increments of the merged outcomes in.
+     * @return The number of merged outcomes.
+     */
+    private static int mergeOutcomes(RoleListGenerationModel model, int count, long[] nextStates, double[] probabilities, int[] groups,
+                                     long[] groupIncrements, long poolIncrement, long[] increments)
+    {
+        int merged = 0;
+        int untracked = -1;
+        for (int outcome = 0; outcome < count; outcome++)
+        {
+            int group = groups[outcome];
+            boolean limited = model.isGroupLimited(group);
+            long increment = poolIncrement != 0 && !limited ? poolIncrement : groupIncrements[group];
+            if (!limited)
+            {
+                if (untracked >= 0 && increments[untracked] == increment)
+                {
+                    probabilities[untracked] += probabilities[outcome];
+                    continue;
+                }
+                if (untracked < 0)
+                    untracked = merged;
+            }
+
+            nextStates[merged] = nextStates[outcome];
+            probabilities[merged] = probabilities[outcome];
+            increments[merged] = increment;
+            merged++;
+        }
+        return merged;
+    }
+
+    private static LongDoubleHashMap convolve(LongDoubleHashMap first, LongDoubleHashMap second)
+    {
+        var result = new LongDoubleHashMap(first.size() * second.size());
+        for (int i = 0; i < first.capacity(); i++)
+        {
+            if (!first.isOccupied(i))
+                continue;
+
+            for (int j = 0; j < second.capacity(); j++)
+                if (second.isOccupied(j))
+                    result.add(first.keyAt(i) + second.keyAt(j), first.valueAt(i) * second.valueAt(j));
+        }
+        return result;
+    }
+
+    private static long getCompositionIncrement(Role role)
+    {
+        long increment = 1L << getFactionShift(role.getFaction());
+        if (role.getAlignment() == Alignment.Killing)
+            increment += 1L << KillingShift;
+        return increment;
+    }
+    private static int getFactionShift(Faction faction) { return (faction.ordinal() - 1) * CountBits; }
+
+    /**
+     * Gets the number of the distinct compositions that have a non-zero probability.
+     * @return The number of the distinct compositions.
+     */
+    public int size() { return compositions.length; }
+
+    /**
+     * Gets the number of roles of the given faction in the composition with the given index.
+     * @param index The index of the composition, ranging from 0 (inclusive) to {@link #size()} (exclusive).
+     * @param faction The faction. It may not be {@link Faction#Any}.
+     * @return The number of roles of the faction in the composition.
+     */
+    public int getFactionCount(int index, Faction faction) { return (compositions[index] >>> getFactionShift(faction)) & CountMask; }
+    /**
+     * Gets the number of killing roles in the composition with the given index.
+     * @param index The index of the composition, ranging from 0 (inclusive) to {@link #size()} (exclusive).
+     * @return The number of killing roles in the composition.
+     */
+    public int getKillingCount(int index) { return (compositions[index] >>> KillingShift) & CountMask; }
+    /**
+     * Gets the probability of the composition with the given index.
+     * @param index The index of the composition, ranging from 0 (inclusive) to {@link #size()} (exclusive).
+     * @return The probability of the composition.
+     */
+    public double getProbability(int index) { return probabilities[index]; }
+
+    /**
+     * Gets the probability of a generated role list having exactly the given composition.
+     * @param town The number of Town roles.
+     * @param mafia The number of Mafia roles.
+     * @param coven The number of Coven roles.
+     * @param neutral The number of Neutral roles.
+     * @param killing The number of killing roles.
+     * @return The probability of the composition.
+     */
+    public double getProbability(int town, int mafia, int coven, int neutral, int killing)
+    {
+        if ((town | mafia | coven | neutral | killing) < 0 || town + mafia + coven + neutral != slotCount || killing > slotCount)
+            return 0;
+
+        int composition = town << getFactionShift(Faction.Town)
+                | mafia << getFactionShift(Faction.Mafia)
+                | coven << getFactionShift(Faction.Coven)
+                | neutral << getFactionShift(Faction.Neutral)
+                | killing << KillingShift;
+        int index = Arrays.binarySearch(compositions, composition);
+        return index < 0 ? 0 : probabilities[index];
+    }
+
+    /**
+     * Gets the marginal distribution of the number of roles of the given faction.
+     * @param faction The faction. It may not be {@link Faction#Any}.
+     * @return The array of the probabilities of every number of roles of the faction, ranging from 0 to the number of
+     *         slots.
+     */
+    public double[] getFactionCountDistribution(Faction faction)
+    {
+        var distribution = new double[slotCount + 1];
+        for (int i = 0; i < compositions.length; i++)
+            distribution[getFactionCount(i, faction)] += probabilities[i];
+        return distribution;
+    }
+    /**
+     * Gets the marginal distribution of the number of killing roles.
+     * @return The array of the probabilities of every number of killing roles, ranging from 0 to the number of slots.
+     */
+    public double[] getKillingCountDistribution()
+    {
+        var distribution = new double[slotCount + 1];
+        for (int i = 0; i < compositions.length; i++)
+            distribution[getKillingCount(i)] += probabilities[i];
+        return distribution;
+    }
+
+    /**
+     * Gets the probability that the generation fails, because a wildcard slot is reached after all the roles that
+     * match it have reached their maximum occurrences.
+     * @return The probability that the generation fails.
+     */
+    public double getFailureProbability() { return failureProbability; }
+}
@@ -0,0 +1,255 @@
+package com.github.alfasgd.salem;
+
+import com.github.alfasgd.salem.common.*;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Represents a role list that has been validated against a collection of available roles and compiled into a sampling
+ * plan. The plan stores the candidate roles of every slot, and orders the slots from the most to the least constrained
+ * one, i.e. fixed roles, specific alignments, faction-wide wildcards and finally {@link RoleAlignment#Any}, so that the
+ * scarce roles are given to the slots that need them first. Sampling a concrete role list out of the plan does not
+ * repeat any of the preparation work. Instances are immutable and may be shared across threads.
+ */
+public final class PreparedRoleList
+{
+    private final RoleList roleList;
+    private final RoleTypeTable table;
+
+    private final byte[] slotOrder;
+    private final long[] slotCandidates;
+    private final int fixedSlotCount;
+
+    private final long initialAvailableRolesMask;
+    private final byte[] initialRemainingOccurrences;
+    private final int[] factionCapacities;
+
+    private PreparedRoleList(RoleList roleList, RoleTypeTable table, int[] remainingOccurrences, int[] remainingFactionSlots)
+    {
+        this.roleList = roleList;
+        this.table = table;
+
+        var slots = roleList.getRoleSlotsArray();
+        int slotCount = slots.length;
+
+        initialRemainingOccurrences = new byte[table.getRoleCount()];
+        long availableMask = 0;
+        for (int id = 0; id < initialRemainingOccurrences.length; id++)
+        {
+            initialRemainingOccurrences[id] = (byte)Math.min(remainingOccurrences[id], slotCount);
+            if (remainingOccurrences[id] > 0)
+                availableMask |= 1L << id;
+        }
+        initialAvailableRolesMask = availableMask;
+        factionCapacities = ArrayUtils.copyOf(remainingFactionSlots);
+
+        var order = new Integer[slotCount];
+        var candidates = new long[slotCount];
+        var ranks = new int[slotCount];
+        int fixedCount = 0;
+        for (int i = 0; i < slotCount; i++)
+        {
+            order[i] = i;
+            var slot = slots[i];
+            if (slot instanceof Role)
+            {
+                int id = table.getRoleId((Role)slot);
+                candidates[i] = 1L << id;
+                fixedCount++;
+                continue;
+            }
+
+            var alignment = (RoleAlignment)slot;
+            candidates[i] = availableMask & table.getAlignmentFilterMask(alignment);
+            ranks[i] = getConstraintRank(alignment);
+        }
+        fixedSlotCount = fixedCount;
+
+        Arrays.sort(order, (a, b) ->
+        {
+            int rankComparison = Integer.compare(ranks[a], ranks[b]);
+            if (rankComparison != 0)
+                return rankComparison;
+            return Integer.compare(Long.bitCount(candidates[a]), Long.bitCount(candidates[b]));
+        });
+
+        slotOrder = new byte[slotCount];
+        slotCandidates = new long[slotCount];
+        for (int i = 0; i < slotCount; i++)
+        {
+            slotOrder[i] = (byte)(int)order[i];
+            slotCandidates[i] = candidates[order[i]];
+        }
+    }
+
+    /**
+     * Prepares the given role list for the roles that are available in the given game pack types.
+     * @param roleList The role list to prepare.
+     * @param packTypes The game pack types where the role list is applied on.
+     * @return The prepared role list if the role list is valid, otherwise {@code null}.
+     */
+    public static PreparedRoleList prepare(RoleList roleList, GamePackTypes packTypes)
+    {
+        return prepare(roleList, RoleCollection.getStartableRolesCollection(packTypes));
+    }
+    /**
+     * Prepares the given role list for the given available roles.
+     * @param roleList The role list to prepare.
+     * @param availableRoles The available roles collection.
+     * @return The prepared role list if the role list is valid, otherwise {@code null}.
+     */
+    public static PreparedRoleList prepare(RoleList roleList, RoleCollection availableRoles)
+    {
+        var table = RoleInstancePool.getInstance().getRoleTypeTable();
+        var remainingOccurrences = new int[table.getRoleCount()];
+        var remainingFactionSlots = new int[Faction.values().length];
+        if (!RoleList.validateRoleList(roleList.getRoleSlotsArray(), table, availableRoles.getRoleMask(),
+                remainingOccurrences, remainingFactionSlots, new RoleListFeasibility()))
+            return null;
+
+        return new PreparedRoleList(roleList, table, remainingOccurrences, remainingFactionSlots);
+    }
+    /**
+     * Prepares the given role list, which is already known to be valid.
+     * @param roleList The valid role list to prepare.
+     * @param table The role type table that the role IDs refer to.
+     * @param remainingOccurrences The remaining occurrences of each role after the fixed role slots are filled.
+     * @param remainingFactionSlots The remaining slots of each faction after all the role slots are counted.
+     * @return The prepared role list.
+     */
+    static PreparedRoleList create(RoleList roleList, RoleTypeTable table, int[] remainingOccurrences, int[] remainingFactionSlots)
+    {
+        return new PreparedRoleList(roleList, table, remainingOccurrences, remainingFactionSlots);
+    }
+
+    private static int getConstraintRank(RoleAlignment alignment)
+    {
+        if (alignment.roleFaction != Faction.Any && alignment.roleAlignment != Alignment.Any)
+            return 1;
+        if (alignment.roleFaction != Faction.Any || alignment.roleAlignment != Alignment.Any)
+            return 2;
+        return 3;
+    }
+
+    /**
+     * Gets the role list that this plan was prepared from.
+     * @return The role list that this plan was prepared from.
+     */
+    public RoleList getRoleList() { return roleList; }
+    /**
+     * Gets the role type table that the role IDs of this plan refer to.
+     * @return The role type table of this plan.
+     */
+    public RoleTypeTable getRoleTypeTable() { return table; }
+    /**
+     * Gets the number of slots in this plan.
+     * @return The number of slots in this plan.
+     */
+    public int getSlotCount() { return slotOrder.length; }
+    /**
+     * Gets the index of the slot in the role list that is filled at the given step of the sampling.
+     * @param step The step of the sampling, ranging from 0 (inclusive) to {@link #getSlotCount()} (exclusive).
+     * @return The index of the slot in the role list.
+     */
+    public int getSlotIndex(int step) { return slotOrder[step]; }
+    /**
+     * Gets the mask of the IDs of the roles that may fill the slot at the given index, before any wildcard is filled.
+     * @param slotIndex The index of the slot in the role list.
+     * @return The mask of the candidate role IDs for the slot.
+     */
+    public long getSlotCandidatesMask(int slotIndex)
+    {
+        for (int step = 0; step < slotOrder.length; step++)
+            if (slotOrder[step] == slotIndex)
+                return slotCandidates[step];
+        throw new IndexOutOfBoundsException(slotIndex);
+    }
+    /**
+     * Gets the number of times that the role with the given ID may still be chosen by the wildcard slots, after the
+     * fixed role slots are filled.
+     * @param id The ID of the role.
+     * @return The remaining occurrences of the role, capped at the number of slots.
+     */
+    public int getRemainingOccurrences(int id) { return initialRemainingOccurrences[id]; }
+    /**
+     * Gets the mask of the IDs of the roles that may still be chosen by the wildcard slots, after the fixed role slots
+     * are filled.
+     * @return The mask of the available role IDs.
+     */
+    public long getAvailableRolesMask() { return initialAvailableRolesMask; }
+    /**
+     * Gets the number of roles of the given faction that may still be placed in the role list, after all the slots
+     * that belong to the faction are filled.
+     * @param faction The faction.
+     * @return The remaining capacity of the faction.
+     */
+    public int getFactionCapacity(Faction faction) { return factionCapacities[faction.ordinal()]; }
+
+    /**
+     * Samples a new concrete role list out of this plan.
+     * @return The sampled role list, or {@code null} if the wildcard slots could not be filled.
+     */
+    public RoleList generateRandomRoleList() { return generateRandomRoleList(new RoleListGenerator()); }
+    /**
+     * Samples a new concrete role list out of this plan, using the given generator's scratch state and random number
+     * generator. Only the resulting role list and its slots array are allocated.
+     * @param generator The generator whose scratch state and random number generator to use.
+     * @return The sampled role list, or {@code null} if the wildcard slots could not be filled.
+     */
+    public RoleList generateRandomRoleList(RoleListGenerator generator)
+    {
+        var destination = new RoleSlot[slotOrder.length];
+        if (!generator.generate(this, destination))
+            return null;
+
+        // The destination array is not shared, so it is not copied again
+        return new RoleList(destination, false);
+    }
+
+    /**
+     * Samples a new concrete role list out of this plan into the given array. This does not allocate.
+     * @param random The random number generator to use.
+     * @param sampleCounts The array counting how many times each role has been sampled, indexed by the role's ID. It
+     *                     must contain only zeroes, and it is reset to zeroes before returning.
+     * @param sampledIds The array that the sampled role IDs are temporarily stored in, with at least as many elements as
+     *                   the slots.
+     * @param destination The array to store the sampled roles in.
+     * @return {@code true} if all the slots were filled, otherwise {@code false}.
+     */
+    boolean sample(RandomGenerator random, int[] sampleCounts, byte[] sampledIds, RoleSlot[] destination)
+    {
+        var slots = roleList.getRoleSlotsArray();
+        for (int step = 0; step < fixedSlotCount; step++)
+        {
+            int slotIndex = slotOrder[step];
+            destination[slotIndex] = slots[slotIndex];
+        }
+
+        boolean filled = true;
+        long available = initialAvailableRolesMask;
+        int step = fixedSlotCount;
+        for (; step < slotOrder.length; step++)
+        {
+            long candidates = available & slotCandidates[step];
+            if (candidates == 0)
+            {
+                filled = false;
+                break;
+            }
+
+            int id = BitUtils.selectBit(candidates, random.nextInt(Long.bitCount(candidates)));
+            destination[slotOrder[step]] = table.getRole(id);
+            sampledIds[step] = (byte)id;
+
+            sampleCounts[id]++;
+            if (sampleCounts[id] >= initialRemainingOccurrences[id])
+                available &= ~(1L << id);
+        }
+
+        for (int i = fixedSlotCount; i < step; i++)
+            sampleCounts[sampledIds[i]] = 0;
+
+        return filled;
+    }
+}
@@ -3,14 +3,18 @@ package com.github.alfasgd.salem;
 import com.github.alfasgd.salem.common.*;
 
 import java.lang.reflect.Modifier;
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 public interface Role
     extends RoleSlot
 {
     public default String getRoleName()
     {
-        return Casing.getCamelCaseWords(getClass().getSimpleName());
+        // The names of the registered roles are computed once by the role type table
+        var pool = RoleInstancePool.getInstance();
+        var table = pool == null ? null : pool.getRoleTypeTable();
+        int id = table == null ? -1 : table.getRoleId(this);
+        return id >= 0 ? table.getRoleName(id) : Casing.getCamelCaseWords(getClass().getSimpleName());
     }
 
     public abstract RoleAlignment getFullAlignment();
@@ -28,7 +32,7 @@ public interface Role
     public default boolean unavailableInCovenDLC() { return false; }
 
     @Override
-    public default Role generateRandomRole(RoleCollection availableRoles, Random random) { return this; }
+    public default Role generateRandomRole(RoleCollection availableRoles, RandomGenerator random) { return this; }
 
     public static <T extends Role> boolean isValidRoleType(Class<T> type)
     {
@@ -1,6 +1,8 @@
 package com.github.alfasgd.salem;
 
-import java.util.Random;
+import com.github.alfasgd.salem.common.*;
+
+import java.util.random.RandomGenerator;
 
 public class RoleAlignment
     implements RoleSlot
@@ -28,10 +30,38 @@ public class RoleAlignment
     public static final RoleAlignment NeutralKilling = new RoleAlignment(Faction.Neutral, Alignment.Killing);
     public static final RoleAlignment NeutralEvil = new RoleAlignment(Faction.Neutral, Alignment.Evil);
     public static final RoleAlignment NeutralChaos = new RoleAlignment(Faction.Neutral, Alignment.Chaos);
-    
+
+    /**
+     * The number of distinct role alignment codes, which is the number of all the combinations of a {@link Faction}
+     * and an {@link Alignment}.
+     */
+    public static final int CodeCount = Faction.values().length * Alignment.values().length;
+
+    private static final RoleAlignment[] alignmentsByCode = new RoleAlignment[CodeCount];
+    private static final String[] namesByCode = new String[CodeCount];
+
+    static
+    {
+        for (var alignment : new RoleAlignment[] { Any, TownAny, MafiaAny, CovenAny, NeutralAny, TownInvestigative,
+                TownKilling, TownProtective, TownSupport, MafiaDeception, MafiaKilling, MafiaSupport, CovenEvil,
+                NeutralBenign, NeutralKilling, NeutralEvil, NeutralChaos })
+            alignmentsByCode[alignment.code] = alignment;
+
+        for (var faction : Faction.values())
+            for (var alignment : Alignment.values())
+            {
+                var roleAlignment = new RoleAlignment(faction, alignment);
+                if (alignmentsByCode[roleAlignment.code] == null)
+                    alignmentsByCode[roleAlignment.code] = roleAlignment;
+                namesByCode[roleAlignment.code] = roleAlignment.code == 0 ? "Any" : faction + " " + alignment;
+            }
+    }
+
     public final Faction roleFaction;
     public final Alignment roleAlignment;
 
+    private final int code;
+
     public RoleAlignment()
     {
         this(Faction.Any, Alignment.Any);
@@ -48,8 +78,23 @@ public class RoleAlignment
     {
         roleFaction = faction;
         roleAlignment = alignment;
+        code = faction.ordinal() * Alignment.values().length + alignment.ordinal();
     }
 
+    /**
+     * Gets the role alignment that is represented by the given code.
+     * @param code The code of the role alignment, as returned by {@link #getCode()}.
+     * @return The role alignment with the given code. The predefined instances are returned for their codes.
+     */
+    public static RoleAlignment fromCode(int code) { return alignmentsByCode[code]; }
+
+    /**
+     * Gets the dense code of this role alignment, ranging from 0 (inclusive) to {@link #CodeCount} (exclusive). Equal
+     * role alignments have equal codes.
+     * @return The code of this role alignment.
+     */
+    public int getCode() { return code; }
+
     /**
      * Determines whether this role alignment matches the given filter.
      * @param alignment The alignment filter to check whether it matches this alignment.
@@ -70,20 +115,15 @@ public class RoleAlignment
     }
 
     @Override
-    public Role generateRandomRole(RoleCollection availableRoles, Random random)
+    public Role generateRandomRole(RoleCollection availableRoles, RandomGenerator random)
     {
-        Class<? extends Role>[] roles = availableRoles.get(this);
-        return RoleInstancePool.getInstance().getInstance(roles[random.nextInt(roles.length)]);
+        var table = RoleInstancePool.getInstance().getRoleTypeTable();
+        long candidates = availableRoles.getRoleMask() & table.getAlignmentFilterMask(this);
+        return table.getRole(BitUtils.selectBit(candidates, random.nextInt(Long.bitCount(candidates))));
     }
 
     @Override
-    public String toString()
-    {
-        if (equals(Any))
-            return "Any";
-
-        return roleFaction + " " + roleAlignment;
-    }
+    public String toString() { return namesByCode[code]; }
     @Override
     public boolean equals(Object obj)
     {
@@ -1,38 +1,67 @@
 package com.github.alfasgd.salem;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.IntPredicate;
 
 /**
  * Represents a role type collection. Provides the ability to index the available roles by their faction or alignment.
+ * The collection is backed by a {@link RoleSet}, making membership tests and mutations constant-time bitwise
+ * operations.
+ * <p>
+ * The elements of the collection are role types. {@link CustomRole Custom roles} share a single type, so they are kept
+ * in the backing set and its {@link #getRoleMask() mask}, but they are not elements of the collection; the operations
+ * that take or return role types neither see nor change them. {@link #getRoles()} views all the roles of the
+ * collection by their instances instead, including the custom roles.
+ * </p>
  */
 public class RoleCollection
     implements Collection<Class<? extends Role>>
 {
-    private static final RoleCollection defaultCollection;
+    private static final RoleCollection emptyCollection = new RoleCollection(0, true);
+
+    private static volatile RegistryCollections registryCollections;
 
     /**
      * Initializes a new role type collection with all the available roles in the game.
      */
-    public static RoleCollection getAllAvailableRolesCollection() { return new RoleCollection(defaultCollection); }
+    public static RoleCollection getAllAvailableRolesCollection() { return new RoleCollection(getRegistryCollections().defaultCollection); }
 
-    static
+    /**
+     * Gets the shared read-only collection of the role types that a player can start as in a game with the given game
+     * pack types. It contains the same role types as {@link #getAllStartableRoleTypesIntersection(GamePackTypes)} on
+     * {@link #getAllAvailableRolesCollection()}, but it is only computed once per registry state and never copied.
+     * @param packTypes The game pack types of the game.
+     * @return The read-only collection of the startable role types, which is a shared empty collection if the game pack
+     *         types are {@code null}.
+     */
+    public static RoleCollection getStartableRolesCollection(GamePackTypes packTypes)
     {
-        defaultCollection = new RoleCollection(RoleInstancePool.getInstance().getAllRoleTypes().keySet());
+        if (packTypes == null)
+            return emptyCollection;
+
+        return getRegistryCollections().startableCollections[packTypes.ordinal()];
     }
 
-    private int count;
+    // The shared collections are rebuilt whenever the registry publishes a new version
+    private static RegistryCollections getRegistryCollections()
+    {
+        var table = getTable();
+        var collections = registryCollections;
+        if (collections == null || collections.version != table.getVersion())
+            registryCollections = collections = new RegistryCollections(table);
+        return collections;
+    }
 
-    private final HashMap<RoleAlignment, HashSet<Class<? extends Role>>> roleTypesByAlignment;
-    private final HashMap<Faction, HashSet<Class<? extends Role>>> roleTypesByFaction;
+    private final RoleSet roles;
+    private final boolean readOnly;
 
     /**
      * Initializes a new instance of the {@link RoleCollection} class with no roles.
      */
     public RoleCollection()
     {
-        roleTypesByAlignment = new HashMap<>();
-        roleTypesByFaction = new HashMap<>();
+        roles = new RoleSet();
+        readOnly = false;
     }
     /**
      * Initializes a new instance of the {@link RoleCollection} class with the roles from the specified types.
@@ -41,9 +70,14 @@ public class RoleCollection
     public RoleCollection(Collection<Class<? extends Role>> roleTypes)
     {
         this();
-        roleTypes = roleTypes.stream().filter(Role::isValidRoleType).collect(Collectors.toSet());
+        if (roleTypes instanceof RoleCollection)
+        {
+            roles.setMask(((RoleCollection)roleTypes).roles.getMask());
+            return;
+        }
+
         for (var t : roleTypes)
-        addConditionallyValidated(t, false);
+            addConditionallyValidated(t, true);
     }
     /**
      * Initializes a new instance of the {@link RoleCollection} class from another {@link RoleCollection} instance.
@@ -51,11 +85,40 @@ public class RoleCollection
      */
     public RoleCollection(RoleCollection other)
     {
-        count = other.count;
-        roleTypesByAlignment = new HashMap<>(other.roleTypesByAlignment);
-        roleTypesByFaction = new HashMap<>(other.roleTypesByFaction);
+        roles = new RoleSet(other.roles);
+        readOnly = false;
+    }
+    /**
+     * Initializes a new instance of the {@link RoleCollection} class with the roles from the specified set.
+     * @param roleSet The set of the roles to add to the collection. It is copied, not referenced.
+     */
+    public RoleCollection(RoleSet roleSet)
+    {
+        this(roleSet.getMask(), false);
+    }
+    private RoleCollection(long mask, boolean readOnly)
+    {
+        roles = new RoleSet(mask);
+        this.readOnly = readOnly;
     }
 
+    /**
+     * Gets the {@link RoleSet} that backs this collection. Any modifications to either the set or the collection will
+     * be reflected. If this collection is read-only, a copy of the set is returned instead.
+     * @return The {@link RoleSet} that backs this collection.
+     */
+    public RoleSet getRoleSet() { return readOnly ? new RoleSet(roles) : roles; }
+    /**
+     * Gets the mask of the IDs of the role types contained in this collection.
+     * @return The mask of the IDs of the role types contained in this collection.
+     */
+    public long getRoleMask() { return roles.getMask(); }
+    /**
+     * Determines whether this collection may not be modified.
+     * @return {@code true} if this collection is read-only, otherwise {@code false}.
+     */
+    public boolean isReadOnly() { return readOnly; }
+
     /**
      * Gets all the roles that belong to a faction.
      * @param faction The faction.
@@ -63,7 +126,7 @@ public class RoleCollection
      */
     public Class<? extends Role>[] get(Faction faction)
     {
-        return roleTypesByFaction.get(faction).stream().toArray(Class[]::new);
+        return toTypeArray(roles.getMask() & getTable().getFactionMask(faction));
     }
     /**
      * Gets all the roles that belong to an alignment.
@@ -75,13 +138,29 @@ public class RoleCollection
      */
     public Class<? extends Role>[] get(RoleAlignment alignment)
     {
-        if (alignment == RoleAlignment.Any)
-            return getAllRoleTypes().stream().toArray(Class[]::new);
-
-        if (alignment.roleAlignment == Alignment.Any)
-            return get(alignment.roleFaction);
+        return toTypeArray(roles.getMatchingMask(alignment));
+    }
 
-        return roleTypesByAlignment.get(alignment).stream().toArray(Class[]::new);
+    /**
+     * Gets a live read-only view of all the roles in this collection, by their instances and in the order of their
+     * IDs. Unlike the collection itself, the view includes the {@link CustomRole custom roles}.
+     * @return The view of the roles in this collection.
+     */
+    public Collection<Role> getRoles() { return new RoleInstanceView(); }
+    /**
+     * Gets the instances of all the roles in this collection that match an alignment filter, including the
+     * {@link CustomRole custom roles}.
+     * @param alignment The alignment filter.
+     * @return The instances of the roles that match the alignment filter, in the order of their IDs.
+     */
+    public Role[] getRoles(RoleAlignment alignment)
+    {
+        var table = getTable();
+        long mask = roles.getMatchingMask(alignment);
+        var result = new Role[Long.bitCount(mask)];
+        for (int i = 0; mask != 0; i++, mask &= mask - 1)
+            result[i] = table.getRole(Long.numberOfTrailingZeros(mask));
+        return result;
     }
 
     /**
@@ -90,7 +169,11 @@ public class RoleCollection
      */
     public HashMap<RoleAlignment, HashSet<Class<? extends Role>>> getRoleTypesByAlignment()
     {
-        return new HashMap<>(roleTypesByAlignment);
+        var table = getTable();
+        var result = new HashMap<RoleAlignment, HashSet<Class<? extends Role>>>();
+        for (int id = nextTypedId(0); id >= 0; id = nextTypedId(id + 1))
+            result.computeIfAbsent(RoleAlignment.fromCode(table.getAlignmentCode(id)), a -> new HashSet<>()).add(table.getRoleType(id));
+        return result;
     }
     /**
      * Gets a dictionary containing all the role types stored in this collection, grouped by faction.
@@ -98,7 +181,11 @@ public class RoleCollection
      */
     public HashMap<Faction, HashSet<Class<? extends Role>>> getRoleTypesByFaction()
     {
-        return new HashMap<>(roleTypesByFaction);
+        var table = getTable();
+        var result = new HashMap<Faction, HashSet<Class<? extends Role>>>();
+        for (int id = nextTypedId(0); id >= 0; id = nextTypedId(id + 1))
+            result.computeIfAbsent(table.getFaction(id), f -> new HashSet<>()).add(table.getRoleType(id));
+        return result;
     }
 
     /**
@@ -106,31 +193,29 @@ public class RoleCollection
      */
     public Collection<Class<? extends Role>> getAllRoleTypes()
     {
-        var result = new HashSet<Class<? extends Role>>();
-        for (var set : roleTypesByAlignment.values())
-            result.addAll(set);
-        return result;
+        return new RoleCollection(this);
     }
     /**
      * Gets all the available role types in the game that the player can start as.
      */
     public Collection<Class<? extends Role>> getAllStartableRoleTypes()
     {
-        return getAllRoleTypes().stream().filter(t -> getInstance(t).canStartAs()).collect(Collectors.toSet());
+        var table = getTable();
+        return filter(id -> table.canStartAs(id));
     }
     /**
      * Gets all the available non-Coven-DLC-exclusive role types in the game that the player can start as.
      */
     public Collection<Class<? extends Role>> getAllStartableClassicRoleTypes()
     {
-        return getAllStartableRoleTypes().stream().filter(t -> !getInstance(t).covenDLCExclusive()).collect(Collectors.toSet());
+        return new RoleCollection(new RoleSet(roles.getMask() & getTable().getStartableRolesMask(GamePackTypes.Classic)));
     }
     /**
      * Gets all the role types in the game that are available in the Coven DLC that the player can start as.
      */
     public Collection<Class<? extends Role>> getAllStartableCovenRoleTypes()
     {
-        return getAllStartableRoleTypes().stream().filter(t -> !getInstance(t).unavailableInCovenDLC()).collect(Collectors.toSet());
+        return new RoleCollection(new RoleSet(roles.getMask() & getTable().getStartableRolesMask(GamePackTypes.Coven)));
     }
 
     /**
@@ -155,43 +240,30 @@ public class RoleCollection
      */
     public Collection<Class<? extends Role>> getAllStartableRoleTypesIntersection(GamePackTypes packTypes)
     {
-        if (packTypes == null || packTypes.code == 0)
-            return Collections.emptyList();
-
-        var result = new HashSet<>(getAllStartableRoleTypes());
-
-        for (int flag = 1; flag < GamePackTypes.All.code; flag <<= 1)
-        {
-            if ((packTypes.code & flag) == 0)
-                continue;
-
-            result.retainAll(getAllStartableRoleTypes(GamePackTypes.getTypeFromCode(flag)));
-        }
-
-        return result;
+        return new RoleCollection(new RoleSet(roles.getMask() & getTable().getStartableRolesMask(packTypes)));
     }
 
     @Override
-    public int size() { return count; }
+    public int size() { return Long.bitCount(getTypedMask()); }
     @Override
-    public boolean isEmpty() { return count == 0; }
+    public boolean isEmpty() { return getTypedMask() == 0; }
 
     @Override
     public boolean contains(Object o)
     {
         if (!(o instanceof Class))
             return false;
-        var type = (Class<? extends Role>)o;
-        var instance = getInstance(type);
-        if (instance == null)
-            return false;
 
-        return roleTypesByAlignment.get(instance.getFullAlignment()).contains(type);
+        int id = getTable().getRoleId((Class<?>)o);
+        return id >= 0 && roles.contains(id);
     }
 
     @Override
     public boolean containsAll(Collection<?> collection)
     {
+        if (collection instanceof RoleCollection)
+            return roles.containsAll(((RoleCollection)collection).roles);
+
         for (var type : collection)
             if (!contains(type))
                 return false;
@@ -205,7 +277,9 @@ public class RoleCollection
      */
     public boolean add(Role role)
     {
-        return addConditionallyValidated(role.getClass(), false);
+        checkWritable();
+        int id = getTable().getRoleId(role);
+        return id >= 0 && roles.add(id);
     }
     /**
      * Adds a role type to this collection, if it does not exist.
@@ -215,6 +289,7 @@ public class RoleCollection
     @Override
     public boolean add(Class<? extends Role> role)
     {
+        checkWritable();
         return addConditionallyValidated(role, true);
     }
 
@@ -225,7 +300,9 @@ public class RoleCollection
      */
     public boolean remove(Role role)
     {
-        return remove(role.getClass());
+        checkWritable();
+        int id = getTable().getRoleId(role);
+        return id >= 0 && roles.remove(id);
     }
     /**
      * Removes a role from this collection, if it exists.
@@ -234,27 +311,26 @@ public class RoleCollection
      */
     public boolean remove(Class<? extends Role> role)
     {
-        var instance = getInstance(role);
-        if (instance == null)
-            return false;
-
-        if (!roleTypesByAlignment.get(instance.getFullAlignment()).remove(role))
-            return false;
-
-        roleTypesByFaction.get(instance.getFaction()).remove(role);
-
-        count--;
-        return true;
+        checkWritable();
+        int id = getTable().getRoleId(role);
+        return id >= 0 && roles.remove(id);
     }
     @Override
     public boolean remove(Object o)
     {
+        if (!(o instanceof Class))
+            return false;
+
         return remove((Class<? extends Role>)o);
     }
 
     @Override
     public boolean addAll(Collection<? extends Class<? extends Role>> collection)
     {
+        checkWritable();
+        if (collection instanceof RoleCollection)
+            return roles.addAll(((RoleCollection)collection).roles);
+
         boolean result = false;
         for (var type : collection)
             result |= add(type);
@@ -264,6 +340,10 @@ public class RoleCollection
     @Override
     public boolean removeAll(Collection<?> collection)
     {
+        checkWritable();
+        if (collection instanceof RoleCollection)
+            return roles.removeAll(((RoleCollection)collection).roles);
+
         boolean result = false;
         for (var type : collection)
             result |= remove(type);
@@ -273,12 +353,21 @@ public class RoleCollection
     @Override
     public boolean retainAll(Collection<?> collection)
     {
-        var types = toArray();
-        boolean result = false;
-        for (var t : types)
-            if (!collection.contains(t))
-                result |= remove(t);
-        return result;
+        checkWritable();
+        if (collection instanceof RoleCollection)
+            return roles.retainAll(((RoleCollection)collection).roles);
+
+        // The custom roles are not elements of this collection, so they are retained
+        var table = getTable();
+        long retained = ~table.getTypedRolesMask();
+        for (var type : collection)
+            if (type instanceof Class)
+            {
+                int id = table.getRoleId((Class<?>)type);
+                if (id >= 0)
+                    retained |= 1L << id;
+            }
+        return roles.retainAll(retained);
     }
 
     /**
@@ -286,9 +375,8 @@ public class RoleCollection
      */
     public void clear()
     {
-        roleTypesByAlignment.clear();
-        roleTypesByFaction.clear();
-        count = 0;
+        checkWritable();
+        roles.clear();
     }
 
     /**
@@ -297,11 +385,8 @@ public class RoleCollection
      */
     public void clearFaction(Faction faction)
     {
-        var factionRoles = roleTypesByFaction.get(faction);
-        var rolesToRemove = new ArrayList<>(factionRoles);
-        factionRoles.clear();
-        removeAll(rolesToRemove);
-        count -= rolesToRemove.size();
+        checkWritable();
+        roles.clearFaction(faction);
     }
     /**
      * Removes all role types that belong to the specified alignment from this collection.
@@ -309,11 +394,8 @@ public class RoleCollection
      */
     public void clearAlignment(RoleAlignment alignment)
     {
-        var alignmentRoles = roleTypesByAlignment.get(alignment);
-        var rolesToRemove = new ArrayList<>(alignmentRoles);
-        alignmentRoles.clear();
-        removeAll(rolesToRemove);
-        count -= rolesToRemove.size();
+        checkWritable();
+        roles.clearAlignment(alignment);
     }
 
     @Override
@@ -325,17 +407,7 @@ public class RoleCollection
     @Override
     public Object[] toArray()
     {
-        var result = new Object[count];
-
-        int current = 0;
-        for (var values : roleTypesByFaction.values())
-            for (var type : values)
-            {
-                result[current] = type;
-                current++;
-            }
-
-        return result;
+        return toTypeArray(roles.getMask());
     }
     @Override
     public <T> T[] toArray(T[] ts)
@@ -343,14 +415,21 @@ public class RoleCollection
         if (!ts.getClass().getComponentType().isAssignableFrom(Class.class))
             throw new ArrayStoreException("The provided type to store the role types is invalid.");
 
+        int count = size();
+        if (ts.length < count)
+            ts = Arrays.copyOf(ts, count);
+
+        var table = getTable();
         int current = 0;
-        for (var values : roleTypesByFaction.values())
-            for (var type : values)
-            {
-                // Trust me, it *is* checked
-                ts[current] = (T)type;
-                current++;
-            }
+        for (int id = nextTypedId(0); id >= 0; id = nextTypedId(id + 1))
+        {
+            // Trust me, it *is* checked
+            ts[current] = (T)table.getRoleType(id);
+            current++;
+        }
+
+        if (ts.length > count)
+            ts[count] = null;
 
         return ts;
     }
@@ -361,20 +440,47 @@ public class RoleCollection
             if (!Role.isValidRoleType(role))
                 return false;
 
-        var instance = getInstance(role);
+        int id = getTable().getRoleId(role);
+        return id >= 0 && roles.add(id);
+    }
 
-        roleTypesByAlignment.get(instance.getFullAlignment()).add(role);
-        roleTypesByFaction.get(instance.getFaction()).add(role);
+    private void checkWritable()
+    {
+        if (readOnly)
+            throw new UnsupportedOperationException("The role collection is read-only.");
+    }
 
-        count++;
-        return true;
+    private RoleCollection filter(IntPredicate predicate)
+    {
+        long mask = 0;
+        for (int id = roles.nextId(0); id >= 0; id = roles.nextId(id + 1))
+            if (predicate.test(id))
+                mask |= 1L << id;
+        return new RoleCollection(new RoleSet(mask));
+    }
+
+    private long getTypedMask() { return roles.getMask() & getTable().getTypedRolesMask(); }
+    private int nextTypedId(int fromId)
+    {
+        long typedMask = getTable().getTypedRolesMask();
+        int id = roles.nextId(fromId);
+        while (id >= 0 && (typedMask & 1L << id) == 0)
+            id = roles.nextId(id + 1);
+        return id;
     }
 
-    private Role getInstance(Class<? extends Role> roleType)
+    private static Class<? extends Role>[] toTypeArray(long mask)
     {
-        return RoleInstancePool.getInstance().getInstance(roleType);
+        var table = getTable();
+        mask &= table.getTypedRolesMask();
+        Class<? extends Role>[] result = new Class[Long.bitCount(mask)];
+        for (int i = 0; mask != 0; i++, mask &= mask - 1)
+            result[i] = table.getRoleType(Long.numberOfTrailingZeros(mask));
+        return result;
     }
 
+    private static RoleTypeTable getTable() { return RoleInstancePool.getInstance().getRoleTypeTable(); }
+
     /**
      * Initializes a new instance of the {@link RoleCollection} class with the roles from the specified {@link Role}
      * instances.
@@ -385,38 +491,105 @@ public class RoleCollection
     {
         var collection = new RoleCollection();
         for (var r : roles)
-            collection.addConditionallyValidated(r.getClass(), false);
+            collection.add(r);
         return collection;
     }
 
     private class RoleCollectionIterator
         implements Iterator<Class<? extends Role>>
     {
-        private final Iterator<HashSet<Class<? extends Role>>> factionIterator;
-        private Iterator<Class<? extends Role>> setIterator;
+        private int nextId = nextTypedId(0);
+        private int lastId = -1;
 
-        public RoleCollectionIterator()
+        @Override
+        public boolean hasNext()
         {
-            factionIterator = roleTypesByFaction.values().iterator();
+            return nextId >= 0;
         }
 
         @Override
-        public boolean hasNext()
+        public Class<? extends Role> next()
+        {
+            if (nextId < 0)
+                throw new NoSuchElementException();
+
+            lastId = nextId;
+            nextId = nextTypedId(nextId + 1);
+            return getTable().getRoleType(lastId);
+        }
+
+        @Override
+        public void remove()
         {
-            if (factionIterator.hasNext())
-                return true;
+            checkWritable();
+            if (lastId < 0)
+                throw new IllegalStateException();
 
-            if (setIterator == null)
+            roles.remove(lastId);
+            lastId = -1;
+        }
+    }
+
+    private class RoleInstanceView
+        extends AbstractCollection<Role>
+    {
+        @Override
+        public int size() { return roles.size(); }
+        @Override
+        public boolean isEmpty() { return roles.isEmpty(); }
+
+        @Override
+        public boolean contains(Object o)
+        {
+            if (!(o instanceof Role))
                 return false;
-            return setIterator.hasNext();
+
+            int id = getTable().getRoleId((Role)o);
+            return id >= 0 && roles.contains(id);
         }
 
         @Override
-        public Class<? extends Role> next()
+        public Iterator<Role> iterator()
+        {
+            return new RoleInstanceIterator();
+        }
+    }
+
+    private class RoleInstanceIterator
+        implements Iterator<Role>
+    {
+        private int nextId = roles.nextId(0);
+
+        @Override
+        public boolean hasNext()
+        {
+            return nextId >= 0;
+        }
+
+        @Override
+        public Role next()
+        {
+            if (nextId < 0)
+                throw new NoSuchElementException();
+
+            var role = getTable().getRole(nextId);
+            nextId = roles.nextId(nextId + 1);
+            return role;
+        }
+    }
+
+    private static final class RegistryCollections
+    {
+        public final long version;
+        public final RoleCollection defaultCollection;
+        public final RoleCollection[] startableCollections = new RoleCollection[GamePackTypes.values().length];
+
+        public RegistryCollections(RoleTypeTable table)
         {
-            if (!setIterator.hasNext())
-                setIterator = factionIterator.next().iterator();
-            return setIterator.next();
+            version = table.getVersion();
+            defaultCollection = new RoleCollection(table.getAllRolesMask(), true);
+            for (var packTypes : GamePackTypes.values())
+                startableCollections[packTypes.ordinal()] = new RoleCollection(table.getStartableRolesMask(packTypes), true);
         }
     }
 }
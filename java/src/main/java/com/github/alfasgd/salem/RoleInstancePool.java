@@ -1,9 +1,14 @@
 package com.github.alfasgd.salem;
 
-import org.reflections.Reflections;
-
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
 
+/**
+ * Represents the registry of the role types. The registered role types are held in an immutable {@link RoleTypeTable}
+ * snapshot, which readers get without locking; registering a role type copies the current table and publishes the
+ * copy as a new version, so that roles may be registered at runtime while other threads generate role lists.
+ */
 public final class RoleInstancePool
 {
     private static final RoleInstancePool instance;
@@ -12,47 +17,141 @@ public final class RoleInstancePool
 
     static
     {
-        instance = new RoleInstancePool(new Reflections("org.salem"));
+        instance = new RoleInstancePool(GeneratedRoleTable.createRoles());
     }
 
-    private final HashMap<Class<? extends Role>, Role> roleTypeInstances = new HashMap<>();
+    private volatile RoleTypeTable roleTypeTable;
 
-    private RoleInstancePool(Reflections reflections)
+    private RoleInstancePool(Role[] roles)
     {
-        var roleTypes = reflections.getSubTypesOf(Role.class);
-        roleTypes.removeIf(t -> !Role.isValidRoleType(t));
-        for (var t : roleTypes)
-            registerConditionallyChecked(t, false);
+        roleTypeTable = new RoleTypeTable(roles);
     }
 
-    public HashMap<Class<? extends Role>, Role> getAllRoleTypes() { return new HashMap<>(roleTypeInstances); }
+    /**
+     * Gets a read-only map of the registered role types to their instances, in the order of their IDs. The map is a
+     * view of the current snapshot and is not copied; it does not reflect roles that are registered later. Custom roles
+     * are not included, since they share a single type.
+     * @return The map of the registered role types to their instances.
+     */
+    public Map<Class<? extends Role>, Role> getAllRoleTypes() { return roleTypeTable.getRoleTypeMap(); }
 
-    public int getRoleTypeCount() { return roleTypeInstances.size(); }
+    /**
+     * Gets the table of the currently registered role types, which maps every role type to its dense ID.
+     * @return The table of the currently registered role types.
+     */
+    public RoleTypeTable getRoleTypeTable() { return roleTypeTable; }
+    /**
+     * Gets the version of the registry, which increases every time that roles are registered.
+     * @return The {@link RoleTypeTable#getVersion()} of the current table.
+     */
+    public long getVersion() { return roleTypeTable.getVersion(); }
 
-    public Role getInstance(Class<? extends Role> type) { return roleTypeInstances.get(type); }
+    public int getRoleTypeCount() { return roleTypeTable.getRoleCount(); }
 
-    public boolean register(Class<? extends Role> roleType)
+    public Role getInstance(Class<? extends Role> type)
     {
-        return registerConditionallyChecked(roleType, true);
+        var table = roleTypeTable;
+        int id = table.getRoleId(type);
+        return id < 0 ? null : table.getRole(id);
     }
-    private boolean registerConditionallyChecked(Class<? extends Role> roleType, boolean check)
+    /**
+     * Gets the instance of the role with the given name, which also finds {@link CustomRole custom roles}.
+     * @param roleName The name of the role, as returned by {@link Role#getRoleName()}, ignoring case.
+     * @return The instance of the role, or {@code null} if no role has the given name.
+     */
+    public Role getInstance(String roleName)
     {
-        if (check)
-            if (!Role.isValidRoleType(roleType))
-                return false;
+        var table = roleTypeTable;
+        int id = table.getRoleId(roleName);
+        return id < 0 ? null : table.getRole(id);
+    }
+    /**
+     * Gets the instance of the role with the given ID.
+     * @param id The ID of the role, as assigned by the {@link RoleTypeTable}.
+     * @return The instance of the role.
+     */
+    public Role getInstance(int id) { return roleTypeTable.getRole(id); }
 
-        if (roleTypeInstances.get(roleType) != null)
+    /**
+     * Gets the ID of the given role type.
+     * @param type The role type whose ID to get.
+     * @return The ID of the role type, or -1 if it is not registered.
+     */
+    public int getRoleId(Class<? extends Role> type) { return roleTypeTable.getRoleId(type); }
+
+    /**
+     * Registers the given role type, publishing a new version of the registry. This method may be called concurrently
+     * with readers and other registrations.
+     * @param roleType The role type to register.
+     * @return {@code true} if the role type was registered, otherwise {@code false} if it is not a valid role type, it
+     *         is already registered, or the registry is full.
+     */
+    public boolean register(Class<? extends Role> roleType)
+    {
+        if (!Role.isValidRoleType(roleType))
             return false;
 
+        if (roleTypeTable.getRoleId(roleType) >= 0)
+            return false;
+
+        Role instance;
         try
         {
-            var ctor = roleType.getConstructor();
-            var instance = (Role)ctor.newInstance();
+            instance = roleType.getConstructor().newInstance();
+        }
+        catch (Exception ignored)
+        {
+            return false;
+        }
+        return publish(new Role[] { instance }) == 1;
+    }
+    /**
+     * Registers the given custom role, publishing a new version of the registry. This method may be called
+     * concurrently with readers and other registrations.
+     * @param role The custom role to register.
+     * @return {@code true} if the role was registered, otherwise {@code false} if a role with the same name is already
+     *         registered, or the registry is full.
+     */
+    public boolean register(CustomRole role) { return publish(new Role[] { role }) == 1; }
+    /**
+     * Registers the given custom roles, publishing a single new version of the registry. Roles whose name is already
+     * registered are skipped, and registration stops when the registry is full.
+     * @param roles The custom roles to register.
+     * @return The number of the registered roles.
+     */
+    public int register(Collection<CustomRole> roles) { return publish(roles.toArray(Role[]::new)); }
+
+    // Writers are serialized, so that no registration is lost between reading and replacing the table
+    private synchronized int publish(Role[] roles)
+    {
+        var table = roleTypeTable;
+        var accepted = new Role[roles.length];
+        int count = 0;
+        for (var role : roles)
+        {
+            if (table.getRoleCount() + count >= RoleTypeTable.MaximumRoleCount)
+                break;
+
+            if (table.getRoleId(role) >= 0 || isPending(role, accepted, count))
+                continue;
 
-            roleTypeInstances.put(roleType, instance);
-            return true;
+            // Custom roles are identified by their names, which may not be shadowed
+            if (role instanceof CustomRole && table.getRoleId(role.getRoleName()) >= 0)
+                continue;
+
+            accepted[count++] = role;
         }
-        catch (Exception ignored) { }
+
+        if (count > 0)
+            roleTypeTable = table.append(Arrays.copyOf(accepted, count));
+        return count;
+    }
+
+    private static boolean isPending(Role role, Role[] accepted, int count)
+    {
+        for (int i = 0; i < count; i++)
+            if (role instanceof CustomRole ? role.equals(accepted[i]) : role.getClass() == accepted[i].getClass())
+                return true;
         return false;
     }
 }
@@ -2,15 +2,37 @@ package com.github.alfasgd.salem;
 
 import com.github.alfasgd.salem.common.*;
 
+import java.lang.ref.WeakReference;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.random.RandomGenerator;
 
 /**
  * Represents a role list. It may contain either fixed role slots, or wildcard role slots.
+ * <p>
+ * Role lists are equal if they contain the same slots, regardless of their order. Roles are the same if they are of the
+ * same type, or are equal {@link CustomRole custom roles}. The comparison is based on a canonical encoding of the
+ * sorted {@link RoleSlotCodes slot codes} in two {@code long}s, which is calculated once, so that role lists are cheap
+ * keys for maps. Role lists with slots that have no code, such as unregistered roles, are compared slot by slot instead.
+ * </p>
  */
 public class RoleList
 {
+    /**
+     * The maximum number of slots that a role list may contain.
+     */
+    public static final int MaximumSlotCount = 15;
+
+    // Weakly held, so that interned role lists that are no longer used are collected
+    private static final WeakHashMap<RoleList, WeakReference<RoleList>> internedRoleLists = new WeakHashMap<>();
+
     private final RoleSlot[] roleSlots;
+    private List<RoleSlot> roleSlotView;
+
+    // The canonical encoding is calculated lazily, and published by the volatile flag
+    private long canonicalLow;
+    private long canonicalHigh;
+    private volatile boolean hasCanonicalCode;
+    private int hash;
 
     /**
      * Initializes a new instance of the {@link RoleList} class from the given role slots array.
@@ -18,8 +40,7 @@ public class RoleList
      */
     public RoleList(RoleSlot[] slots)
     {
-        validateGivenSlotCount(slots.length);
-        roleSlots = ArrayUtils.copyOf(slots);
+        this(slots, true);
     }
     /**
      * Initializes a new instance of the {@link RoleList} class from the given role slots collection.
@@ -39,12 +60,33 @@ public class RoleList
     {
         roleSlots = ArrayUtils.copyOf(other.roleSlots);
     }
+    RoleList(RoleSlot[] slots, boolean copy)
+    {
+        validateGivenSlotCount(slots.length);
+        roleSlots = copy ? ArrayUtils.copyOf(slots) : slots;
+    }
 
     /**
      * Gets a copy of the internally stored role slots array.
      * @return The copy of the role slots array.
      */
-    public RoleSlot[] getRoleSlots() { return Arrays.stream(roleSlots).toArray(RoleSlot[]::new); }
+    public RoleSlot[] getRoleSlots() { return ArrayUtils.copyOf(roleSlots); }
+    /**
+     * Gets a read-only view of the role slots, without copying them.
+     * @return The read-only view of the role slots.
+     */
+    public List<RoleSlot> getRoleSlotView()
+    {
+        var view = roleSlotView;
+        if (view == null)
+            roleSlotView = view = Collections.unmodifiableList(Arrays.asList(roleSlots));
+        return view;
+    }
+    /**
+     * Gets the number of slots in this list.
+     * @return The number of slots.
+     */
+    public int size() { return roleSlots.length; }
 
     /**
      * Gets all the fixed role slots.
@@ -64,133 +106,490 @@ public class RoleList
 
     private void validateGivenSlotCount(int count)
     {
-        if (count > 15)
-            throw new IllegalArgumentException("The slot collection may not contain more than 15 slots.");
+        if (count > MaximumSlotCount)
+            throw new IllegalArgumentException("The slot collection may not contain more than " + MaximumSlotCount + " slots.");
     }
 
     /**
      * Gets a {@link ValueCounterHashMap} that contains the number of occurrences of each role in this list. This
-     * ignores the {@link RoleAlignment} slots.
+     * ignores the {@link RoleAlignment} slots, and the {@link CustomRole custom roles}, which share a single type; see
+     * {@link #getRoleInstanceOccurrences()}.
      * @return The {@link HashMap{TKey}} containing the number of occurrences of each role in this list.
      */
     public ValueCounterHashMap<Class<? extends Role>> getRoleOccurrences()
     {
         var result = new ValueCounterHashMap<Class<? extends Role>>();
-        getFixedRoleSlots().forEach(role -> result.add(role.getClass(), 1));
+        for (var slot : roleSlots)
+            if (slot instanceof Role && !(slot instanceof CustomRole))
+                result.add(((Role)slot).getClass(), 1);
+        return result;
+    }
+    /**
+     * Gets a {@link ValueCounterHashMap} that contains the number of occurrences of each role in this list, including
+     * the {@link CustomRole custom roles}. This ignores the {@link RoleAlignment} slots. The roles are keyed by their
+     * registered instances, so that every custom role is counted on its own; unregistered roles are keyed by
+     * themselves.
+     * @return The {@link HashMap{TKey}} containing the number of occurrences of each role instance in this list.
+     */
+    public ValueCounterHashMap<Role> getRoleInstanceOccurrences()
+    {
+        var table = RoleInstancePool.getInstance().getRoleTypeTable();
+        var result = new ValueCounterHashMap<Role>();
+        for (var slot : roleSlots)
+        {
+            if (!(slot instanceof Role))
+                continue;
+
+            int id = table.getRoleId((Role)slot);
+            result.add(id >= 0 ? table.getRole(id) : (Role)slot, 1);
+        }
         return result;
     }
 
     /**
      * Gets a {@link ValueCounterHashMap} that contains the distinct role types that are present in this list. This
-     * ignores the {@link RoleAlignment} slots.
+     * ignores the {@link RoleAlignment} slots, and the {@link CustomRole custom roles}; see
+     * {@link #getDistinctRoleInstances()}.
      * @return The {@link ValueCounterHashMap} containing the distinct role types that are present in this list.
      */
     public HashSet<Class<? extends Role>> getDistinctRoles()
     {
         return new HashSet<>(getRoleOccurrences().keySet());
     }
+    /**
+     * Gets a {@link HashSet} that contains the distinct roles that are present in this list, by their registered
+     * instances as in {@link #getRoleInstanceOccurrences()}. This ignores the {@link RoleAlignment} slots.
+     * @return The {@link HashSet} containing the distinct role instances that are present in this list.
+     */
+    public HashSet<Role> getDistinctRoleInstances()
+    {
+        return new HashSet<>(getRoleInstanceOccurrences().keySet());
+    }
 
     /**
-     * Determines whether this current role list is a valid one.
+     * Determines whether this current role list is a valid one. The result is cached in the shared
+     * {@link RoleListValidationCache}, so that validating an equal role list again is a single lookup.
      * @param packTypes The game pack types where this role list is applied on.
      * @return {@code true} if the current role list is valid for the given game pack types, otherwise {@code false}.
      */
-    public boolean isValidRoleList(GamePackTypes packTypes) { return validateRoleList(packTypes, new InstanceReference<>()); }
+    public boolean isValidRoleList(GamePackTypes packTypes)
+    {
+        return RoleListValidationCache.getSharedCache().isValid(this, packTypes);
+    }
 
     /**
      * Generates a random role list from this given role list, replacing wildcard slots with randomly chosen ones fitting the given criteria.
+     * <p>
+     * The wildcard slots are filled in order, each with any role that matches it and has not reached its maximum
+     * occurrences, so the generation may fail for a valid role list when the earlier slots take the only roles that a
+     * later slot could be filled with. Use {@link #isValidRoleList(GamePackTypes)} to tell an invalid role list apart,
+     * or {@link #generateConstrainedRoleList(GamePackTypes)}, which never fails for a valid role list.
+     * </p>
      * @param packTypes The game pack types where this role list is applied on.
-     * @return The generated role list if this role list is valid, otherwise {@code null}.
+     * @return The generated role list, or {@code null} if this role list is invalid or a wildcard slot could not be
+     *         filled because the earlier slots used up its roles; see {@link #generateConstrainedRoleList(GamePackTypes)}.
      */
     public RoleList generateRandomRoleList(GamePackTypes packTypes)
     {
-        return generateRandomRoleList(new RoleCollection(RoleCollection.getAllAvailableRolesCollection().getAllStartableRoleTypesIntersection(packTypes)));
+        return generateRandomRoleList(getAvailableRoles(packTypes));
+    }
+    /**
+     * Generates a random role list from this given role list, replacing wildcard slots with randomly chosen ones fitting
+     * the given criteria. The same seed always generates the same role list.
+     * @param packTypes The game pack types where this role list is applied on.
+     * @param seed The seed of the random number generator.
+     * @return The generated role list, or {@code null} if this role list is invalid or a wildcard slot could not be
+     *         filled because the earlier slots used up its roles; see {@link #generateConstrainedRoleList(GamePackTypes)}.
+     */
+    public RoleList generateRandomRoleList(GamePackTypes packTypes, long seed)
+    {
+        return generateRandomRoleList(getAvailableRoles(packTypes), new RoleListGenerator(seed));
+    }
+    /**
+     * Generates a random role list from this given role list, replacing wildcard slots with randomly chosen ones fitting
+     * the given criteria.
+     * @param packTypes The game pack types where this role list is applied on.
+     * @param random The {@link RandomGenerator} to use to randomly choose the roles.
+     * @return The generated role list, or {@code null} if this role list is invalid or a wildcard slot could not be
+     *         filled because the earlier slots used up its roles; see {@link #generateConstrainedRoleList(GamePackTypes)}.
+     */
+    public RoleList generateRandomRoleList(GamePackTypes packTypes, RandomGenerator random)
+    {
+        return generateRandomRoleList(getAvailableRoles(packTypes), new RoleListGenerator(random));
     }
     /**
      * Generates a random role list from this given role list, replacing wildcard slots with randomly chosen ones fitting the given criteria.
      * @param availableRoles The available roles collection.
-     * @return The generated role list if this role list is valid, otherwise {@code null}.
+     * @return The generated role list, or {@code null} if this role list is invalid or a wildcard slot could not be
+     *         filled because the earlier slots used up its roles; see {@link #generateConstrainedRoleList(GamePackTypes)}.
      */
     public RoleList generateRandomRoleList(RoleCollection availableRoles)
     {
-        var remainingSlots = new InstanceReference<ValueCounterHashMap<Class<? extends Role>>>();
-        if (!validateRoleList(availableRoles, remainingSlots))
+        return generateRandomRoleList(availableRoles, new RoleListGenerator());
+    }
+    /**
+     * Generates a random role list from this given role list, replacing wildcard slots with randomly chosen ones fitting
+     * the given criteria.
+     * @param availableRoles The available roles collection.
+     * @param random The {@link RandomGenerator} to use to randomly choose the roles.
+     * @return The generated role list, or {@code null} if this role list is invalid or a wildcard slot could not be
+     *         filled because the earlier slots used up its roles; see {@link #generateConstrainedRoleList(GamePackTypes)}.
+     */
+    public RoleList generateRandomRoleList(RoleCollection availableRoles, RandomGenerator random)
+    {
+        return generateRandomRoleList(availableRoles, new RoleListGenerator(random));
+    }
+    /**
+     * Generates a random role list from this given role list, replacing wildcard slots with randomly chosen ones fitting
+     * the given criteria. The generator's scratch state is reused, so only the resulting role list is allocated.
+     * @param availableRoles The available roles collection.
+     * @param generator The generator whose scratch state and random number generator to use.
+     * @return The generated role list, or {@code null} if this role list is invalid or a wildcard slot could not be
+     *         filled because the earlier slots used up its roles; see {@link #generateConstrainedRoleList(GamePackTypes)}.
+     */
+    public RoleList generateRandomRoleList(RoleCollection availableRoles, RoleListGenerator generator)
+    {
+        var resultingArray = new RoleSlot[roleSlots.length];
+        if (!generator.generate(this, availableRoles, resultingArray))
             return null;
 
-        var availableRoleTypesList = remainingSlots.get().keySet().stream().filter(key -> remainingSlots.get().get(key) > 0).collect(Collectors.toList());
-        var availableRoleTypes = new RoleCollection(availableRoleTypesList);
-
-        var random = new Random();
-        var resultingArray = getRoleSlots();
-        for (int i = 0; i < resultingArray.length; i++)
-        {
-            var roleEntry = resultingArray[i];
+        return new RoleList(resultingArray, false);
+    }
 
-            var role = roleEntry.generateRandomRole(availableRoleTypes, random);
-            resultingArray[i] = role;
+    /**
+     * Generates a random role list from this given role list, replacing wildcard slots with randomly chosen ones fitting
+     * the given criteria. Unlike {@link #generateRandomRoleList(GamePackTypes)}, every wildcard slot is only filled with
+     * the roles that still allow the following wildcard slots to be filled, so generating never fails for a valid role
+     * list.
+     * @param packTypes The game pack types where this role list is applied on.
+     * @return The generated role list if this role list is valid, otherwise {@code null}.
+     */
+    public RoleList generateConstrainedRoleList(GamePackTypes packTypes)
+    {
+        return generateConstrainedRoleList(getAvailableRoles(packTypes), new RoleListGenerator());
+    }
+    /**
+     * Generates a random role list from this given role list, replacing wildcard slots with randomly chosen ones fitting
+     * the given criteria. Unlike {@link #generateRandomRoleList(RoleCollection, RoleListGenerator)}, every wildcard slot
+     * is only filled with the roles that still allow the following wildcard slots to be filled, so generating never
+     * fails for a valid role list.
+     * @param availableRoles The available roles collection.
+     * @param generator The generator whose scratch state and random number generator to use.
+     * @return The generated role list if this role list is valid, otherwise {@code null}.
+     */
+    public RoleList generateConstrainedRoleList(RoleCollection availableRoles, RoleListGenerator generator)
+    {
+        var resultingArray = new RoleSlot[roleSlots.length];
+        if (!generator.generateConstrained(this, availableRoles, resultingArray))
+            return null;
 
-            var type = role.getClass();
-            remainingSlots.get().subtract(type);
+        return new RoleList(resultingArray, false);
+    }
 
-            if (remainingSlots.get().get(type) <= 0)
-                availableRoleTypes.remove(role);
-        }
+    /**
+     * Validates this role list once and compiles it into a reusable sampling plan for the roles that are available in
+     * the given game pack types.
+     * @param packTypes The game pack types where this role list is applied on.
+     * @return The prepared role list if this role list is valid, otherwise {@code null}.
+     */
+    public PreparedRoleList prepare(GamePackTypes packTypes) { return PreparedRoleList.prepare(this, packTypes); }
+    /**
+     * Validates this role list once and compiles it into a reusable sampling plan for the given available roles.
+     * @param availableRoles The available roles collection.
+     * @return The prepared role list if this role list is valid, otherwise {@code null}.
+     */
+    public PreparedRoleList prepare(RoleCollection availableRoles) { return PreparedRoleList.prepare(this, availableRoles); }
 
-        return new RoleList(resultingArray);
+    /**
+     * Calculates the exact probabilities of the roles that {@link #generateRandomRoleList(GamePackTypes)} places in
+     * every slot of this role list.
+     * @param packTypes The game pack types where this role list is applied on.
+     * @return The probabilities of the roles if this role list is valid, otherwise {@code null}.
+     */
+    public RoleListProbabilities calculateProbabilities(GamePackTypes packTypes) { return RoleListProbabilities.calculate(this, packTypes); }
+    /**
+     * Calculates the exact probabilities of the roles that {@link #generateRandomRoleList(RoleCollection)} places in
+     * every slot of this role list.
+     * @param availableRoles The available roles collection.
+     * @return The probabilities of the roles if this role list is valid, otherwise {@code null}.
+     */
+    public RoleListProbabilities calculateProbabilities(RoleCollection availableRoles) { return RoleListProbabilities.calculate(this, availableRoles); }
+    /**
+     * Calculates the exact joint distribution of the faction and killing role counts of the role lists that
+     * {@link #generateRandomRoleList(GamePackTypes)} generates out of this role list.
+     * @param packTypes The game pack types where this role list is applied on.
+     * @return The faction composition distribution if this role list is valid, otherwise {@code null}.
+     */
+    public FactionCompositionDistribution calculateFactionComposition(GamePackTypes packTypes)
+    {
+        return FactionCompositionDistribution.calculate(this, packTypes);
+    }
+    /**
+     * Calculates the exact joint distribution of the faction and killing role counts of the role lists that
+     * {@link #generateRandomRoleList(RoleCollection)} generates out of this role list.
+     * @param availableRoles The available roles collection.
+     * @return The faction composition distribution if this role list is valid, otherwise {@code null}.
+     */
+    public FactionCompositionDistribution calculateFactionComposition(RoleCollection availableRoles)
+    {
+        return FactionCompositionDistribution.calculate(this, availableRoles);
+    }
+    /**
+     * Prepares the exact count of the concrete completions of this role list, which can be sampled uniformly.
+     * @param packTypes The game pack types where this role list is applied on.
+     * @return The completions of this role list if it is valid, otherwise {@code null}.
+     */
+    public RoleListCompletions prepareCompletions(GamePackTypes packTypes) { return RoleListCompletions.prepare(this, packTypes); }
+    /**
+     * Prepares the exact count of the concrete completions of this role list, which can be sampled uniformly.
+     * @param availableRoles The available roles collection.
+     * @return The completions of this role list if it is valid, otherwise {@code null}.
+     */
+    public RoleListCompletions prepareCompletions(RoleCollection availableRoles) { return RoleListCompletions.prepare(this, availableRoles); }
+    /**
+     * Prepares the exact count of the concrete completions of this role list, which can be sampled uniformly or
+     * enumerated lazily.
+     * @param packTypes The game pack types where this role list is applied on.
+     * @param perFilterMultisets Whether the wildcard slots with the same filter are interchangeable, so that only the
+     *                           distinct multisets of roles for every filter are considered; see
+     *                           {@link RoleListCompletions}.
+     * @return The completions of this role list if it is valid, otherwise {@code null}.
+     */
+    public RoleListCompletions prepareCompletions(GamePackTypes packTypes, boolean perFilterMultisets)
+    {
+        return RoleListCompletions.prepare(this, packTypes, perFilterMultisets);
     }
 
-    private boolean validateRoleList(GamePackTypes packTypes, InstanceReference<ValueCounterHashMap<Class<? extends Role>>> remainingSlots)
+    private static RoleCollection getAvailableRoles(GamePackTypes packTypes)
     {
-        return validateRoleList(new RoleCollection(RoleCollection.getAllAvailableRolesCollection().getAllStartableRoleTypesIntersection(packTypes)), remainingSlots);
+        return RoleCollection.getStartableRolesCollection(packTypes);
     }
-    private boolean validateRoleList(RoleCollection availableRoles, InstanceReference<ValueCounterHashMap<Class<? extends Role>>> remainingSlots)
+
+    /**
+     * Validates the given role slots against the available roles, and calculates the remaining occurrences of each role
+     * after the fixed role slots are filled. The role slots are valid if the fixed roles are available and do not exceed
+     * their maximum occurrences, and all the wildcard slots can be filled at the same time.
+     * @param slots The role slots to validate.
+     * @param table The role type table that the role IDs refer to.
+     * @param availableRolesMask The mask of the IDs of the available roles.
+     * @param remainingOccurrences The array that the remaining occurrences of each role will be stored in, indexed by
+     *                             the role's ID. It must contain at least {@link RoleTypeTable#getRoleCount()} elements.
+     * @param remainingFactionSlots The array that the remaining slots of each faction will be stored in, indexed by the
+     *                              faction's ordinal.
+     * @param feasibility The feasibility check to determine whether the wildcard slots can all be filled with.
+     * @return {@code true} if the role slots are valid, otherwise {@code false}.
+     */
+    static boolean validateRoleList(RoleSlot[] slots, RoleTypeTable table, long availableRolesMask,
+                                    int[] remainingOccurrences, int[] remainingFactionSlots, RoleListFeasibility feasibility)
     {
-        remainingSlots.set(new ValueCounterHashMap<>());
+        Arrays.fill(remainingOccurrences, 0, table.getRoleCount(), 0);
         // This exists to prevent impossible role lists like more than 6 Coven roles in a game (since all the Coven roles are unique)
-        var remainingAlignmentSlots = new ValueCounterHashMap<Faction>();
+        Arrays.fill(remainingFactionSlots, 0);
 
-        for (var t : availableRoles)
+        for (long mask = availableRolesMask; mask != 0; mask &= mask - 1)
         {
-            var instance = RoleInstancePool.getInstance().getInstance(t);
-            remainingSlots.get().add(t, instance.getMaximumOccurrences());
-            remainingAlignmentSlots.add(instance.getFaction(), instance.getMaximumOccurrences());
+            int id = Long.numberOfTrailingZeros(mask);
+            int maximumOccurrences = table.getMaximumOccurrences(id);
+            remainingOccurrences[id] = maximumOccurrences;
+            remainingFactionSlots[table.getFactionOrdinal(id)] += maximumOccurrences;
         }
 
-        for (var slot : roleSlots)
+        for (var slot : slots)
         {
-            RoleAlignment alignment;
+            int factionOrdinal;
             if (slot instanceof RoleAlignment)
             {
-                alignment = (RoleAlignment)slot;
+                factionOrdinal = ((RoleAlignment)slot).roleFaction.ordinal();
             }
             else
             {
-                var role = (Role)slot;
+                int id = table.getRoleId((Role)slot);
+                if (id < 0)
+                    return false;
 
-                alignment = role.getFullAlignment();
-                var type = role.getClass();
-                remainingSlots.get().subtract(type);
-                if (remainingSlots.get().get(type) < 0)
+                remainingOccurrences[id]--;
+                if (remainingOccurrences[id] < 0)
                     return false;
-            }
 
-            var faction = alignment.roleFaction;
+                factionOrdinal = table.getFactionOrdinal(id);
+            }
 
-            if (faction == Faction.Any)
+            if (factionOrdinal == Faction.Any.ordinal())
                 continue;
 
-            remainingAlignmentSlots.subtract(faction);
-            if (remainingAlignmentSlots.get(faction) < 0)
+            remainingFactionSlots[factionOrdinal]--;
+            if (remainingFactionSlots[factionOrdinal] < 0)
                 return false;
         }
 
-        return true;
+        // The faction totals alone accept wildcard slots that compete for the same limited roles
+        return feasibility.isFeasible(slots, table, remainingOccurrences);
     }
 
+    /**
+     * Gets the internally stored role slots array, without copying it. It must not be modified.
+     * @return The internally stored role slots array.
+     */
+    RoleSlot[] getRoleSlotsArray() { return roleSlots; }
+
     /**
      * Gets the {@link RoleSlot} at the specified index in this list.
      * @param index The index of the {@link RoleSlot} to get.
      * @return The {@link RoleSlot} at the specified index.
      */
     public RoleSlot get(int index) { return roleSlots[index]; }
+
+    /**
+     * Determines whether this list has a canonical encoding, which is the case if all of its slots are either
+     * registered roles or role alignments.
+     * @return {@code true} if this list has a canonical encoding, otherwise {@code false}.
+     */
+    public boolean hasCanonicalEncoding() { return tryEnsureCanonicalCode(); }
+    /**
+     * Gets the low {@code long} of the canonical encoding of this list, which contains the first
+     * {@link RoleSlotCodes#SlotsPerLong} sorted slot codes.
+     * @return The low {@code long} of the canonical encoding.
+     * @throws IllegalArgumentException If this list has no {@link #hasCanonicalEncoding() canonical encoding}.
+     */
+    public long getCanonicalLow()
+    {
+        ensureCanonicalCode();
+        return canonicalLow;
+    }
+    /**
+     * Gets the high {@code long} of the canonical encoding of this list, which contains the rest of the sorted slot
+     * codes.
+     * @return The high {@code long} of the canonical encoding.
+     * @throws IllegalArgumentException If this list has no {@link #hasCanonicalEncoding() canonical encoding}.
+     */
+    public long getCanonicalHigh()
+    {
+        ensureCanonicalCode();
+        return canonicalHigh;
+    }
+
+    private void ensureCanonicalCode()
+    {
+        if (!tryEnsureCanonicalCode())
+            throw new IllegalArgumentException("Only role lists of registered roles and role alignments can be encoded.");
+    }
+    private boolean tryEnsureCanonicalCode()
+    {
+        if (hasCanonicalCode)
+            return true;
+
+        // The failure is not remembered, since the missing roles may be registered later
+        var codes = new int[roleSlots.length];
+        if (!RoleSlotCodes.tryGetSortedCodes(roleSlots, RoleInstancePool.getInstance().getRoleTypeTable(), codes))
+            return false;
+
+        canonicalLow = RoleSlotCodes.packLow(codes, codes.length);
+        canonicalHigh = RoleSlotCodes.packHigh(codes, codes.length);
+        hasCanonicalCode = true;
+        return true;
+    }
+
+    /**
+     * Gets the interned role list that is equal to this one. Equal role lists share the same interned instance, whose
+     * slots are in canonical order, which is the order of their {@link RoleSlotCodes slot codes}; its slots may thus be
+     * in a different order than the ones of this list. Interned role lists are held weakly, so that they are collected
+     * once they are no longer used.
+     * @return The interned role list that is equal to this one.
+     * @throws IllegalArgumentException If this list has no {@link #hasCanonicalEncoding() canonical encoding}.
+     */
+    public RoleList intern()
+    {
+        var table = RoleInstancePool.getInstance().getRoleTypeTable();
+        var codes = new int[roleSlots.length];
+        if (!RoleSlotCodes.tryGetSortedCodes(roleSlots, table, codes))
+            throw new IllegalArgumentException("Only role lists of registered roles and role alignments can be interned.");
+
+        synchronized (internedRoleLists)
+        {
+            var reference = internedRoleLists.get(this);
+            var interned = reference == null ? null : reference.get();
+            if (interned == null)
+            {
+                interned = isInOrder(codes, table) ? this : fromCodes(codes, table);
+                internedRoleLists.put(interned, new WeakReference<>(interned));
+            }
+            return interned;
+        }
+    }
+
+    private boolean isInOrder(int[] sortedCodes, RoleTypeTable table)
+    {
+        for (int i = 0; i < roleSlots.length; i++)
+            if (RoleSlotCodes.getCode(roleSlots[i], table) != sortedCodes[i])
+                return false;
+        return true;
+    }
+    private static RoleList fromCodes(int[] codes, RoleTypeTable table)
+    {
+        var slots = new RoleSlot[codes.length];
+        for (int i = 0; i < codes.length; i++)
+            slots[i] = RoleSlotCodes.getSlot(codes[i], table);
+        return new RoleList(slots, false);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof RoleList))
+            return false;
+
+        var other = (RoleList)obj;
+        if (roleSlots.length != other.roleSlots.length)
+            return false;
+        if (tryEnsureCanonicalCode() && other.tryEnsureCanonicalCode())
+            return canonicalLow == other.canonicalLow && canonicalHigh == other.canonicalHigh;
+
+        // Match every slot with a distinct equal slot of the other list
+        var matched = new boolean[roleSlots.length];
+        for (var slot : roleSlots)
+        {
+            int i = 0;
+            for (; i < matched.length; i++)
+                if (!matched[i] && areSameSlots(slot, other.roleSlots[i]))
+                    break;
+            if (i == matched.length)
+                return false;
+            matched[i] = true;
+        }
+        return true;
+    }
+    @Override
+    public int hashCode()
+    {
+        // Independent of the registered roles, so that it never changes, and of the order of the slots
+        int result = hash;
+        if (result == 0)
+        {
+            for (var slot : roleSlots)
+                result += mixSlotHash(getSlotHash(slot));
+            hash = result;
+        }
+        return result;
+    }
+
+    private static boolean areSameSlots(RoleSlot a, RoleSlot b)
+    {
+        if (a instanceof Role && !(a instanceof CustomRole))
+            return a.getClass() == b.getClass();
+        return a.equals(b);
+    }
+    private static int getSlotHash(RoleSlot slot)
+    {
+        if (slot instanceof Role && !(slot instanceof CustomRole))
+            return slot.getClass().hashCode();
+        return slot.hashCode();
+    }
+    private static int mixSlotHash(int hash)
+    {
+        // Spreads the bits, so that the sum of the hashes of different slots rarely collides
+        hash *= 0x9E3779B9;
+        return hash ^ hash >>> 16;
+    }
 }
@@ -2,23 +2,70 @@ package com.github.alfasgd.salem;
 
 import com.github.alfasgd.salem.common.*;
 
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
 /**
- * Represents a role list. It may contain either fixed role slots, or wildcard role slots.
+ * Builds a {@link RoleList} slot by slot. The slots may be either fixed role slots, or wildcard role slots.
+ * <p>
+ * The builder keeps track of the remaining occurrences of every available role and the remaining slots of every
+ * faction while slots are added, set and removed, so that {@link #isFeasible()} answers in constant time whether the
+ * role list can still be valid. The check is exact for the fixed roles, and bounds the wildcard slots by the capacity
+ * of their factions; {@link #isValidRoleList()} additionally checks that the wildcard slots can all be filled at the
+ * same time.
+ * </p>
  */
 public class RoleListBuilder
 {
     /**
      * The role list slots. This field is exposed to allow directly setting the role slots or use the {@link CappedList}
-     * class' methods.
+     * class' methods. The list is never replaced, and its iterators and sub-lists are read-only, so that every change
+     * is tracked by the builder.
      */
-    public CappedList<RoleSlot> roleSlots;
+    public final CappedList<RoleSlot> roleSlots;
+
+    private final RoleTypeTable table;
+    private final long availableRolesMask;
+    private final int[] remainingOccurrences;
+    private final int[] remainingFactionSlots = new int[Faction.values().length];
+    private int overdrawnRoleCount;
+    private int overdrawnFactionCount;
+    private int invalidSlotCount;
 
     /**
-     * Initializes a new empty instance of the {@link RoleListBuilder} class.
+     * Initializes a new empty instance of the {@link RoleListBuilder} class, whose feasibility is checked against all
+     * the registered roles.
      */
     public RoleListBuilder()
     {
-        roleSlots = new CappedList<>(15);
+        this(RoleInstancePool.getInstance().getRoleTypeTable().getAllRolesMask());
+    }
+    /**
+     * Initializes a new empty instance of the {@link RoleListBuilder} class, whose feasibility is checked against the
+     * roles that are available in the given game pack types.
+     * @param packTypes The game pack types where the role list is applied on.
+     */
+    public RoleListBuilder(GamePackTypes packTypes)
+    {
+        this(RoleCollection.getStartableRolesCollection(packTypes).getRoleMask());
+    }
+    /**
+     * Initializes a new empty instance of the {@link RoleListBuilder} class, whose feasibility is checked against the
+     * given available roles.
+     * @param availableRoles The available roles collection.
+     */
+    public RoleListBuilder(RoleCollection availableRoles)
+    {
+        this(availableRoles.getRoleMask());
+    }
+    private RoleListBuilder(long availableRolesMask)
+    {
+        roleSlots = new TrackedSlotList();
+        table = RoleInstancePool.getInstance().getRoleTypeTable();
+        this.availableRolesMask = availableRolesMask;
+        remainingOccurrences = new int[table.getRoleCount()];
+        reset();
     }
 
     /**
@@ -26,6 +73,45 @@ public class RoleListBuilder
      * @return The generated {@link RoleList}.
      */
     public RoleList toRoleList() { return new RoleList(roleSlots); }
+    /**
+     * Creates a new {@link PreparedRoleList} out of the current role list, reusing the tracked remaining capacities
+     * instead of validating the role list again.
+     * @return The prepared role list if the current role list is valid, otherwise {@code null}.
+     */
+    public PreparedRoleList toPreparedRoleList()
+    {
+        if (!isFeasible())
+            return null;
+
+        var roleList = toRoleList();
+        if (!new RoleListFeasibility().isFeasible(roleList.getRoleSlotsArray(), table, remainingOccurrences))
+            return null;
+
+        return PreparedRoleList.create(roleList, table, remainingOccurrences, remainingFactionSlots);
+    }
+
+    /**
+     * Determines whether the current role list can still be valid, in constant time. The fixed roles must be available
+     * and not exceed their maximum occurrences, and no faction may have more slots than the maximum occurrences of its
+     * available roles.
+     * @return {@code true} if the current role list can still be valid, otherwise {@code false}.
+     */
+    public boolean isFeasible() { return overdrawnRoleCount == 0 && overdrawnFactionCount == 0 && invalidSlotCount == 0; }
+    /**
+     * Determines whether the current role list is valid, including whether its wildcard slots can all be filled at the
+     * same time.
+     * @return {@code true} if the current role list is valid, otherwise {@code false}.
+     */
+    public boolean isValidRoleList()
+    {
+        return isFeasible() && new RoleListFeasibility().isFeasible(roleSlots.toArray(RoleSlot[]::new), table, remainingOccurrences);
+    }
+
+    /**
+     * Gets the number of slots in the current role list.
+     * @return The number of slots.
+     */
+    public int size() { return roleSlots.size(); }
 
     /**
      * Adds a role of the provided type to the list, if it is not full, otherwise nothing happens.
@@ -35,6 +121,12 @@ public class RoleListBuilder
     {
         roleSlots.add(RoleInstancePool.getInstance().getInstance(roleType));
     }
+    /**
+     * Adds a role to the list, if it is not full, otherwise nothing happens. Unlike {@link #add(Class)}, this can add
+     * {@link CustomRole custom roles}.
+     * @param role The role to add.
+     */
+    public void add(Role role) { roleSlots.add(role); }
     /**
      * Adds a role alignment to the list, if it is not full, otherwise nothing happens.
      * @param alignment The role alignment to add to the role list.
@@ -60,4 +152,204 @@ public class RoleListBuilder
         for (int i = 0; i < count; i++)
             roleSlots.add(slot);
     }
+    /**
+     * Replaces the slot at the given index.
+     * @param index The index of the slot to replace.
+     * @param slot The new slot.
+     * @return The replaced slot.
+     */
+    public RoleSlot set(int index, RoleSlot slot)
+    {
+        var previous = roleSlots.get(index);
+        roleSlots.set(index, slot);
+        return previous;
+    }
+    /**
+     * Removes the slot at the given index.
+     * @param index The index of the slot to remove.
+     * @return The removed slot.
+     */
+    public RoleSlot remove(int index) { return roleSlots.remove(index); }
+
+    private void reset()
+    {
+        Arrays.fill(remainingOccurrences, 0);
+        Arrays.fill(remainingFactionSlots, 0);
+        for (long mask = availableRolesMask & table.getAllRolesMask(); mask != 0; mask &= mask - 1)
+        {
+            int id = Long.numberOfTrailingZeros(mask);
+            remainingOccurrences[id] = table.getMaximumOccurrences(id);
+            remainingFactionSlots[table.getFactionOrdinal(id)] += table.getMaximumOccurrences(id);
+        }
+        overdrawnRoleCount = 0;
+        overdrawnFactionCount = 0;
+        invalidSlotCount = 0;
+    }
+
+    // Takes (1) or gives back (-1) the capacity of the given slot
+    private void track(RoleSlot slot, int taken)
+    {
+        if (slot instanceof RoleAlignment)
+        {
+            int factionOrdinal = ((RoleAlignment)slot).roleFaction.ordinal();
+            if (factionOrdinal != Faction.Any.ordinal())
+                overdrawnFactionCount += take(remainingFactionSlots, factionOrdinal, taken);
+            return;
+        }
+
+        int id = slot instanceof Role ? table.getRoleId((Role)slot) : -1;
+        if (id < 0)
+        {
+            invalidSlotCount += taken;
+            return;
+        }
+
+        overdrawnRoleCount += take(remainingOccurrences, id, taken);
+        overdrawnFactionCount += take(remainingFactionSlots, table.getFactionOrdinal(id), taken);
+    }
+
+    // Returns the change in the number of overdrawn capacities
+    private static int take(int[] capacities, int index, int taken)
+    {
+        int before = capacities[index];
+        capacities[index] -= taken;
+        return (capacities[index] < 0 ? 1 : 0) - (before < 0 ? 1 : 0);
+    }
+
+    private void retrack()
+    {
+        reset();
+        for (var slot : roleSlots)
+            track(slot, 1);
+    }
+
+    private final class TrackedSlotList
+        extends CappedList<RoleSlot>
+    {
+        private TrackedSlotList()
+        {
+            super(RoleList.MaximumSlotCount);
+        }
+
+        @Override
+        public boolean add(RoleSlot item)
+        {
+            if (!super.add(item))
+                return false;
+
+            track(item, 1);
+            return true;
+        }
+        @Override
+        public void add(int index, RoleSlot item)
+        {
+            int size = size();
+            super.add(index, item);
+            if (size() != size)
+                track(item, 1);
+        }
+        @Override
+        public RoleSlot set(int index, RoleSlot value)
+        {
+            var previous = get(index);
+            super.set(index, value);
+            track(previous, -1);
+            track(value, 1);
+            return previous;
+        }
+        @Override
+        public RoleSlot remove(int index)
+        {
+            var removed = super.remove(index);
+            track(removed, -1);
+            return removed;
+        }
+        @Override
+        public boolean remove(Object o)
+        {
+            if (!super.remove(o))
+                return false;
+
+            track((RoleSlot)o, -1);
+            return true;
+        }
+        @Override
+        public void clear()
+        {
+            super.clear();
+            reset();
+        }
+
+        // Bulk changes recount all the slots
+        @Override
+        public boolean addAll(Collection<? extends RoleSlot> collection)
+        {
+            boolean changed = super.addAll(collection);
+            retrack();
+            return changed;
+        }
+        @Override
+        public boolean addAll(int index, Collection<? extends RoleSlot> collection)
+        {
+            boolean changed = super.addAll(index, collection);
+            retrack();
+            return changed;
+        }
+        @Override
+        public boolean removeAll(Collection<?> collection)
+        {
+            boolean changed = super.removeAll(collection);
+            retrack();
+            return changed;
+        }
+        @Override
+        public boolean retainAll(Collection<?> collection)
+        {
+            boolean changed = super.retainAll(collection);
+            retrack();
+            return changed;
+        }
+
+        @Override
+        public boolean removeIf(Predicate<? super RoleSlot> filter)
+        {
+            boolean changed = false;
+            for (int i = size() - 1; i >= 0; i--)
+            {
+                if (filter.test(get(i)))
+                {
+                    remove(i);
+                    changed = true;
+                }
+            }
+            return changed;
+        }
+        @Override
+        public void replaceAll(UnaryOperator<RoleSlot> operator)
+        {
+            for (int i = 0; i < size(); i++)
+                set(i, operator.apply(get(i)));
+        }
+        @Override
+        public void sort(Comparator<? super RoleSlot> comparator)
+        {
+            // Reordering does not change the tracked capacities
+            var sorted = toArray(RoleSlot[]::new);
+            Arrays.sort(sorted, comparator);
+            for (int i = 0; i < sorted.length; i++)
+                super.set(i, sorted[i]);
+        }
+
+        @Override
+        public Iterator<RoleSlot> iterator() { return listIterator(); }
+        @Override
+        public ListIterator<RoleSlot> listIterator() { return listIterator(0); }
+        @Override
+        public ListIterator<RoleSlot> listIterator(int index)
+        {
+            return Collections.unmodifiableList(super.subList(0, size())).listIterator(index);
+        }
+        @Override
+        public List<RoleSlot> subList(int from, int to) { return Collections.unmodifiableList(super.subList(from, to)); }
+    }
 }
@@ -0,0 +1,234 @@
+package com.github.alfasgd.salem;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Provides a compact binary encoding of role lists, where every slot is stored as its {@link RoleSlotCodes slot code}
+ * in {@link RoleSlotCodes#BitsPerSlot} bits, in the order of the slots. The first {@link RoleSlotCodes#SlotsPerLong}
+ * slots are packed into a low {@code long}, and the rest into a high {@code long}, so that every role list takes
+ * {@link #BytesPerRoleList} bytes; unused slots are {@link RoleSlotCodes#EmptyCode}.
+ * <p>
+ * The role codes refer to the IDs of a {@link RoleTypeTable}, so role lists must be decoded with the same table that
+ * they were encoded with. Instances are immutable and may be shared across threads.
+ * </p>
+ */
+public final class RoleListCodec
+{
+    /**
+     * The number of bytes that an encoded role list takes.
+     */
+    public static final int BytesPerRoleList = 2 * Long.BYTES;
+
+    private final RoleTypeTable table;
+
+    /**
+     * Initializes a new instance of the {@link RoleListCodec} class for the table of the registered role types.
+     */
+    public RoleListCodec()
+    {
+        this(RoleInstancePool.getInstance().getRoleTypeTable());
+    }
+    /**
+     * Initializes a new instance of the {@link RoleListCodec} class for the given table.
+     * @param table The role type table that the role codes refer to.
+     */
+    public RoleListCodec(RoleTypeTable table)
+    {
+        this.table = table;
+    }
+
+    /**
+     * Gets the role type table that the role codes refer to.
+     * @return The role type table.
+     */
+    public RoleTypeTable getRoleTypeTable() { return table; }
+
+    /**
+     * Encodes the first slots of the given role list into the low {@code long}.
+     * @param roleList The role list.
+     * @return The low {@code long} of the encoded role list.
+     */
+    public long encodeLow(RoleList roleList) { return encodeLow(roleList.getRoleSlotsArray(), roleList.size()); }
+    /**
+     * Encodes the slots of the given role list after the first {@link RoleSlotCodes#SlotsPerLong} into the high
+     * {@code long}.
+     * @param roleList The role list.
+     * @return The high {@code long} of the encoded role list.
+     */
+    public long encodeHigh(RoleList roleList) { return encodeHigh(roleList.getRoleSlotsArray(), roleList.size()); }
+    /**
+     * Encodes the first slots of the given array into the low {@code long}.
+     * @param slots The role slots.
+     * @param count The number of the slots to encode, at most {@link RoleList#MaximumSlotCount}.
+     * @return The low {@code long} of the encoded role slots.
+     */
+    public long encodeLow(RoleSlot[] slots, int count)
+    {
+        long packed = 0;
+        for (int i = Math.min(count, RoleSlotCodes.SlotsPerLong) - 1; i >= 0; i--)
+            packed = packed << RoleSlotCodes.BitsPerSlot | RoleSlotCodes.getCode(slots[i], table);
+        return packed;
+    }
+    /**
+     * Encodes the slots of the given array after the first {@link RoleSlotCodes#SlotsPerLong} into the high
+     * {@code long}.
+     * @param slots The role slots.
+     * @param count The number of the slots to encode, at most {@link RoleList#MaximumSlotCount}.
+     * @return The high {@code long} of the encoded role slots.
+     */
+    public long encodeHigh(RoleSlot[] slots, int count)
+    {
+        long packed = 0;
+        for (int i = count - 1; i >= RoleSlotCodes.SlotsPerLong; i--)
+            packed = packed << RoleSlotCodes.BitsPerSlot | RoleSlotCodes.getCode(slots[i], table);
+        return packed;
+    }
+
+    /**
+     * Decodes an encoded role list into the given array, without allocating.
+     * @param low The low {@code long} of the encoded role list.
+     * @param high The high {@code long} of the encoded role list.
+     * @param destination The array to store the role slots in. It must be long enough to contain all of them.
+     * @return The number of the decoded role slots.
+     */
+    public int decode(long low, long high, RoleSlot[] destination)
+    {
+        int count = decodePart(low, destination, 0, RoleSlotCodes.SlotsPerLong);
+        if (count < RoleSlotCodes.SlotsPerLong)
+            return count;
+        return count + decodePart(high, destination, count, RoleList.MaximumSlotCount - count);
+    }
+    /**
+     * Decodes an encoded role list.
+     * @param low The low {@code long} of the encoded role list.
+     * @param high The high {@code long} of the encoded role list.
+     * @return The decoded role list.
+     */
+    public RoleList decode(long low, long high)
+    {
+        var slots = new RoleSlot[RoleList.MaximumSlotCount];
+        int count = decode(low, high, slots);
+        return new RoleList(Arrays.copyOf(slots, count), false);
+    }
+
+    /**
+     * Gets the number of the slots of an encoded role list, without decoding them.
+     * @param low The low {@code long} of the encoded role list.
+     * @param high The high {@code long} of the encoded role list.
+     * @return The number of the slots.
+     */
+    public int getSlotCount(long low, long high)
+    {
+        int count = getPartSlotCount(low);
+        return count < RoleSlotCodes.SlotsPerLong ? count : count + getPartSlotCount(high);
+    }
+
+    // Slot codes are never empty before the last slot, so the highest non-empty code gives the count
+    private static int getPartSlotCount(long packed)
+    {
+        return (Long.SIZE - Long.numberOfLeadingZeros(packed) + RoleSlotCodes.BitsPerSlot - 1) / RoleSlotCodes.BitsPerSlot;
+    }
+
+    private int decodePart(long packed, RoleSlot[] destination, int offset, int maximumCount)
+    {
+        int count = 0;
+        for (; count < maximumCount; count++, packed >>>= RoleSlotCodes.BitsPerSlot)
+        {
+            int code = (int)packed & RoleSlotCodes.SlotCodeMask;
+            if (code == RoleSlotCodes.EmptyCode)
+                break;
+            destination[offset + count] = RoleSlotCodes.getSlot(code, table);
+        }
+        return count;
+    }
+
+    /**
+     * Writes the given role list to the buffer, advancing its position by {@link #BytesPerRoleList} bytes.
+     * @param buffer The buffer to write to.
+     * @param roleList The role list.
+     */
+    public void write(ByteBuffer buffer, RoleList roleList)
+    {
+        buffer.putLong(encodeLow(roleList));
+        buffer.putLong(encodeHigh(roleList));
+    }
+    /**
+     * Writes the given role lists to the buffer, advancing its position by {@link #BytesPerRoleList} bytes for every
+     * role list.
+     * @param buffer The buffer to write to.
+     * @param roleLists The array of the role lists.
+     * @param offset The index of the first role list to write.
+     * @param count The number of the role lists to write.
+     */
+    public void write(ByteBuffer buffer, RoleList[] roleLists, int offset, int count)
+    {
+        for (int i = offset; i < offset + count; i++)
+            write(buffer, roleLists[i]);
+    }
+
+    /**
+     * Reads a role list from the buffer into the given array without allocating, advancing the buffer's position by
+     * {@link #BytesPerRoleList} bytes.
+     * @param buffer The buffer to read from.
+     * @param destination The array to store the role slots in. It must be long enough to contain all of them.
+     * @return The number of the read role slots.
+     */
+    public int read(ByteBuffer buffer, RoleSlot[] destination)
+    {
+        long low = buffer.getLong();
+        long high = buffer.getLong();
+        return decode(low, high, destination);
+    }
+    /**
+     * Reads a role list from the buffer, advancing its position by {@link #BytesPerRoleList} bytes.
+     * @param buffer The buffer to read from.
+     * @return The read role list.
+     */
+    public RoleList read(ByteBuffer buffer)
+    {
+        long low = buffer.getLong();
+        long high = buffer.getLong();
+        return decode(low, high);
+    }
+    /**
+     * Reads role lists from the buffer into the given array, advancing the buffer's position by
+     * {@link #BytesPerRoleList} bytes for every role list.
+     * @param buffer The buffer to read from.
+     * @param destination The array to store the role lists in.
+     * @param offset The index of the first role list to store.
+     * @param count The number of the role lists to read.
+     */
+    public void read(ByteBuffer buffer, RoleList[] destination, int offset, int count)
+    {
+        for (int i = offset; i < offset + count; i++)
+            destination[i] = read(buffer);
+    }
+    /**
+     * Reads encoded role lists from the buffer without decoding them, advancing the buffer's position by
+     * {@link #BytesPerRoleList} bytes for every role list. The low and high {@code long}s of every role list are stored
+     * in consecutive elements of the destination array.
+     * @param buffer The buffer to read from.
+     * @param destination The array to store the encoded role lists in.
+     * @param offset The index of the first role list to store; its low {@code long} is stored at twice the index.
+     * @param count The number of the role lists to read.
+     */
+    public void readEncoded(ByteBuffer buffer, long[] destination, int offset, int count)
+    {
+        buffer.asLongBuffer().get(destination, 2 * offset, 2 * count);
+        buffer.position(buffer.position() + count * BytesPerRoleList);
+    }
+    /**
+     * Writes encoded role lists to the buffer, advancing its position by {@link #BytesPerRoleList} bytes for every
+     * role list. The low and high {@code long}s of every role list are read from consecutive elements of the array.
+     * @param buffer The buffer to write to.
+     * @param encoded The array of the encoded role lists.
+     * @param offset The index of the first role list to write; its low {@code long} is read at twice the index.
+     * @param count The number of the role lists to write.
+     */
+    public void writeEncoded(ByteBuffer buffer, long[] encoded, int offset, int count)
+    {
+        buffer.asLongBuffer().put(encoded, 2 * offset, 2 * count);
+        buffer.position(buffer.position() + count * BytesPerRoleList);
+    }
+}
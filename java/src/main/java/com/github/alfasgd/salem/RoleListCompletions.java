@@ -0,0 +1,767 @@
+package com.github.alfasgd.salem;
+
+import com.github.alfasgd.salem.common.*;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.random.RandomGenerator;
+import java.util.stream.*;
+
+/**
+ * Represents the space of all the concrete completions of a role list, i.e. all the ways to fill its wildcard slots
+ * with available roles without exceeding their maximum occurrences. The completions are counted exactly, which allows
+ * sampling them uniformly, so that every valid filled-in role list is equally likely.
+ * <p>
+ * The wildcard slots are grouped into slot types by their filters. A completion is built by deciding, for every
+ * available role and every slot type that the role matches, how many slots of the type the role takes, and which ones.
+ * The number of completions that follow each decision only depends on the remaining slots of every type and the
+ * remaining occurrences of the current role, so they are counted once for every such state and stored in tables.
+ * Sampling then draws a uniformly random index among all the completions and walks the tables to find it. Preparing
+ * the tables is a one-time step; instances are immutable and may be shared across threads.
+ * </p>
+ * <p>
+ * The indices of the completions form a bijection between the completions and the numbers from 0 to
+ * {@link #getCount()}; {@link #rank(RoleSlot[])} and {@link #unrank(long, RoleSlot[])} convert between them in
+ * O(slots &times; roles) time, without allocating while the count fits in a {@code long}. A completion can thus be
+ * stored as a single number, and the enumeration can be sharded by ranges of indices.
+ * </p>
+ * <p>
+ * By default, completions that only differ in which slot a role is placed in are counted separately, since the order of
+ * the slots is observable. Per-filter multisets instead treat the wildcard slots with the same filter as
+ * interchangeable, so that every completion is a distinct multiset of roles for every filter. In that case, the roles
+ * of every filter are placed in their slots in the order of their IDs.
+ * </p>
+ * <p>
+ * Per-filter multisets are not the distinct games, which are the multisets of all the roles regardless of their
+ * slots: when different filters match the same roles, one game is counted once for every way of assigning its roles
+ * to the filters. For example, {@code Town Investigative, Town Any} counts both a Sheriff as the investigative and a
+ * Lookout as the other Town role, and the other way around.
+ * </p>
+ */
+public final class RoleListCompletions
+{
+    private static final long[][] binomials = new long[RoleList.MaximumSlotCount + 1][RoleList.MaximumSlotCount + 1];
+
+    static
+    {
+        for (int n = 0; n <= RoleList.MaximumSlotCount; n++)
+        {
+            binomials[n][0] = 1;
+            for (int k = 1; k <= n; k++)
+                binomials[n][k] = binomials[n - 1][k - 1] + binomials[n - 1][k];
+        }
+    }
+
+    private final RoleList roleList;
+    private final RoleTypeTable table;
+    private final RoleSlot[] slots;
+    private final boolean perFilterMultisets;
+
+    private final int[] typeSizes;
+    private final int[] typeRadices;
+    private final int[] typeSlotMasks;
+    private final int initialCode;
+    private final int wildcardSlotMask;
+
+    private final int stepCount;
+    private final int[] stepRoles;
+    private final int[] stepTypes;
+    private final int[] stepCapacityDimensions;
+
+    private final long[][] longCounts;
+    private final BigInteger[][] bigCounts;
+    private final BigInteger count;
+
+    private RoleListCompletions(RoleList roleList, RoleTypeTable table, int[] remainingOccurrences, boolean perFilterMultisets)
+    {
+        this.roleList = roleList;
+        this.table = table;
+        this.perFilterMultisets = perFilterMultisets;
+        slots = roleList.getRoleSlotsArray();
+
+        // Group the wildcard slots into slot types by their filters
+        var typeCodes = new int[slots.length];
+        var sizes = new int[slots.length];
+        var slotMasks = new int[slots.length];
+        int typeCount = 0;
+        int wildcards = 0;
+        for (int i = 0; i < slots.length; i++)
+        {
+            if (!(slots[i] instanceof RoleAlignment))
+                continue;
+
+            wildcards |= 1 << i;
+            int code = ((RoleAlignment)slots[i]).getCode();
+            int type = 0;
+            while (type < typeCount && typeCodes[type] != code)
+                type++;
+            if (type == typeCount)
+                typeCodes[typeCount++] = code;
+
+            sizes[type]++;
+            slotMasks[type] |= 1 << i;
+        }
+        wildcardSlotMask = wildcards;
+
+        typeSizes = new int[typeCount];
+        typeRadices = new int[typeCount];
+        typeSlotMasks = new int[typeCount];
+        int stateCount = 1;
+        int code = 0;
+        for (int type = 0; type < typeCount; type++)
+        {
+            typeSizes[type] = sizes[type];
+            typeSlotMasks[type] = slotMasks[type];
+            typeRadices[type] = stateCount;
+            code += sizes[type] * stateCount;
+            stateCount *= sizes[type] + 1;
+        }
+        initialCode = code;
+
+        // Every decision step is a pair of an available role and a slot type that it matches
+        var roles = new int[typeCount * table.getRoleCount()];
+        var types = new int[roles.length];
+        var capacityDimensions = new int[roles.length];
+        int steps = 0;
+        for (int id = 0; id < table.getRoleCount(); id++)
+        {
+            if (remainingOccurrences[id] <= 0)
+                continue;
+
+            int firstStep = steps;
+            int matchingSlots = 0;
+            long roleMask = 1L << id;
+            for (int type = 0; type < typeCount; type++)
+            {
+                if ((table.getAlignmentFilterMask(typeCodes[type]) & roleMask) == 0)
+                    continue;
+
+                roles[steps] = id;
+                types[steps] = type;
+                steps++;
+                matchingSlots += typeSizes[type];
+            }
+
+            // Only the roles that cannot take all the slots they match need to track their remaining occurrences
+            int capacityDimension = remainingOccurrences[id] < matchingSlots ? remainingOccurrences[id] + 1 : 1;
+            for (int step = firstStep; step < steps; step++)
+                capacityDimensions[step] = capacityDimension;
+        }
+
+        stepCount = steps;
+        stepRoles = Arrays.copyOf(roles, steps);
+        stepTypes = Arrays.copyOf(types, steps);
+        stepCapacityDimensions = Arrays.copyOf(capacityDimensions, steps);
+
+        long[][] counts = null;
+        try
+        {
+            counts = calculateLongCounts(stateCount);
+        }
+        catch (ArithmeticException ignored) { }
+
+        if (counts != null)
+        {
+            longCounts = counts;
+            bigCounts = null;
+            count = BigInteger.valueOf(getLongCount(0, initialCode, getInitialCapacity(0)));
+        }
+        else
+        {
+            longCounts = null;
+            bigCounts = calculateBigCounts(stateCount);
+            count = getBigCount(0, initialCode, getInitialCapacity(0));
+        }
+    }
+
+    /**
+     * Prepares the completions of the given role list for the roles that are available in the given game pack types.
+     * @param roleList The role list.
+     * @param packTypes The game pack types where the role list is applied on.
+     * @return The completions of the role list, or {@code null} if the role list is invalid.
+     */
+    public static RoleListCompletions prepare(RoleList roleList, GamePackTypes packTypes)
+    {
+        return prepare(roleList, RoleCollection.getStartableRolesCollection(packTypes), false);
+    }
+    /**
+     * Prepares the completions of the given role list for the roles that are available in the given game pack types.
+     * @param roleList The role list.
+     * @param packTypes The game pack types where the role list is applied on.
+     * @param perFilterMultisets Whether the wildcard slots with the same filter are interchangeable, so that only the
+     *                           distinct multisets of roles for every filter are considered. These are not the distinct
+     *                           games if different filters match the same roles.
+     * @return The completions of the role list, or {@code null} if the role list is invalid.
+     */
+    public static RoleListCompletions prepare(RoleList roleList, GamePackTypes packTypes, boolean perFilterMultisets)
+    {
+        return prepare(roleList, RoleCollection.getStartableRolesCollection(packTypes), perFilterMultisets);
+    }
+    /**
+     * Prepares the completions of the given role list for the given available roles.
+     * @param roleList The role list.
+     * @param availableRoles The available roles collection.
+     * @return The completions of the role list, or {@code null} if the role list is invalid.
+     */
+    public static RoleListCompletions prepare(RoleList roleList, RoleCollection availableRoles)
+    {
+        return prepare(roleList, availableRoles, false);
+    }
+    /**
+     * Prepares the completions of the given role list for the given available roles.
+     * @param roleList The role list.
+     * @param availableRoles The available roles collection.
+     * @param perFilterMultisets Whether the wildcard slots with the same filter are interchangeable, so that only the
+     *                           distinct multisets of roles for every filter are considered. These are not the distinct
+     *                           games if different filters match the same roles.
+     * @return The completions of the role list, or {@code null} if the role list is invalid.
+     */
+    public static RoleListCompletions prepare(RoleList roleList, RoleCollection availableRoles, boolean perFilterMultisets)
+    {
+        var table = RoleInstancePool.getInstance().getRoleTypeTable();
+        var remainingOccurrences = new int[table.getRoleCount()];
+        if (!RoleList.validateRoleList(roleList.getRoleSlotsArray(), table, availableRoles.getRoleMask(),
+                remainingOccurrences, new int[Faction.values().length], new RoleListFeasibility()))
+            return null;
+
+        return new RoleListCompletions(roleList, table, remainingOccurrences, perFilterMultisets);
+    }
+
+    private long[][] calculateLongCounts(int stateCount)
+    {
+        var counts = new long[stepCount][];
+        for (int step = stepCount - 1; step >= 0; step--)
+        {
+            int dimension = stepCapacityDimensions[step];
+            var stepCounts = new long[stateCount * dimension];
+            for (int code = 0; code < stateCount; code++)
+            {
+                for (int capacity = 0; capacity < dimension; capacity++)
+                {
+                    int type = stepTypes[step];
+                    int remaining = getRemaining(code, type);
+                    int maximum = dimension == 1 ? remaining : Math.min(remaining, capacity);
+
+                    long sum = 0;
+                    for (int k = 0; k <= maximum; k++)
+                    {
+                        int nextCode = code - k * typeRadices[type];
+                        long next = step + 1 == stepCount
+                                ? (nextCode == 0 ? 1 : 0)
+                                : counts[step + 1][nextCode * stepCapacityDimensions[step + 1] + getNextCapacity(step, capacity, k)];
+                        sum = Math.addExact(sum, Math.multiplyExact(getWeight(remaining, k), next));
+                    }
+                    stepCounts[code * dimension + capacity] = sum;
+                }
+            }
+            counts[step] = stepCounts;
+        }
+        return counts;
+    }
+    private BigInteger[][] calculateBigCounts(int stateCount)
+    {
+        var counts = new BigInteger[stepCount][];
+        for (int step = stepCount - 1; step >= 0; step--)
+        {
+            int dimension = stepCapacityDimensions[step];
+            var stepCounts = new BigInteger[stateCount * dimension];
+            for (int code = 0; code < stateCount; code++)
+            {
+                for (int capacity = 0; capacity < dimension; capacity++)
+                {
+                    int type = stepTypes[step];
+                    int remaining = getRemaining(code, type);
+                    int maximum = dimension == 1 ? remaining : Math.min(remaining, capacity);
+
+                    var sum = BigInteger.ZERO;
+                    for (int k = 0; k <= maximum; k++)
+                    {
+                        int nextCode = code - k * typeRadices[type];
+                        var next = step + 1 == stepCount
+                                ? (nextCode == 0 ? BigInteger.ONE : BigInteger.ZERO)
+                                : counts[step + 1][nextCode * stepCapacityDimensions[step + 1] + getNextCapacity(step, capacity, k)];
+                        if (next.signum() != 0)
+                            sum = sum.add(next.multiply(BigInteger.valueOf(getWeight(remaining, k))));
+                    }
+                    stepCounts[code * dimension + capacity] = sum;
+                }
+            }
+            counts[step] = stepCounts;
+        }
+        return counts;
+    }
+
+    private int getRemaining(int code, int type) { return code / typeRadices[type] % (typeSizes[type] + 1); }
+    private int getInitialCapacity(int step) { return step == stepCount ? 0 : stepCapacityDimensions[step] - 1; }
+    private int getNextCapacity(int step, int capacity, int taken)
+    {
+        if (step + 1 == stepCount || stepRoles[step + 1] != stepRoles[step])
+            return getInitialCapacity(step + 1);
+        return stepCapacityDimensions[step] == 1 ? 0 : capacity - taken;
+    }
+    // The number of ways to choose which of the remaining slots of the type the role takes
+    private long getWeight(int remaining, int taken) { return perFilterMultisets ? 1 : binomials[remaining][taken]; }
+
+    private long getLongCount(int step, int code, int capacity)
+    {
+        if (step == stepCount)
+            return code == 0 ? 1 : 0;
+        return longCounts[step][code * stepCapacityDimensions[step] + capacity];
+    }
+    private BigInteger getBigCount(int step, int code, int capacity)
+    {
+        if (step == stepCount)
+            return code == 0 ? BigInteger.ONE : BigInteger.ZERO;
+        return bigCounts[step][code * stepCapacityDimensions[step] + capacity];
+    }
+
+    /**
+     * Gets the role list whose completions these are.
+     * @return The role list whose completions these are.
+     */
+    public RoleList getRoleList() { return roleList; }
+    /**
+     * Gets the number of the completions of the role list.
+     * @return The number of the completions.
+     */
+    public BigInteger getCount() { return count; }
+    /**
+     * Determines whether the number of the completions fits in a {@code long}, in which case sampling does not allocate.
+     * @return {@code true} if the number of the completions fits in a {@code long}, otherwise {@code false}.
+     */
+    public boolean fitsInLong() { return longCounts != null; }
+    /**
+     * Determines whether the wildcard slots with the same filter are interchangeable, so that only the distinct
+     * multisets of roles for every filter are considered.
+     * @return {@code true} if only the per-filter multisets are considered, otherwise {@code false}.
+     */
+    public boolean countsPerFilterMultisets() { return perFilterMultisets; }
+
+    /**
+     * Samples a uniformly random completion of the role list, where every completion is equally likely.
+     * @param random The random number generator to use.
+     * @return The sampled role list.
+     */
+    public RoleList generateRandomRoleList(RandomGenerator random)
+    {
+        var destination = new RoleSlot[slots.length];
+        sample(random, destination);
+        return new RoleList(destination);
+    }
+    /**
+     * Samples a uniformly random completion of the role list into the given array, where every completion is equally
+     * likely. If {@link #fitsInLong()} is {@code true}, this does not allocate.
+     * @param random The random number generator to use.
+     * @param destination The array to store the roles of the completion in. It must be at least as long as the role list.
+     */
+    public void sample(RandomGenerator random, RoleSlot[] destination)
+    {
+        if (longCounts != null)
+        {
+            unrank(random.nextLong(count.longValue()), destination);
+            return;
+        }
+
+        // Draw uniformly among the numbers with as many bits as the count, rejecting the ones that exceed it
+        int bitLength = count.bitLength();
+        var bytes = new byte[(bitLength + 7) / 8 + 1];
+        BigInteger index;
+        do
+        {
+            random.nextBytes(bytes);
+            bytes[0] = 0;
+            index = new BigInteger(bytes).shiftRight(bytes.length * 8 - 8 - bitLength);
+        }
+        while (index.compareTo(count) >= 0);
+        unrank(index, destination);
+    }
+
+    /**
+     * Stores the completion with the given index in the given array. If {@link #fitsInLong()} is {@code true}, this
+     * does not allocate.
+     * @param rank The index of the completion, ranging from 0 (inclusive) to {@link #getCount()} (exclusive).
+     * @param destination The array to store the roles of the completion in. It must be at least as long as the role list.
+     */
+    public void unrank(long rank, RoleSlot[] destination)
+    {
+        if (longCounts == null)
+        {
+            unrank(BigInteger.valueOf(rank), destination);
+            return;
+        }
+
+        if (rank < 0 || rank >= count.longValue())
+            throw new IndexOutOfBoundsException("The rank must be less than the number of completions.");
+        fill(rank, destination);
+    }
+    /**
+     * Stores the completion with the given index in the given array.
+     * @param rank The index of the completion, ranging from 0 (inclusive) to {@link #getCount()} (exclusive).
+     * @param destination The array to store the roles of the completion in. It must be at least as long as the role list.
+     */
+    public void unrank(BigInteger rank, RoleSlot[] destination)
+    {
+        if (rank.signum() < 0 || rank.compareTo(count) >= 0)
+            throw new IndexOutOfBoundsException("The rank must be less than the number of completions.");
+
+        if (longCounts != null)
+            fill(rank.longValue(), destination);
+        else
+            fill(rank, destination);
+    }
+
+    /**
+     * Gets the index of the given completion of the role list. If {@link #countsPerFilterMultisets()} is {@code true}, the order of
+     * the roles in the wildcard slots with the same filter is ignored.
+     * @param completion The roles of the completion, one for every slot of the role list.
+     * @return The index of the completion.
+     * @throws IllegalArgumentException If the given roles are not a completion of the role list.
+     */
+    public BigInteger rank(RoleSlot[] completion)
+    {
+        if (longCounts != null)
+            return BigInteger.valueOf(rankLong(completion));
+
+        checkFixedSlots(completion);
+
+        var rank = BigInteger.ZERO;
+        int code = initialCode;
+        int capacity = getInitialCapacity(0);
+        int free = wildcardSlotMask;
+        for (int step = 0; step < stepCount; step++)
+        {
+            int type = stepTypes[step];
+            int remaining = getRemaining(code, type);
+            int roleSlots = getRoleSlots(step, completion);
+            int taken = Integer.bitCount(roleSlots);
+            if (taken > (stepCapacityDimensions[step] == 1 ? remaining : capacity))
+                throw new IllegalArgumentException("The completion exceeds the maximum occurrences of a role.");
+
+            for (int k = 0; k < taken; k++)
+            {
+                var next = getBigCount(step + 1, code - k * typeRadices[type], getNextCapacity(step, capacity, k));
+                rank = rank.add(next.multiply(BigInteger.valueOf(getWeight(remaining, k))));
+            }
+
+            var next = getBigCount(step + 1, code - taken * typeRadices[type], getNextCapacity(step, capacity, taken));
+            rank = rank.add(next.multiply(BigInteger.valueOf(getCombinationIndex(step, free, remaining, roleSlots))));
+            free &= ~roleSlots;
+            capacity = getNextCapacity(step, capacity, taken);
+            code -= taken * typeRadices[type];
+        }
+
+        if (code != 0)
+            throw new IllegalArgumentException("The completion contains roles that do not match their slots.");
+        return rank;
+    }
+    /**
+     * Gets the index of the given completion of the role list, without allocating. If {@link #countsPerFilterMultisets()} is
+     * {@code true}, the order of the roles in the wildcard slots with the same filter is ignored.
+     * @param completion The roles of the completion, one for every slot of the role list.
+     * @return The index of the completion.
+     * @throws IllegalArgumentException If the given roles are not a completion of the role list.
+     * @throws ArithmeticException If the number of completions does not fit in a {@code long}.
+     */
+    public long rankLong(RoleSlot[] completion)
+    {
+        if (longCounts == null)
+            throw new ArithmeticException("The number of completions does not fit in a long.");
+
+        checkFixedSlots(completion);
+
+        long rank = 0;
+        int code = initialCode;
+        int capacity = getInitialCapacity(0);
+        int free = wildcardSlotMask;
+        for (int step = 0; step < stepCount; step++)
+        {
+            int type = stepTypes[step];
+            int remaining = getRemaining(code, type);
+            int roleSlots = getRoleSlots(step, completion);
+            int taken = Integer.bitCount(roleSlots);
+            if (taken > (stepCapacityDimensions[step] == 1 ? remaining : capacity))
+                throw new IllegalArgumentException("The completion exceeds the maximum occurrences of a role.");
+
+            for (int k = 0; k < taken; k++)
+                rank += getWeight(remaining, k) * getLongCount(step + 1, code - k * typeRadices[type], getNextCapacity(step, capacity, k));
+
+            long next = getLongCount(step + 1, code - taken * typeRadices[type], getNextCapacity(step, capacity, taken));
+            rank += getCombinationIndex(step, free, remaining, roleSlots) * next;
+            free &= ~roleSlots;
+            capacity = getNextCapacity(step, capacity, taken);
+            code -= taken * typeRadices[type];
+        }
+
+        if (code != 0)
+            throw new IllegalArgumentException("The completion contains roles that do not match their slots.");
+        return rank;
+    }
+
+    private void checkFixedSlots(RoleSlot[] completion)
+    {
+        if (completion.length < slots.length)
+            throw new IllegalArgumentException("The completion must contain a role for every slot.");
+
+        for (int i = 0; i < slots.length; i++)
+            if (slots[i] instanceof Role && completion[i] != slots[i])
+                throw new IllegalArgumentException("The completion must keep the fixed roles of the role list.");
+    }
+
+    // Gets the mask of the slots of the step's type that contain the step's role
+    private int getRoleSlots(int step, RoleSlot[] completion)
+    {
+        var role = table.getRole(stepRoles[step]);
+        int roleSlots = 0;
+        for (int mask = typeSlotMasks[stepTypes[step]]; mask != 0; mask &= mask - 1)
+        {
+            int slot = Integer.numberOfTrailingZeros(mask);
+            if (completion[slot] == role)
+                roleSlots |= 1 << slot;
+        }
+        return roleSlots;
+    }
+
+    // The inverse of take, ranking the chosen slots among the remaining free slots of the type
+    private long getCombinationIndex(int step, int free, int remaining, int roleSlots)
+    {
+        if (perFilterMultisets)
+            return 0;
+
+        long combination = 0;
+        int taken = Integer.bitCount(roleSlots);
+        int typeFree = free & typeSlotMasks[stepTypes[step]];
+        for (int position = 0; taken > 0; position++, typeFree &= typeFree - 1)
+        {
+            if ((roleSlots & typeFree & -typeFree) != 0)
+                taken--;
+            else
+                combination += binomials[remaining - position - 1][taken - 1];
+        }
+        return combination;
+    }
+
+    /**
+     * Creates a lazy spliterator over all the completions of the role list, in the order of their indices. The
+     * completions are built one at a time as they are consumed, and the spliterator splits into halves of its range of
+     * indices, so that it may be used in parallel streams. The completions are not necessarily distinct role lists,
+     * since role lists are equal regardless of the order of their slots, and completions that place the same roles in
+     * slots with different filters are equal.
+     * @return The spliterator over all the completions.
+     */
+    public Spliterator<RoleList> spliterator()
+    {
+        if (longCounts != null)
+            return new CompletionSpliterator(0, count.longValue());
+        return new CompletionSpliterator(BigInteger.ZERO, count);
+    }
+    /**
+     * Creates a lazy spliterator over the completions with the indices in the given range, so that the enumeration can
+     * be sharded by ranges of indices.
+     * @param fromRank The first index of the range (inclusive).
+     * @param toRank The last index of the range (exclusive), at most {@link #getCount()}.
+     * @return The spliterator over the completions in the range.
+     */
+    public Spliterator<RoleList> spliterator(BigInteger fromRank, BigInteger toRank)
+    {
+        if (fromRank.signum() < 0 || fromRank.compareTo(toRank) > 0 || toRank.compareTo(count) > 0)
+            throw new IndexOutOfBoundsException("The range of ranks must lie within the number of completions.");
+
+        if (longCounts != null)
+            return new CompletionSpliterator(fromRank.longValue(), toRank.longValue());
+        return new CompletionSpliterator(fromRank, toRank);
+    }
+    /**
+     * Creates a lazy stream of all the completions of the role list, in the order of their indices. Short-circuiting
+     * operations stop building completions as soon as they are done.
+     * @param parallel Whether the stream is parallel.
+     * @return The stream of all the completions.
+     */
+    public Stream<RoleList> stream(boolean parallel) { return StreamSupport.stream(spliterator(), parallel); }
+
+    private void fill(long index, RoleSlot[] destination)
+    {
+        copyFixedSlots(destination);
+
+        int code = initialCode;
+        int capacity = getInitialCapacity(0);
+        int free = wildcardSlotMask;
+        for (int step = 0; step < stepCount; step++)
+        {
+            int type = stepTypes[step];
+            int remaining = getRemaining(code, type);
+            int maximum = stepCapacityDimensions[step] == 1 ? remaining : Math.min(remaining, capacity);
+
+            int taken = 0;
+            long next = 0;
+            for (; taken <= maximum; taken++)
+            {
+                next = getLongCount(step + 1, code - taken * typeRadices[type], getNextCapacity(step, capacity, taken));
+                long block = getWeight(remaining, taken) * next;
+                if (index < block)
+                    break;
+                index -= block;
+            }
+
+            free = take(step, free, remaining, taken, index / next, destination);
+            index %= next;
+            capacity = getNextCapacity(step, capacity, taken);
+            code -= taken * typeRadices[type];
+        }
+    }
+    private void fill(BigInteger index, RoleSlot[] destination)
+    {
+        copyFixedSlots(destination);
+
+        int code = initialCode;
+        int capacity = getInitialCapacity(0);
+        int free = wildcardSlotMask;
+        for (int step = 0; step < stepCount; step++)
+        {
+            int type = stepTypes[step];
+            int remaining = getRemaining(code, type);
+            int maximum = stepCapacityDimensions[step] == 1 ? remaining : Math.min(remaining, capacity);
+
+            int taken = 0;
+            var next = BigInteger.ZERO;
+            for (; taken <= maximum; taken++)
+            {
+                next = getBigCount(step + 1, code - taken * typeRadices[type], getNextCapacity(step, capacity, taken));
+                var block = next.multiply(BigInteger.valueOf(getWeight(remaining, taken)));
+                if (index.compareTo(block) < 0)
+                    break;
+                index = index.subtract(block);
+            }
+
+            var division = index.divideAndRemainder(next);
+            free = take(step, free, remaining, taken, division[0].longValueExact(), destination);
+            index = division[1];
+            capacity = getNextCapacity(step, capacity, taken);
+            code -= taken * typeRadices[type];
+        }
+    }
+
+    // Places the role of the step in the combination with the given index of the remaining free slots of its type
+    private int take(int step, int free, int remaining, int taken, long combination, RoleSlot[] destination)
+    {
+        if (taken == 0)
+            return free;
+
+        var role = table.getRole(stepRoles[step]);
+        int typeFree = free & typeSlotMasks[stepTypes[step]];
+        if (perFilterMultisets)
+        {
+            // Interchangeable slots are filled in order
+            for (; taken > 0; taken--, typeFree &= typeFree - 1)
+            {
+                int slot = Integer.numberOfTrailingZeros(typeFree);
+                destination[slot] = role;
+                free &= ~(1 << slot);
+            }
+            return free;
+        }
+
+        for (int position = 0; position < remaining && taken > 0; position++)
+        {
+            long including = binomials[remaining - position - 1][taken - 1];
+            if (combination >= including)
+            {
+                combination -= including;
+                continue;
+            }
+
+            int slot = BitUtils.selectBit(typeFree, position);
+            destination[slot] = role;
+            free &= ~(1 << slot);
+            taken--;
+        }
+        return free;
+    }
+
+    private void copyFixedSlots(RoleSlot[] destination)
+    {
+        for (int i = 0; i < slots.length; i++)
+            if (slots[i] instanceof Role)
+                destination[i] = slots[i];
+    }
+
+    private final class CompletionSpliterator implements Spliterator<RoleList>
+    {
+        // The range of indices is kept in longs if the count fits in a long, otherwise in big integers
+        private long from;
+        private long to;
+        private BigInteger bigFrom;
+        private BigInteger bigTo;
+
+        private CompletionSpliterator(long from, long to)
+        {
+            this.from = from;
+            this.to = to;
+        }
+        private CompletionSpliterator(BigInteger from, BigInteger to)
+        {
+            bigFrom = from;
+            bigTo = to;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super RoleList> action)
+        {
+            var destination = new RoleSlot[slots.length];
+            if (bigFrom == null)
+            {
+                if (from >= to)
+                    return false;
+                fill(from++, destination);
+            }
+            else
+            {
+                if (bigFrom.compareTo(bigTo) >= 0)
+                    return false;
+                fill(bigFrom, destination);
+                bigFrom = bigFrom.add(BigInteger.ONE);
+            }
+            action.accept(new RoleList(destination));
+            return true;
+        }
+
+        @Override
+        public Spliterator<RoleList> trySplit()
+        {
+            if (bigFrom == null)
+            {
+                long middle = from + (to - from) / 2;
+                if (middle <= from)
+                    return null;
+                var prefix = new CompletionSpliterator(from, middle);
+                from = middle;
+                return prefix;
+            }
+
+            var middle = bigFrom.add(bigTo.subtract(bigFrom).shiftRight(1));
+            if (middle.compareTo(bigFrom) <= 0)
+                return null;
+            var prefix = new CompletionSpliterator(bigFrom, middle);
+            bigFrom = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize()
+        {
+            if (bigFrom == null)
+                return to - from;
+            var size = bigTo.subtract(bigFrom);
+            return size.bitLength() < Long.SIZE ? size.longValue() : Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics()
+        {
+            int characteristics = ORDERED | NONNULL | IMMUTABLE;
+            if (bigFrom == null)
+                characteristics |= SIZED | SUBSIZED;
+            return characteristics;
+        }
+    }
+}
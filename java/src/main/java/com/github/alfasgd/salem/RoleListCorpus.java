@@ -0,0 +1,240 @@
+package com.github.alfasgd.salem;
+
+import java.util.Arrays;
+
+/**
+ * Represents an in-memory, columnar batch of concrete role lists with the same number of slots, for analytics over
+ * large numbers of generated role lists. Every slot is stored as a column of the role IDs of the
+ * {@link RoleTypeTable}, one byte per role list, and the aggregations run as plain loops over the columns, without
+ * creating any objects per role list.
+ * <p>
+ * The role lists of a {@link RoleListStore} can be loaded by scanning it with
+ * {@code store.scan(0, store.size(), (index, roles) -> corpus.add(roles))}. Instances are not thread-safe.
+ * </p>
+ */
+public final class RoleListCorpus
+{
+    private static final int InitialCapacity = 1024;
+    private static final int CountBits = 4;
+
+    private final RoleTypeTable table;
+    private final int slotCount;
+    private final byte[][] columns;
+    private final byte[] factionOrdinals;
+    private int size;
+    private int capacity;
+
+    /**
+     * Initializes a new instance of the {@link RoleListCorpus} class for role lists with the given number of slots,
+     * whose roles are registered in the current role type table.
+     * @param slotCount The number of slots of every role list, at most {@link RoleList#MaximumSlotCount}.
+     */
+    public RoleListCorpus(int slotCount)
+    {
+        this(slotCount, RoleInstancePool.getInstance().getRoleTypeTable());
+    }
+    /**
+     * Initializes a new instance of the {@link RoleListCorpus} class for role lists with the given number of slots.
+     * @param slotCount The number of slots of every role list, at most {@link RoleList#MaximumSlotCount}.
+     * @param table The role type table that the role IDs refer to.
+     */
+    public RoleListCorpus(int slotCount, RoleTypeTable table)
+    {
+        if (slotCount < 0 || slotCount > RoleList.MaximumSlotCount)
+            throw new IllegalArgumentException("The slot count may not exceed " + RoleList.MaximumSlotCount + ".");
+
+        this.table = table;
+        this.slotCount = slotCount;
+        capacity = InitialCapacity;
+        columns = new byte[slotCount][capacity];
+
+        factionOrdinals = new byte[table.getRoleCount()];
+        for (int id = 0; id < factionOrdinals.length; id++)
+            factionOrdinals[id] = (byte)table.getFactionOrdinal(id);
+    }
+
+    /**
+     * Gets the role type table that the role IDs refer to.
+     * @return The role type table.
+     */
+    public RoleTypeTable getRoleTypeTable() { return table; }
+    /**
+     * Gets the number of slots of every role list.
+     * @return The number of slots.
+     */
+    public int getSlotCount() { return slotCount; }
+    /**
+     * Gets the number of role lists in this corpus.
+     * @return The number of role lists.
+     */
+    public int size() { return size; }
+
+    /**
+     * Adds a concrete role list to this corpus.
+     * @param roleList The role list. It must only contain roles, and have {@link #getSlotCount()} slots.
+     */
+    public void add(RoleList roleList) { add(roleList.getRoleSlotsArray()); }
+    /**
+     * Adds a concrete role list to this corpus, given its roles.
+     * @param roles The roles of the role list. It must contain {@link #getSlotCount()} roles.
+     */
+    public void add(RoleSlot[] roles)
+    {
+        if (roles.length != slotCount)
+            throw new IllegalArgumentException("The role list must contain " + slotCount + " slots.");
+
+        if (size == capacity)
+            grow();
+
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            if (!(roles[slot] instanceof Role))
+                throw new IllegalArgumentException("Only concrete role lists can be added to the corpus.");
+
+            int id = table.getRoleId((Role)roles[slot]);
+            if (id < 0)
+                throw new IllegalArgumentException("The role is not contained in the role type table.");
+            columns[slot][size] = (byte)id;
+        }
+        size++;
+    }
+
+    private void grow()
+    {
+        capacity *= 2;
+        for (int slot = 0; slot < slotCount; slot++)
+            columns[slot] = Arrays.copyOf(columns[slot], capacity);
+    }
+
+    /**
+     * Gets the ID of the role in the given slot of the role list with the given index.
+     * @param index The index of the role list.
+     * @param slot The index of the slot.
+     * @return The ID of the role.
+     */
+    public int getRoleId(int index, int slot)
+    {
+        if (index >= size)
+            throw new IndexOutOfBoundsException(index);
+        return columns[slot][index];
+    }
+    /**
+     * Gets the column of the role IDs of the given slot, without copying it. Only the first {@link #size()} elements
+     * are used, and the array must not be modified.
+     * @param slot The index of the slot.
+     * @return The column of the role IDs.
+     */
+    public byte[] getColumn(int slot) { return columns[slot]; }
+
+    /**
+     * Counts the occurrences of every role in the given slot.
+     * @param slot The index of the slot.
+     * @return The array of the number of occurrences of every role, indexed by the role's ID.
+     */
+    public long[] getRoleCounts(int slot)
+    {
+        var counts = new long[table.getRoleCount()];
+        var column = columns[slot];
+        for (int i = 0; i < size; i++)
+            counts[column[i]]++;
+        return counts;
+    }
+    /**
+     * Counts the occurrences of every role in all the slots.
+     * @return The array of the number of occurrences of every role, indexed by the role's ID.
+     */
+    public long[] getRoleCounts()
+    {
+        var counts = new long[table.getRoleCount()];
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            var column = columns[slot];
+            for (int i = 0; i < size; i++)
+                counts[column[i]]++;
+        }
+        return counts;
+    }
+
+    /**
+     * Counts the role lists by the number of roles of every faction that they contain.
+     * @return The array of the number of role lists that contain every number of roles of every faction, indexed by the
+     *         faction's ordinal and the number of roles, ranging from 0 to {@link #getSlotCount()}.
+     */
+    public long[][] getFactionCountHistograms()
+    {
+        // The faction counts of every role list are accumulated in one long, 4 bits per faction
+        var packedCounts = new long[size];
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            var column = columns[slot];
+            for (int i = 0; i < size; i++)
+                packedCounts[i] += 1L << (factionOrdinals[column[i]] * CountBits);
+        }
+
+        var histograms = new long[Faction.values().length][slotCount + 1];
+        for (int faction = 0; faction < histograms.length; faction++)
+        {
+            var histogram = histograms[faction];
+            int shift = faction * CountBits;
+            for (int i = 0; i < size; i++)
+                histogram[(int)(packedCounts[i] >>> shift) & ((1 << CountBits) - 1)]++;
+        }
+        return histograms;
+    }
+
+    /**
+     * Gets the masks of the roles that every role list contains, indexed by the role IDs.
+     * @return The array of the masks of the contained roles of every role list.
+     */
+    public long[] getPresenceMasks()
+    {
+        var masks = new long[size];
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            var column = columns[slot];
+            for (int i = 0; i < size; i++)
+                masks[i] |= 1L << column[i];
+        }
+        return masks;
+    }
+    /**
+     * Counts the role lists that contain every pair of roles. The diagonal contains the number of role lists that
+     * contain every role.
+     * @return The symmetric matrix of the number of role lists that contain both roles, indexed by the roles' IDs.
+     */
+    public long[][] getCoOccurrenceMatrix()
+    {
+        int roleCount = table.getRoleCount();
+        var matrix = new long[roleCount][roleCount];
+        for (long mask : getPresenceMasks())
+        {
+            for (long first = mask; first != 0; first &= first - 1)
+            {
+                var row = matrix[Long.numberOfTrailingZeros(first)];
+                for (long second = mask; second != 0; second &= second - 1)
+                    row[Long.numberOfTrailingZeros(second)]++;
+            }
+        }
+        return matrix;
+    }
+    /**
+     * Counts the role lists that contain both of the given roles.
+     * @param first The type of the first role.
+     * @param second The type of the second role.
+     * @return The number of role lists that contain both roles.
+     */
+    public long getCoOccurrenceCount(Class<? extends Role> first, Class<? extends Role> second)
+    {
+        int firstId = table.getRoleId(first);
+        int secondId = table.getRoleId(second);
+        if (firstId < 0 || secondId < 0)
+            return 0;
+
+        long required = 1L << firstId | 1L << secondId;
+        long count = 0;
+        for (long mask : getPresenceMasks())
+            if ((mask & required) == required)
+                count++;
+        return count;
+    }
+}
@@ -0,0 +1,171 @@
+package com.github.alfasgd.salem;
+
+import java.util.Arrays;
+
+/**
+ * Provides an exact feasibility check for the wildcard slots of a role list, modelled as a flow network. Every wildcard
+ * slot filter supplies one unit of flow per slot, which may flow into the full alignments that match the filter, as
+ * determined by {@link RoleAlignment#matchesFilter(RoleAlignment)}, and every full alignment can absorb as many units
+ * as the remaining occurrences of its available roles. The wildcard slots can all be filled if and only if the maximum
+ * flow saturates every slot. Since there are at most {@link RoleAlignment#CodeCount} filters and alignments, and at
+ * most {@link RoleList#MaximumSlotCount} units of flow, this takes microseconds.
+ * <p>
+ * Instances hold the scratch state of the check, so that it does not allocate; they may be reused, but they are not
+ * thread-safe.
+ * </p>
+ */
+final class RoleListFeasibility
+{
+    private static final long[] filterMatches = new long[RoleAlignment.CodeCount];
+
+    static
+    {
+        for (int filterCode = 0; filterCode < RoleAlignment.CodeCount; filterCode++)
+        {
+            var filter = RoleAlignment.fromCode(filterCode);
+            for (int code = 0; code < RoleAlignment.CodeCount; code++)
+                if (RoleAlignment.fromCode(code).matchesFilter(filter))
+                    filterMatches[filterCode] |= 1L << code;
+        }
+    }
+
+    private final int[] demands = new int[RoleAlignment.CodeCount];
+    private final int[] capacities = new int[RoleAlignment.CodeCount];
+    private final int[] inflows = new int[RoleAlignment.CodeCount];
+    private final int[] flows = new int[RoleAlignment.CodeCount * RoleAlignment.CodeCount];
+
+    private long filterMask;
+    private long alignmentMask;
+    private long visitedFilters;
+    private long visitedAlignments;
+
+    /**
+     * Determines whether the wildcard slots of the given role slots can all be filled at the same time.
+     * @param slots The role slots.
+     * @param table The role type table that the role IDs refer to.
+     * @param remainingOccurrences The remaining occurrences of each role after the fixed role slots are filled, indexed
+     *                             by the role's ID. Roles with no remaining occurrences are not available.
+     * @return {@code true} if the wildcard slots can all be filled, otherwise {@code false}.
+     */
+    public boolean isFeasible(RoleSlot[] slots, RoleTypeTable table, int[] remainingOccurrences)
+    {
+        return isFeasible(slots, 0, table, remainingOccurrences);
+    }
+    /**
+     * Determines whether the wildcard slots of the given role slots, starting from the given index, can all be filled
+     * at the same time.
+     * @param slots The role slots.
+     * @param fromIndex The index of the first slot to consider.
+     * @param table The role type table that the role IDs refer to.
+     * @param remainingOccurrences The remaining occurrences of each role after the fixed role slots and the slots before
+     *                             the given index are filled, indexed by the role's ID. Roles with no remaining
+     *                             occurrences are not available.
+     * @return {@code true} if the wildcard slots can all be filled, otherwise {@code false}.
+     */
+    public boolean isFeasible(RoleSlot[] slots, int fromIndex, RoleTypeTable table, int[] remainingOccurrences)
+    {
+        // Only the rows of the filters of the previous check may contain flow
+        for (long mask = filterMask; mask != 0; mask &= mask - 1)
+        {
+            int filter = Long.numberOfTrailingZeros(mask);
+            Arrays.fill(flows, filter * RoleAlignment.CodeCount, (filter + 1) * RoleAlignment.CodeCount, 0);
+        }
+        Arrays.fill(demands, 0);
+        Arrays.fill(capacities, 0);
+        Arrays.fill(inflows, 0);
+        filterMask = 0;
+        alignmentMask = 0;
+
+        for (int i = fromIndex; i < slots.length; i++)
+        {
+            if (slots[i] instanceof RoleAlignment)
+            {
+                int code = ((RoleAlignment)slots[i]).getCode();
+                demands[code]++;
+                filterMask |= 1L << code;
+            }
+        }
+        if (filterMask == 0)
+            return true;
+
+        for (int id = 0; id < table.getRoleCount(); id++)
+        {
+            if (remainingOccurrences[id] <= 0)
+                continue;
+
+            int code = table.getAlignmentCode(id);
+            capacities[code] += remainingOccurrences[id];
+            alignmentMask |= 1L << code;
+        }
+
+        for (long mask = filterMask; mask != 0; mask &= mask - 1)
+        {
+            int filter = Long.numberOfTrailingZeros(mask);
+            int residual = demands[filter];
+            while (residual > 0)
+            {
+                visitedFilters = 0;
+                visitedAlignments = 0;
+                int pushed = augment(filter, residual);
+                if (pushed == 0)
+                    return false;
+
+                residual -= pushed;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the remaining capacity of the given full alignment in the maximum flow of the last successful check. If it is
+     * positive, one more role of the alignment can be taken away without making the checked slots infeasible.
+     * @param alignmentCode The {@link RoleAlignment#getCode()} of the full alignment.
+     * @return The remaining capacity of the alignment.
+     */
+    public int getSlack(int alignmentCode) { return capacities[alignmentCode] - inflows[alignmentCode]; }
+
+    // Pushes up to the given amount of flow out of the filter, rerouting the flow of other filters if needed
+    private int augment(int filter, int limit)
+    {
+        visitedFilters |= 1L << filter;
+
+        long candidates = filterMatches[filter] & alignmentMask & ~visitedAlignments;
+        for (; candidates != 0; candidates &= candidates - 1)
+        {
+            int alignment = Long.numberOfTrailingZeros(candidates);
+            if ((visitedAlignments & (1L << alignment)) != 0)
+                continue;
+
+            visitedAlignments |= 1L << alignment;
+
+            int free = capacities[alignment] - inflows[alignment];
+            if (free > 0)
+            {
+                int pushed = Math.min(limit, free);
+                flows[filter * RoleAlignment.CodeCount + alignment] += pushed;
+                inflows[alignment] += pushed;
+                return pushed;
+            }
+
+            for (long others = filterMask; others != 0; others &= others - 1)
+            {
+                int other = Long.numberOfTrailingZeros(others);
+                if ((visitedFilters & (1L << other)) != 0)
+                    continue;
+
+                int otherFlow = flows[other * RoleAlignment.CodeCount + alignment];
+                if (otherFlow == 0)
+                    continue;
+
+                int pushed = augment(other, Math.min(limit, otherFlow));
+                if (pushed > 0)
+                {
+                    flows[other * RoleAlignment.CodeCount + alignment] -= pushed;
+                    flows[filter * RoleAlignment.CodeCount + alignment] += pushed;
+                    return pushed;
+                }
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,343 @@
+package com.github.alfasgd.salem;
+
+import com.github.alfasgd.salem.common.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Represents a Markov model of {@link RoleListGenerator}'s generation of a role list, where the wildcard slots are
+ * filled in the order of the role list, each with a uniformly chosen role among the ones that match it and have not
+ * reached their maximum occurrences yet.
+ * <p>
+ * The available roles are partitioned into groups of interchangeable roles, i.e. roles that are matched by the same
+ * wildcard slots, have the same remaining occurrences and belong to the same category, which the caller may use to
+ * keep apart the roles that it needs to tell apart. Since the roles of a group are interchangeable, the state of the
+ * generation only needs to track how many roles of each group have been chosen once, twice and so on, which is packed
+ * into a {@code long}. Groups whose roles can never reach their maximum occurrences need no state at all. The unique
+ * roles always fit, but many wildcard slots that match roles whose maximum occurrences are low but above 1, such as
+ * registered roles that occur at most a few times, may not; such role lists are rejected with an
+ * {@link IllegalArgumentException}.
+ * </p>
+ */
+final class RoleListGenerationModel
+{
+    private final RoleTypeTable table;
+    private final RoleSlot[] slots;
+    private final int[] wildcardSlotIndices;
+    private final int[] fixedOccurrences;
+
+    private final int groupCount;
+    private final long[] groupMasks;
+    private final int[] groupSizes;
+    private final int[] groupLevels;
+    private final boolean[] groupExhausts;
+    private final int[][] levelShifts;
+    private final long[][] levelMasks;
+    private final int[] roleGroups;
+
+    private final int[][] stepGroups;
+    private final long[] liveStateMasks;
+    private final int maximumOutcomeCount;
+    private final int stateBitCount;
+
+    private RoleListGenerationModel(RoleTypeTable table, RoleSlot[] slots, int[] remainingOccurrences, int[] roleCategories,
+                                    int splitRoleId, int reservedBitCount)
+    {
+        this.table = table;
+        this.slots = slots;
+
+        int roleCount = table.getRoleCount();
+        long availableMask = 0;
+        for (int id = 0; id < roleCount; id++)
+            if (remainingOccurrences[id] > 0)
+                availableMask |= 1L << id;
+
+        fixedOccurrences = new int[roleCount];
+        int wildcardCount = 0;
+        for (var slot : slots)
+        {
+            if (slot instanceof Role)
+                fixedOccurrences[table.getRoleId((Role)slot)]++;
+            else
+                wildcardCount++;
+        }
+
+        wildcardSlotIndices = new int[wildcardCount];
+        var stepCandidates = new long[wildcardCount];
+        var signatures = new long[roleCount];
+        for (int i = 0, step = 0; i < slots.length; i++)
+        {
+            if (slots[i] instanceof Role)
+                continue;
+
+            long candidates = availableMask & table.getAlignmentFilterMask((RoleAlignment)slots[i]);
+            wildcardSlotIndices[step] = i;
+            stepCandidates[step] = candidates;
+            for (long mask = candidates; mask != 0; mask &= mask - 1)
+                signatures[Long.numberOfTrailingZeros(mask)] |= 1L << step;
+            step++;
+        }
+
+        // Group the interchangeable roles, keyed by the slots matching them, their category and their remaining occurrences if
+        // they are limited
+        roleGroups = new int[roleCount];
+        Arrays.fill(roleGroups, -1);
+        var groupIndices = new HashMap<Long, Integer>();
+        var masks = new long[roleCount];
+        var levels = new int[roleCount];
+        var exhausts = new boolean[roleCount];
+        var touching = new int[roleCount];
+        int count = 0;
+        for (int id = 0; id < roleCount; id++)
+        {
+            if (signatures[id] == 0)
+                continue;
+
+            int touchingSlots = Long.bitCount(signatures[id]);
+            boolean limited = remainingOccurrences[id] < touchingSlots;
+            int group;
+            if (id == splitRoleId)
+            {
+                group = count++;
+                levels[group] = limited ? remainingOccurrences[id] : 1;
+            }
+            else
+            {
+                int category = roleCategories == null ? 0 : roleCategories[id];
+                long key = signatures[id] | (long)(limited ? remainingOccurrences[id] : 0) << 16 | (long)category << 24;
+                var existing = groupIndices.get(key);
+                if (existing == null)
+                {
+                    existing = count++;
+                    groupIndices.put(key, existing);
+                    levels[existing] = limited ? remainingOccurrences[id] : 0;
+                }
+                group = existing;
+            }
+
+            masks[group] |= 1L << id;
+            exhausts[group] = limited;
+            touching[group] = touchingSlots;
+            roleGroups[id] = group;
+        }
+
+        groupCount = count;
+        groupMasks = Arrays.copyOf(masks, count);
+        groupLevels = Arrays.copyOf(levels, count);
+        groupExhausts = Arrays.copyOf(exhausts, count);
+        groupSizes = new int[count];
+        levelShifts = new int[count][];
+        levelMasks = new long[count][];
+
+        int shift = 0;
+        for (int group = 0; group < count; group++)
+        {
+            groupSizes[group] = Long.bitCount(groupMasks[group]);
+            levelShifts[group] = new int[groupLevels[group] + 1];
+            levelMasks[group] = new long[groupLevels[group] + 1];
+            for (int level = 1; level <= groupLevels[group]; level++)
+            {
+                int maximumCount = Math.min(groupSizes[group], touching[group] / level);
+                int bits = 32 - Integer.numberOfLeadingZeros(maximumCount);
+                levelShifts[group][level] = shift;
+                levelMasks[group][level] = (1L << bits) - 1;
+                shift += bits;
+            }
+        }
+        stateBitCount = shift;
+        if (stateBitCount + reservedBitCount > Long.SIZE)
+            throw new IllegalArgumentException("The role list contains too many limited roles to be modelled exactly.");
+
+        stepGroups = new int[wildcardCount][];
+        int maximumOutcomes = 0;
+        var matchingGroups = new int[count];
+        for (int step = 0; step < wildcardCount; step++)
+        {
+            int matching = 0;
+            int outcomes = 0;
+            for (int group = 0; group < count; group++)
+            {
+                if ((groupMasks[group] & stepCandidates[step]) == 0)
+                    continue;
+
+                matchingGroups[matching++] = group;
+                outcomes += groupLevels[group] + 1;
+            }
+            stepGroups[step] = Arrays.copyOf(matchingGroups, matching);
+            maximumOutcomes = Math.max(maximumOutcomes, outcomes);
+        }
+        maximumOutcomeCount = maximumOutcomes;
+
+        liveStateMasks = new long[wildcardCount + 1];
+        for (int step = wildcardCount - 1; step >= 0; step--)
+        {
+            long live = liveStateMasks[step + 1];
+            for (int group : stepGroups[step])
+                for (int level = 1; level <= groupLevels[group]; level++)
+                    live |= levelMasks[group][level] << levelShifts[group][level];
+            liveStateMasks[step] = live;
+        }
+    }
+
+    /**
+     * Creates the model of the generation of the given role list.
+     * @param roleList The role list.
+     * @param availableRolesMask The mask of the IDs of the available roles.
+     * @param roleCategories The categories of the roles, indexed by their IDs, or {@code null} if all the roles belong
+     *                       to the same category. Roles of different categories are never grouped together.
+     * @param splitRoleId The ID of a role that is placed in its own group, whose state also tracks whether it has been
+     *                    chosen at least once, or -1 if no role is split.
+     * @param reservedBitCount The number of the most significant bits of the state that the model may not use.
+     * @return The model, or {@code null} if the role list is invalid.
+     * @throws IllegalArgumentException If the state of the generation does not fit in the bits of a {@code long} that
+     *                                  are not reserved.
+     */
+    static RoleListGenerationModel create(RoleList roleList, long availableRolesMask, int[] roleCategories, int splitRoleId,
+                                          int reservedBitCount)
+    {
+        var table = RoleInstancePool.getInstance().getRoleTypeTable();
+        var slots = roleList.getRoleSlotsArray();
+        var remainingOccurrences = new int[table.getRoleCount()];
+        if (!RoleList.validateRoleList(slots, table, availableRolesMask, remainingOccurrences, new int[Faction.values().length],
+                new RoleListFeasibility()))
+            return null;
+
+        for (var slot : slots)
+            if (!(slot instanceof Role) && !(slot instanceof RoleAlignment))
+                throw new IllegalArgumentException("Only role and role alignment slots can be modelled.");
+
+        return new RoleListGenerationModel(table, slots, remainingOccurrences, roleCategories, splitRoleId, reservedBitCount);
+    }
+
+    public RoleTypeTable getRoleTypeTable() { return table; }
+    public RoleSlot[] getSlots() { return slots; }
+    public int getStepCount() { return wildcardSlotIndices.length; }
+    public int getSlotIndex(int step) { return wildcardSlotIndices[step]; }
+    public int getFixedOccurrences(int id) { return fixedOccurrences[id]; }
+
+    public int getGroupCount() { return groupCount; }
+    public long getGroupMask(int group) { return groupMasks[group]; }
+    public int getGroupSize(int group) { return groupSizes[group]; }
+    public boolean isGroupLimited(int group) { return groupExhausts[group]; }
+    public int getGroupOfRole(int id) { return roleGroups[id]; }
+    public int getMaximumOutcomeCount() { return maximumOutcomeCount; }
+    public int getStateBitCount() { return stateBitCount; }
+
+    /**
+     * Gets the mask of the state bits of the groups that are matched by the wildcard slot of the given step or a later
+     * one. The other bits can be cleared without affecting the rest of the generation, which merges the states that
+     * only differ in groups that are no longer used.
+     * @param step The step, ranging from 0 to {@link #getStepCount()} (inclusive).
+     * @return The mask of the state bits that are still relevant.
+     */
+    public long getLiveStateMask(int step) { return liveStateMasks[step]; }
+
+    /**
+     * Gets the number of roles of the given group that have been chosen the given number of times in the given state.
+     * @param state The state.
+     * @param group The group.
+     * @param level The number of times, ranging from 0 to the number of levels that the group tracks. The roles of a
+     *              group that is not limited remain at the last level once they reach it.
+     * @return The number of roles of the group that have been chosen that many times.
+     */
+    public int getLevelCount(long state, int group, int level)
+    {
+        if (level > 0)
+            return (int)((state >>> levelShifts[group][level]) & levelMasks[group][level]);
+
+        int count = groupSizes[group];
+        for (int i = 1; i <= groupLevels[group]; i++)
+            count -= (int)((state >>> levelShifts[group][i]) & levelMasks[group][i]);
+        return count;
+    }
+
+    /**
+     * Expands the given state by filling the wildcard slot of the given step, storing every possible outcome along with
+     * its probability.
+     * @param state The state before the slot is filled.
+     * @param step The step, i.e. the index of the wildcard slot among the wildcard slots.
+     * @param nextStates The array to store the states after the slot is filled in.
+     * @param probabilities The array to store the probabilities of the outcomes in.
+     * @param outcomeGroups The array to store the groups of the chosen roles in.
+     * @return The number of outcomes, or 0 if no role can fill the slot.
+     */
+    public int expand(long state, int step, long[] nextStates, double[] probabilities, int[] outcomeGroups)
+    {
+        var groups = stepGroups[step];
+
+        int total = 0;
+        for (int group : groups)
+        {
+            total += groupSizes[group];
+            if (groupExhausts[group])
+                total -= getLevelCount(state, group, groupLevels[group]);
+        }
+        if (total == 0)
+            return 0;
+
+        int outcomes = 0;
+        double probabilityPerRole = 1.0 / total;
+        for (int group : groups)
+        {
+            int levels = groupLevels[group];
+            var shifts = levelShifts[group];
+            for (int level = 0; level <= levels; level++)
+            {
+                int count = getLevelCount(state, group, level);
+                if (count == 0)
+                    continue;
+
+                long next;
+                if (level < levels)
+                    next = state + (1L << shifts[level + 1]) - (level == 0 ? 0 : 1L << shifts[level]);
+                else if (!groupExhausts[group])
+                    next = state;
+                else
+                    continue;
+
+                nextStates[outcomes] = next;
+                probabilities[outcomes] = count * probabilityPerRole;
+                outcomeGroups[outcomes] = group;
+                outcomes++;
+            }
+        }
+        return outcomes;
+    }
+
+    /**
+     * Calculates the probability distributions of the states before every step of the generation, starting from the
+     * initial state 0. The probability of the generation failing because a slot could not be filled is the one
+     * missing from the distribution after the last step.
+     * @return The distributions of the states, with one more element than the steps.
+     */
+    public LongDoubleHashMap[] calculateStateDistributions()
+    {
+        int steps = getStepCount();
+        var distributions = new LongDoubleHashMap[steps + 1];
+        distributions[0] = new LongDoubleHashMap(1);
+        distributions[0].add(0, 1);
+
+        var nextStates = new long[maximumOutcomeCount];
+        var probabilities = new double[maximumOutcomeCount];
+        var outcomeGroups = new int[maximumOutcomeCount];
+        for (int step = 0; step < steps; step++)
+        {
+            var current = distributions[step];
+            var next = new LongDoubleHashMap(current.size() * 2);
+            for (int i = 0; i < current.capacity(); i++)
+            {
+                if (!current.isOccupied(i))
+                    continue;
+
+                long state = current.keyAt(i);
+                double probability = current.valueAt(i);
+                int outcomes = expand(state, step, nextStates, probabilities, outcomeGroups);
+                for (int outcome = 0; outcome < outcomes; outcome++)
+                    next.add(nextStates[outcome], probability * probabilities[outcome]);
+            }
+            distributions[step + 1] = next;
+        }
+        return distributions;
+    }
+}
@@ -0,0 +1,255 @@
+package com.github.alfasgd.salem;
+
+import com.github.alfasgd.salem.common.*;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * Generates random role lists out of role lists with wildcard slots, reusing its scratch state across generations. Once
+ * an instance is created, generating into a caller-provided array does not allocate. Instances are not thread-safe;
+ * every thread should own its generator.
+ */
+public final class RoleListGenerator
+{
+    /**
+     * The name of the random number generator algorithm that seeded generators use.
+     */
+    public static final String DefaultSeededAlgorithm = "L64X128MixRandom";
+
+    private final RandomGenerator random;
+
+    private final int[] remainingOccurrences = new int[RoleTypeTable.MaximumRoleCount];
+    private final int[] remainingFactionSlots = new int[Faction.values().length];
+    private final RoleListFeasibility feasibility = new RoleListFeasibility();
+    private final RoleCollection availableRoleTypes = new RoleCollection();
+
+    private final int[] sampleCounts = new int[RoleTypeTable.MaximumRoleCount];
+    private final byte[] sampledIds = new byte[RoleList.MaximumSlotCount];
+
+    /**
+     * Initializes a new instance of the {@link RoleListGenerator} class that uses the {@link ThreadLocalRandom} of the
+     * thread that generates the role lists.
+     */
+    public RoleListGenerator()
+    {
+        this(ThreadLocalRandom.current());
+    }
+    /**
+     * Initializes a new instance of the {@link RoleListGenerator} class with a new random number generator of the
+     * {@link #DefaultSeededAlgorithm} algorithm, created from the given seed. Generators created from the same seed
+     * generate the same role lists.
+     * @param seed The seed of the random number generator.
+     */
+    public RoleListGenerator(long seed)
+    {
+        this(RandomGeneratorFactory.of(DefaultSeededAlgorithm).create(seed));
+    }
+    /**
+     * Initializes a new instance of the {@link RoleListGenerator} class with the given random number generator.
+     * @param random The {@link RandomGenerator} to use to randomly choose the roles.
+     */
+    public RoleListGenerator(RandomGenerator random)
+    {
+        this.random = random;
+    }
+
+    /**
+     * Gets the {@link RandomGenerator} that this generator uses to randomly choose the roles.
+     * @return The {@link RandomGenerator} that this generator uses.
+     */
+    public RandomGenerator getRandom() { return random; }
+
+    /**
+     * Generates a random role list from the given role list, replacing wildcard slots with randomly chosen ones fitting
+     * the given criteria. Only the resulting role list is allocated.
+     * @param roleList The role list to generate a random role list from.
+     * @param availableRoles The available roles collection.
+     * @return The generated role list, or {@code null} if the role list is invalid or a wildcard slot could not be
+     *         filled because the earlier slots used up its roles.
+     */
+    public RoleList generate(RoleList roleList, RoleCollection availableRoles)
+    {
+        return roleList.generateRandomRoleList(availableRoles, this);
+    }
+    /**
+     * Generates a random role list from the given role list, replacing wildcard slots with randomly chosen ones fitting
+     * the given criteria, and stores the generated roles in the given array. This does not allocate.
+     * @param roleList The role list to generate a random role list from.
+     * @param packTypes The game pack types where the role list is applied on.
+     * @param destination The array to store the generated roles in. It must be at least as long as the role list.
+     * @return {@code true} if the roles were generated, otherwise {@code false} if the role list is invalid or a
+     *         wildcard slot could not be filled because the earlier slots used up its roles.
+     */
+    public boolean generate(RoleList roleList, GamePackTypes packTypes, RoleSlot[] destination)
+    {
+        return generate(roleList, RoleCollection.getStartableRolesCollection(packTypes), destination);
+    }
+    /**
+     * Generates a random role list from the given role list, replacing wildcard slots with randomly chosen ones fitting
+     * the given criteria, and stores the generated roles in the given array. This does not allocate.
+     * @param roleList The role list to generate a random role list from.
+     * @param availableRoles The available roles collection.
+     * @param destination The array to store the generated roles in. It must be at least as long as the role list.
+     * @return {@code true} if the roles were generated, otherwise {@code false} if the role list is invalid or a
+     *         wildcard slot could not be filled because the earlier slots used up its roles.
+     */
+    public boolean generate(RoleList roleList, RoleCollection availableRoles, RoleSlot[] destination)
+    {
+        var table = RoleInstancePool.getInstance().getRoleTypeTable();
+        var slots = roleList.getRoleSlotsArray();
+        if (!RoleList.validateRoleList(slots, table, availableRoles.getRoleMask(), remainingOccurrences, remainingFactionSlots, feasibility))
+            return false;
+
+        var availableRoleSet = availableRoleTypes.getRoleSet();
+        availableRoleSet.clear();
+        for (int id = 0; id < table.getRoleCount(); id++)
+            if (remainingOccurrences[id] > 0)
+                availableRoleSet.add(id);
+
+        for (int i = 0; i < slots.length; i++)
+        {
+            var slot = slots[i];
+
+            // Fixed roles have already been subtracted from the remaining occurrences while validating
+            if (slot instanceof Role)
+            {
+                destination[i] = slot;
+                continue;
+            }
+
+            int id;
+            if (slot instanceof RoleAlignment)
+            {
+                long candidates = availableRoleSet.getMask() & table.getAlignmentFilterMask((RoleAlignment)slot);
+                // An earlier wildcard slot may have taken the last roles that this slot could be filled with
+                if (candidates == 0)
+                    return false;
+
+                id = BitUtils.selectBit(candidates, random.nextInt(Long.bitCount(candidates)));
+            }
+            else
+            {
+                id = table.getRoleId(slot.generateRandomRole(availableRoleTypes, random));
+            }
+
+            destination[i] = table.getRole(id);
+
+            remainingOccurrences[id]--;
+            if (remainingOccurrences[id] <= 0)
+                availableRoleSet.remove(id);
+        }
+
+        return true;
+    }
+
+    /**
+     * Generates a random role list from the given role list like {@link #generate(RoleList, GamePackTypes, RoleSlot[])},
+     * except that every wildcard slot is only filled with the roles that still allow all the following wildcard slots to
+     * be filled, so generating out of a valid role list always succeeds without retrying. This does not allocate.
+     * @param roleList The role list to generate a random role list from.
+     * @param packTypes The game pack types where the role list is applied on.
+     * @param destination The array to store the generated roles in. It must be at least as long as the role list.
+     * @return {@code true} if the role list is valid, otherwise {@code false}.
+     */
+    public boolean generateConstrained(RoleList roleList, GamePackTypes packTypes, RoleSlot[] destination)
+    {
+        return generateConstrained(roleList, RoleCollection.getStartableRolesCollection(packTypes), destination);
+    }
+    /**
+     * Generates a random role list from the given role list like {@link #generate(RoleList, RoleCollection, RoleSlot[])},
+     * except that every wildcard slot is only filled with the roles that still allow all the following wildcard slots to
+     * be filled, so generating out of a valid role list always succeeds without retrying. When no role would block a
+     * following slot, the role is chosen exactly like the unconstrained generation does. This does not allocate.
+     * @param roleList The role list to generate a random role list from.
+     * @param availableRoles The available roles collection.
+     * @param destination The array to store the generated roles in. It must be at least as long as the role list.
+     * @return {@code true} if the role list is valid, otherwise {@code false}.
+     */
+    public boolean generateConstrained(RoleList roleList, RoleCollection availableRoles, RoleSlot[] destination)
+    {
+        var table = RoleInstancePool.getInstance().getRoleTypeTable();
+        var slots = roleList.getRoleSlotsArray();
+        if (!RoleList.validateRoleList(slots, table, availableRoles.getRoleMask(), remainingOccurrences, remainingFactionSlots, feasibility))
+            return false;
+
+        long available = 0;
+        for (int id = 0; id < table.getRoleCount(); id++)
+            if (remainingOccurrences[id] > 0)
+                available |= 1L << id;
+
+        for (int i = 0; i < slots.length; i++)
+        {
+            var slot = slots[i];
+            if (slot instanceof Role)
+            {
+                destination[i] = slot;
+                continue;
+            }
+
+            long candidates = available & table.getAlignmentFilterMask((RoleAlignment)slot);
+
+            // Choosing any role of an alignment affects the following slots the same way, so each alignment is checked
+            // once; the remainder is feasible before this slot, so at least one alignment keeps it feasible
+            if (!isSingleAlignment(table, candidates))
+            {
+                // An alignment that the maximum flow of the following slots does not saturate can always be chosen
+                feasibility.isFeasible(slots, i + 1, table, remainingOccurrences);
+                long allowed = 0;
+                long saturated = 0;
+                for (long remaining = candidates; remaining != 0; )
+                {
+                    int code = table.getAlignmentCode(Long.numberOfTrailingZeros(remaining));
+                    long alignmentCandidates = candidates & table.getAlignmentMask(code);
+                    remaining &= ~alignmentCandidates;
+
+                    if (feasibility.getSlack(code) > 0)
+                        allowed |= alignmentCandidates;
+                    else
+                        saturated |= alignmentCandidates;
+                }
+
+                while (saturated != 0)
+                {
+                    int representative = Long.numberOfTrailingZeros(saturated);
+                    long alignmentCandidates = saturated & table.getAlignmentMask(table.getAlignmentCode(representative));
+                    saturated &= ~alignmentCandidates;
+
+                    remainingOccurrences[representative]--;
+                    if (feasibility.isFeasible(slots, i + 1, table, remainingOccurrences))
+                        allowed |= alignmentCandidates;
+                    remainingOccurrences[representative]++;
+                }
+                candidates = allowed;
+            }
+
+            int id = BitUtils.selectBit(candidates, random.nextInt(Long.bitCount(candidates)));
+            destination[i] = table.getRole(id);
+
+            remainingOccurrences[id]--;
+            if (remainingOccurrences[id] <= 0)
+                available &= ~(1L << id);
+        }
+
+        return true;
+    }
+
+    private static boolean isSingleAlignment(RoleTypeTable table, long candidates)
+    {
+        long alignmentMask = table.getAlignmentMask(table.getAlignmentCode(Long.numberOfTrailingZeros(candidates)));
+        return (candidates & ~alignmentMask) == 0;
+    }
+
+    /**
+     * Samples a new concrete role list out of the given prepared role list, and stores the sampled roles in the given
+     * array. This does not allocate.
+     * @param preparedRoleList The prepared role list to sample.
+     * @param destination The array to store the sampled roles in. It must be at least as long as the role list.
+     * @return {@code true} if all the slots were filled, otherwise {@code false}.
+     */
+    public boolean generate(PreparedRoleList preparedRoleList, RoleSlot[] destination)
+    {
+        return preparedRoleList.sample(random, sampleCounts, sampledIds, destination);
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.alfasgd.salem;
+
+/**
+ * Represents an error in the text of a role list, at a known position.
+ */
+public class RoleListParseException
+    extends Exception
+{
+    private final long line;
+    private final int column;
+
+    /**
+     * Initializes a new instance of the {@link RoleListParseException} class.
+     * @param message The description of the error.
+     * @param line The one-based number of the line of the error.
+     * @param column The one-based number of the column of the error.
+     */
+    public RoleListParseException(String message, long line, int column)
+    {
+        super(message + " (line " + line + ", column " + column + ")");
+        this.line = line;
+        this.column = column;
+    }
+
+    /**
+     * Gets the one-based number of the line of the error.
+     * @return The line of the error.
+     */
+    public long getLine() { return line; }
+    /**
+     * Gets the one-based number of the column of the error.
+     * @return The column of the error.
+     */
+    public int getColumn() { return column; }
+}
@@ -0,0 +1,230 @@
+package com.github.alfasgd.salem;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Parses role lists from text, one role list per line, with comma-separated slots, such as
+ * {@code Jailor, Town Investigative, Town Any, Godfather}. Every slot is either the name of a registered role, as
+ * given by {@link Role#getRoleName()} or its type's simple name, or the name of a role alignment, as given by
+ * {@link RoleAlignment#toString()}; names are case-insensitive, and whitespace around and within them is not
+ * significant beyond separating words. Empty lines are skipped.
+ * <p>
+ * The text is read in chunks and matched against a precomputed trie of the names character by character, so that the
+ * only objects created are the parsed role lists. Instances keep the state of the current line between chunks, and are
+ * not thread-safe.
+ * </p>
+ */
+public final class RoleListParser
+{
+    private static final int BufferSize = 8192;
+
+    private final RoleSlotNameIndex index;
+    private final RoleSlot[] slots = new RoleSlot[RoleList.MaximumSlotCount];
+    private char[] buffer;
+
+    private long line;
+    private int column;
+    private int slotCount;
+    private boolean lineHasContent;
+    private int node;
+    private boolean inName;
+    private boolean pendingSpace;
+    private int nameColumn;
+    private boolean singleRoleList;
+    private long roleListCount;
+
+    /**
+     * Initializes a new instance of the {@link RoleListParser} class for the registered role types.
+     */
+    public RoleListParser()
+    {
+        this(RoleInstancePool.getInstance().getRoleTypeTable());
+    }
+    /**
+     * Initializes a new instance of the {@link RoleListParser} class for the role types of the given table.
+     * @param table The role type table whose roles can be parsed.
+     */
+    public RoleListParser(RoleTypeTable table)
+    {
+        index = RoleSlotNameIndex.getIndex(table);
+    }
+
+    /**
+     * Parses a single role list.
+     * @param text The text of the role list. It may contain empty lines around the role list, but no other role list.
+     * @return The parsed role list.
+     * @throws RoleListParseException If the text is not a valid role list, or it contains more than one role list, in
+     *                                which case the error is at the start of the second one.
+     */
+    public RoleList parseRoleList(CharSequence text) throws RoleListParseException
+    {
+        var result = new RoleList[1];
+        singleRoleList = true;
+        try
+        {
+            parse(CharBuffer.wrap(text), list -> result[0] = list);
+        }
+        finally
+        {
+            singleRoleList = false;
+        }
+        if (result[0] == null)
+            throw new RoleListParseException("The text does not contain a role list", 1, 1);
+        return result[0];
+    }
+    /**
+     * Parses all the role lists of the given text.
+     * @param reader The reader of the text.
+     * @return The list of the parsed role lists.
+     * @throws IOException If reading the text fails.
+     * @throws RoleListParseException If the text contains an invalid role list.
+     */
+    public List<RoleList> parseAll(Reader reader) throws IOException, RoleListParseException
+    {
+        var result = new ArrayList<RoleList>();
+        parse(reader, result::add);
+        return result;
+    }
+
+    /**
+     * Parses the role lists of the given text, one line at a time.
+     * @param reader The reader of the text.
+     * @param consumer The consumer of the parsed role lists, which is called as soon as every line is parsed.
+     * @throws IOException If reading the text fails.
+     * @throws RoleListParseException If the text contains an invalid role list.
+     */
+    public void parse(Reader reader, Consumer<RoleList> consumer) throws IOException, RoleListParseException
+    {
+        if (buffer == null)
+            buffer = new char[BufferSize];
+
+        reset();
+        int read;
+        while ((read = reader.read(buffer, 0, buffer.length)) >= 0)
+            process(buffer, 0, read, consumer);
+        finish(consumer);
+    }
+    /**
+     * Parses the role lists of the remaining characters of the given buffer, one line at a time.
+     * @param text The buffer of the text. Its position is advanced to its limit.
+     * @param consumer The consumer of the parsed role lists, which is called as soon as every line is parsed.
+     * @throws RoleListParseException If the text contains an invalid role list.
+     */
+    public void parse(CharBuffer text, Consumer<RoleList> consumer) throws RoleListParseException
+    {
+        reset();
+        if (text.hasArray())
+        {
+            process(text.array(), text.arrayOffset() + text.position(), text.remaining(), consumer);
+            text.position(text.limit());
+        }
+        else
+        {
+            if (buffer == null)
+                buffer = new char[BufferSize];
+
+            while (text.hasRemaining())
+            {
+                int length = Math.min(buffer.length, text.remaining());
+                text.get(buffer, 0, length);
+                process(buffer, 0, length, consumer);
+            }
+        }
+        finish(consumer);
+    }
+
+    private void reset()
+    {
+        line = 1;
+        column = 0;
+        slotCount = 0;
+        lineHasContent = false;
+        inName = false;
+        pendingSpace = false;
+        roleListCount = 0;
+    }
+
+    private void process(char[] chars, int offset, int length, Consumer<RoleList> consumer) throws RoleListParseException
+    {
+        for (int i = offset; i < offset + length; i++)
+        {
+            char c = chars[i];
+            column++;
+            switch (c)
+            {
+                case '\n':
+                    endLine(consumer);
+                    line++;
+                    column = 0;
+                    break;
+                case ',':
+                    endSlot();
+                    break;
+                case ' ':
+                case '\t':
+                case '\r':
+                case '\f':
+                    if (inName)
+                        pendingSpace = true;
+                    break;
+                default:
+                    if (!inName)
+                    {
+                        if (singleRoleList && !lineHasContent && slotCount == 0 && roleListCount > 0)
+                            throw new RoleListParseException("The text may only contain a single role list", line, column);
+
+                        inName = true;
+                        lineHasContent = true;
+                        nameColumn = column;
+                        node = index.getRoot();
+                    }
+                    else if (pendingSpace)
+                        node = index.next(node, ' ');
+
+                    pendingSpace = false;
+                    node = index.next(node, c);
+                    break;
+            }
+        }
+    }
+
+    private void endSlot() throws RoleListParseException
+    {
+        if (!inName)
+            throw new RoleListParseException("Expected a role slot", line, column);
+
+        int code = index.getCode(node);
+        if (code == RoleSlotCodes.EmptyCode)
+            throw new RoleListParseException("Unknown role slot", line, nameColumn);
+        if (slotCount == RoleList.MaximumSlotCount)
+            throw new RoleListParseException("A role list may not contain more than " + RoleList.MaximumSlotCount + " slots", line, nameColumn);
+
+        slots[slotCount++] = RoleSlotCodes.getSlot(code, index.getRoleTypeTable());
+        inName = false;
+        pendingSpace = false;
+    }
+
+    private void endLine(Consumer<RoleList> consumer) throws RoleListParseException
+    {
+        if (!lineHasContent && slotCount == 0)
+            return;
+
+        endSlot();
+        consumer.accept(new RoleList(Arrays.copyOf(slots, slotCount), false));
+        roleListCount++;
+        slotCount = 0;
+        lineHasContent = false;
+    }
+
+    private void finish(Consumer<RoleList> consumer) throws RoleListParseException
+    {
+        column++;
+        endLine(consumer);
+    }
+}
@@ -0,0 +1,260 @@
+package com.github.alfasgd.salem;
+
+import com.github.alfasgd.salem.common.*;
+
+import java.util.Arrays;
+
+/**
+ * Represents the exact probabilities of the roles that {@link RoleList#generateRandomRoleList(RoleCollection)} places
+ * in every slot of a role list, calculated by dynamic programming over the remaining occurrences of the roles instead
+ * of sampling. The wildcard slots are filled in the order of the role list, and the maximum occurrences of the roles
+ * are respected. The probabilities are conditioned on the generation succeeding; the probability of a slot running out
+ * of roles is given by {@link #getFailureProbability()}.
+ * <p>
+ * The roles of a {@link PreparedRoleList} are sampled in a different order, so their distribution may differ when the
+ * maximum occurrences of the roles are reached.
+ * </p>
+ */
+public final class RoleListProbabilities
+{
+    private final RoleTypeTable table;
+    private final double[][] slotProbabilities;
+    private final double[] expectedOccurrences;
+    private final double[] presenceProbabilities;
+    private final double failureProbability;
+
+    private RoleListProbabilities(RoleList roleList, long availableRolesMask, RoleListGenerationModel model)
+    {
+        table = model.getRoleTypeTable();
+        int roleCount = table.getRoleCount();
+        var slots = model.getSlots();
+
+        slotProbabilities = new double[slots.length][roleCount];
+        expectedOccurrences = new double[roleCount];
+        presenceProbabilities = new double[roleCount];
+
+        for (int i = 0; i < slots.length; i++)
+            if (slots[i] instanceof Role)
+                slotProbabilities[i][table.getRoleId((Role)slots[i])] = 1;
+
+        var distributions = model.calculateStateDistributions();
+        var finalDistribution = distributions[distributions.length - 1];
+        double successProbability = sum(finalDistribution);
+        failureProbability = Math.max(0, 1 - successProbability);
+
+        if (successProbability > 0)
+        {
+            calculateSlotProbabilities(model, distributions, successProbability);
+            calculatePresenceProbabilities(roleList, availableRolesMask, model, finalDistribution, successProbability);
+        }
+
+        for (int id = 0; id < roleCount; id++)
+        {
+            for (var probabilities : slotProbabilities)
+                expectedOccurrences[id] += probabilities[id];
+            if (model.getFixedOccurrences(id) > 0)
+                presenceProbabilities[id] = 1;
+        }
+    }
+
+    /**
+     * Calculates the probabilities of the roles of the given role list for the roles that are available in the given
+     * game pack types.
+     * @param roleList The role list.
+     * @param packTypes The game pack types where the role list is applied on.
+     * @return The probabilities of the roles, or {@code null} if the role list is invalid.
+     * @throws IllegalArgumentException If the role list has too many wildcard slots that match roles with low maximum
+     *                                  occurrences for its generation to be modelled exactly. The built-in roles never
+     *                                  exceed this limit.
+     */
+    public static RoleListProbabilities calculate(RoleList roleList, GamePackTypes packTypes)
+    {
+        return calculate(roleList, RoleCollection.getStartableRolesCollection(packTypes));
+    }
+    /**
+     * Calculates the probabilities of the roles of the given role list for the given available roles.
+     * @param roleList The role list.
+     * @param availableRoles The available roles collection.
+     * @return The probabilities of the roles, or {@code null} if the role list is invalid.
+     * @throws IllegalArgumentException If the role list has too many wildcard slots that match roles with low maximum
+     *                                  occurrences for its generation to be modelled exactly. The built-in roles never
+     *                                  exceed this limit.
+     */
+    public static RoleListProbabilities calculate(RoleList roleList, RoleCollection availableRoles)
+    {
+        // Reserving the bit of a split role ensures that the presence probabilities can always be calculated
+        long availableRolesMask = availableRoles.getRoleMask();
+        var model = RoleListGenerationModel.create(roleList, availableRolesMask, null, -1, 1);
+        if (model == null)
+            return null;
+
+        return new RoleListProbabilities(roleList, availableRolesMask, model);
+    }
+
+    private void calculateSlotProbabilities(RoleListGenerationModel model, LongDoubleHashMap[] distributions, double successProbability)
+    {
+        int steps = model.getStepCount();
+        var nextStates = new long[model.getMaximumOutcomeCount()];
+        var probabilities = new double[nextStates.length];
+        var outcomeGroups = new int[nextStates.length];
+        var groupProbabilities = new double[model.getGroupCount()];
+
+        // The probability of succeeding from every state, calculated backwards from the last step
+        var successProbabilities = new LongDoubleHashMap[steps + 1];
+        successProbabilities[steps] = new LongDoubleHashMap(1);
+        for (int step = steps - 1; step >= 0; step--)
+        {
+            var current = distributions[step];
+            var nextSuccess = successProbabilities[step + 1];
+            var success = new LongDoubleHashMap(current.size());
+            Arrays.fill(groupProbabilities, 0);
+
+            for (int i = 0; i < current.capacity(); i++)
+            {
+                if (!current.isOccupied(i))
+                    continue;
+
+                long state = current.keyAt(i);
+                double stateProbability = current.valueAt(i);
+                double stateSuccess = 0;
+                int outcomes = model.expand(state, step, nextStates, probabilities, outcomeGroups);
+                for (int outcome = 0; outcome < outcomes; outcome++)
+                {
+                    double outcomeSuccess = step == steps - 1 ? 1 : nextSuccess.get(nextStates[outcome], 0);
+                    double probability = probabilities[outcome] * outcomeSuccess;
+                    stateSuccess += probability;
+                    groupProbabilities[outcomeGroups[outcome]] += stateProbability * probability;
+                }
+                success.add(state, stateSuccess);
+            }
+            successProbabilities[step] = success;
+
+            var slotProbability = slotProbabilities[model.getSlotIndex(step)];
+            for (int group = 0; group < groupProbabilities.length; group++)
+            {
+                if (groupProbabilities[group] == 0)
+                    continue;
+
+                double roleProbability = groupProbabilities[group] / successProbability / model.getGroupSize(group);
+                for (long mask = model.getGroupMask(group); mask != 0; mask &= mask - 1)
+                    slotProbability[Long.numberOfTrailingZeros(mask)] = roleProbability;
+            }
+        }
+    }
+
+    private void calculatePresenceProbabilities(RoleList roleList, long availableRolesMask, RoleListGenerationModel model,
+                                                LongDoubleHashMap finalDistribution, double successProbability)
+    {
+        for (int group = 0; group < model.getGroupCount(); group++)
+        {
+            double presence;
+            long groupMask = model.getGroupMask(group);
+            if (model.isGroupLimited(group))
+            {
+                // The roles of the group are interchangeable, so each one is absent in the expected share of the unused ones
+                double absent = 0;
+                for (int i = 0; i < finalDistribution.capacity(); i++)
+                    if (finalDistribution.isOccupied(i))
+                        absent += finalDistribution.valueAt(i) * model.getLevelCount(finalDistribution.keyAt(i), group, 0);
+                presence = 1 - absent / successProbability / model.getGroupSize(group);
+            }
+            else
+            {
+                // The usage of the roles that never run out is not tracked, so one of them is tracked separately instead
+                int splitId = Long.numberOfTrailingZeros(groupMask);
+                var splitModel = RoleListGenerationModel.create(roleList, availableRolesMask, null, splitId, 0);
+                int splitGroup = splitModel.getGroupOfRole(splitId);
+                var splitDistribution = splitModel.calculateStateDistributions()[splitModel.getStepCount()];
+
+                double present = 0;
+                for (int i = 0; i < splitDistribution.capacity(); i++)
+                    if (splitDistribution.isOccupied(i) && splitModel.getLevelCount(splitDistribution.keyAt(i), splitGroup, 0) == 0)
+                        present += splitDistribution.valueAt(i);
+                presence = present / successProbability;
+            }
+
+            for (long mask = groupMask; mask != 0; mask &= mask - 1)
+                presenceProbabilities[Long.numberOfTrailingZeros(mask)] = presence;
+        }
+    }
+
+    private static double sum(LongDoubleHashMap distribution)
+    {
+        double sum = 0;
+        for (int i = 0; i < distribution.capacity(); i++)
+            if (distribution.isOccupied(i))
+                sum += distribution.valueAt(i);
+        return sum;
+    }
+
+    /**
+     * Gets the role type table that the role IDs of these probabilities refer to.
+     * @return The role type table of these probabilities.
+     */
+    public RoleTypeTable getRoleTypeTable() { return table; }
+    /**
+     * Gets the number of slots in the role list.
+     * @return The number of slots in the role list.
+     */
+    public int getSlotCount() { return slotProbabilities.length; }
+
+    /**
+     * Gets the probability that the slot at the given index is filled with the role with the given ID.
+     * @param slotIndex The index of the slot in the role list.
+     * @param id The ID of the role.
+     * @return The probability that the slot is filled with the role.
+     */
+    public double getSlotProbability(int slotIndex, int id) { return slotProbabilities[slotIndex][id]; }
+    /**
+     * Gets the probability that the slot at the given index is filled with the given role type.
+     * @param slotIndex The index of the slot in the role list.
+     * @param roleType The role type.
+     * @return The probability that the slot is filled with the role type.
+     */
+    public double getSlotProbability(int slotIndex, Class<? extends Role> roleType)
+    {
+        int id = table.getRoleId(roleType);
+        return id < 0 ? 0 : slotProbabilities[slotIndex][id];
+    }
+
+    /**
+     * Gets the expected number of occurrences of the role with the given ID in a generated role list.
+     * @param id The ID of the role.
+     * @return The expected number of occurrences of the role.
+     */
+    public double getExpectedOccurrences(int id) { return expectedOccurrences[id]; }
+    /**
+     * Gets the expected number of occurrences of the given role type in a generated role list.
+     * @param roleType The role type.
+     * @return The expected number of occurrences of the role type.
+     */
+    public double getExpectedOccurrences(Class<? extends Role> roleType)
+    {
+        int id = table.getRoleId(roleType);
+        return id < 0 ? 0 : expectedOccurrences[id];
+    }
+
+    /**
+     * Gets the probability that the role with the given ID appears at least once in a generated role list.
+     * @param id The ID of the role.
+     * @return The probability that the role appears in the role list.
+     */
+    public double getPresenceProbability(int id) { return presenceProbabilities[id]; }
+    /**
+     * Gets the probability that the given role type appears at least once in a generated role list.
+     * @param roleType The role type.
+     * @return The probability that the role type appears in the role list.
+     */
+    public double getPresenceProbability(Class<? extends Role> roleType)
+    {
+        int id = table.getRoleId(roleType);
+        return id < 0 ? 0 : presenceProbabilities[id];
+    }
+
+    /**
+     * Gets the probability that the generation fails, because a wildcard slot is reached after all the roles that
+     * match it have reached their maximum occurrences.
+     * @return The probability that the generation fails.
+     */
+    public double getFailureProbability() { return failureProbability; }
+}
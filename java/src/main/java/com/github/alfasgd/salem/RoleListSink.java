@@ -0,0 +1,16 @@
+package com.github.alfasgd.salem;
+
+/**
+ * Represents a consumer of generated role lists.
+ */
+@FunctionalInterface
+public interface RoleListSink
+{
+    /**
+     * Accepts a generated role list. This may be called concurrently from multiple threads.
+     * @param index The index of the generated role list in the generated sequence.
+     * @param roles The generated roles, or {@code null} if the role list could not be generated. The array is reused
+     *              after this method returns, so it must be copied if it needs to be retained.
+     */
+    public void accept(long index, RoleSlot[] roles);
+}
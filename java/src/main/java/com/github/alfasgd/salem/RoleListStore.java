@@ -0,0 +1,366 @@
+package com.github.alfasgd.salem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Represents a file-backed, append-only store of role lists, encoded by a {@link RoleListCodec}. Role lists are
+ * appended through a {@link FileChannel} in batches, and read back through memory-mapped chunks of the file, so that
+ * reading does not copy the file's contents and the file may be larger than 2 GB.
+ * <p>
+ * The file starts with a header of {@link #HeaderSize} bytes, which records the game pack types and the template role
+ * list that the stored role lists were generated for, and the {@link RoleTypeTable#getFingerprint() fingerprint} of
+ * the role type table that the role codes refer to. Opening a store with a different table fails. A trailing partial
+ * record, such as one left by an interrupted write, is ignored.
+ * </p>
+ * <p>
+ * Appended role lists are buffered, and the ones that are not flushed yet are read back from the buffer, so that
+ * reading the newest role lists while appending neither writes nor maps the file. The mapping of the last chunk is
+ * only extended when role lists past its end that are already flushed are read, which is at most once per flush.
+ * </p>
+ * <p>
+ * Instances are not thread-safe.
+ * </p>
+ */
+public final class RoleListStore
+    implements Closeable
+{
+    /**
+     * The number of bytes of the header of a store file.
+     */
+    public static final int HeaderSize = 64;
+
+    private static final long Magic = 0x5453494C454C4F52L;
+    private static final int FormatVersion = 1;
+    private static final ByteOrder Order = ByteOrder.LITTLE_ENDIAN;
+
+    // Chunks are a whole number of records, so that records never span two chunks
+    private static final int RecordsPerChunk = 1 << 26;
+    private static final long ChunkSize = (long)RecordsPerChunk * RoleListCodec.BytesPerRoleList;
+    private static final int WriteBufferSize = 1 << 16;
+
+    private final FileChannel channel;
+    private final RoleListCodec codec;
+    private final GamePackTypes packTypes;
+    private final RoleList template;
+    private final boolean readOnly;
+
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WriteBufferSize).order(Order);
+    private long flushedCount;
+    private MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+
+    private RoleListStore(FileChannel channel, RoleListCodec codec, GamePackTypes packTypes, RoleList template, long flushedCount,
+                          boolean readOnly)
+    {
+        this.channel = channel;
+        this.codec = codec;
+        this.packTypes = packTypes;
+        this.template = template;
+        this.flushedCount = flushedCount;
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * Creates a new store file, replacing any existing file at the given path.
+     * @param path The path of the file.
+     * @param packTypes The game pack types that the stored role lists are generated for.
+     * @param template The role list that the stored role lists are generated out of.
+     * @return The created store.
+     * @throws IOException If the file cannot be created.
+     */
+    public static RoleListStore create(Path path, GamePackTypes packTypes, RoleList template) throws IOException
+    {
+        var codec = new RoleListCodec();
+        var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try
+        {
+            var header = ByteBuffer.allocate(HeaderSize).order(Order);
+            header.putLong(Magic);
+            header.putInt(FormatVersion);
+            header.putInt(packTypes.ordinal());
+            header.putLong(codec.getRoleTypeTable().getFingerprint());
+            header.putInt(codec.getRoleTypeTable().getRoleCount());
+            header.putInt(template.size());
+            header.putLong(codec.encodeLow(template));
+            header.putLong(codec.encodeHigh(template));
+            header.clear();
+            writeFully(channel, header, 0);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+        return new RoleListStore(channel, codec, packTypes, template, 0, false);
+    }
+    /**
+     * Opens an existing store file to read and append role lists.
+     * @param path The path of the file.
+     * @return The opened store.
+     * @throws IOException If the file cannot be opened, is not a store file, or refers to a different role type table
+     *                     than the one of the registered role types.
+     */
+    public static RoleListStore open(Path path) throws IOException { return open(path, false); }
+    /**
+     * Opens an existing store file.
+     * @param path The path of the file.
+     * @param readOnly Whether the store is only read, in which case the file does not need to be writable, and
+     *                 appending role lists fails.
+     * @return The opened store.
+     * @throws IOException If the file cannot be opened, is not a store file, or refers to a different role type table
+     *                     than the one of the registered role types.
+     */
+    public static RoleListStore open(Path path, boolean readOnly) throws IOException
+    {
+        var codec = new RoleListCodec();
+        var channel = readOnly
+                ? FileChannel.open(path, StandardOpenOption.READ)
+                : FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try
+        {
+            var header = ByteBuffer.allocate(HeaderSize).order(Order);
+            while (header.hasRemaining())
+                if (channel.read(header, header.position()) < 0)
+                    throw new IOException("The file is too short to be a role list store.");
+            header.flip();
+
+            if (header.getLong() != Magic || header.getInt() != FormatVersion)
+                throw new IOException("The file is not a role list store of a supported version.");
+
+            var packTypes = GamePackTypes.values()[header.getInt()];
+            long fingerprint = header.getLong();
+            int roleCount = header.getInt();
+            if (fingerprint != codec.getRoleTypeTable().getFingerprint() || roleCount != codec.getRoleTypeTable().getRoleCount())
+                throw new IOException("The store refers to a different role type table than the one of the registered role types.");
+
+            header.getInt();
+            var template = codec.decode(header.getLong(), header.getLong());
+            long count = (channel.size() - HeaderSize) / RoleListCodec.BytesPerRoleList;
+            return new RoleListStore(channel, codec, packTypes, template, count, readOnly);
+        }
+        catch (IOException | RuntimeException e)
+        {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException
+    {
+        while (buffer.hasRemaining())
+            position += channel.write(buffer, position);
+    }
+
+    /**
+     * Gets the game pack types that the stored role lists are generated for.
+     * @return The game pack types.
+     */
+    public GamePackTypes getPackTypes() { return packTypes; }
+    /**
+     * Gets the role list that the stored role lists are generated out of.
+     * @return The template role list.
+     */
+    public RoleList getTemplate() { return template; }
+    /**
+     * Gets the codec that the role lists are encoded with.
+     * @return The codec.
+     */
+    public RoleListCodec getCodec() { return codec; }
+    /**
+     * Determines whether this store was opened to be only read.
+     * @return {@code true} if role lists may not be appended to this store, otherwise {@code false}.
+     */
+    public boolean isReadOnly() { return readOnly; }
+    /**
+     * Gets the number of the stored role lists, including the ones that are not flushed yet.
+     * @return The number of the stored role lists.
+     */
+    public long size() { return flushedCount + writeBuffer.position() / RoleListCodec.BytesPerRoleList; }
+
+    /**
+     * Appends a role list to the store.
+     * @param roleList The role list.
+     * @throws IOException If writing to the file fails.
+     */
+    public void append(RoleList roleList) throws IOException
+    {
+        appendEncoded(codec.encodeLow(roleList), codec.encodeHigh(roleList));
+    }
+    /**
+     * Appends a role list to the store, given its role slots. This allows storing the reused arrays of a
+     * {@link RoleListSink} without creating role lists.
+     * @param slots The role slots.
+     * @param count The number of the role slots.
+     * @throws IOException If writing to the file fails.
+     */
+    public void append(RoleSlot[] slots, int count) throws IOException
+    {
+        appendEncoded(codec.encodeLow(slots, count), codec.encodeHigh(slots, count));
+    }
+    /**
+     * Appends an encoded role list to the store.
+     * @param low The low {@code long} of the encoded role list.
+     * @param high The high {@code long} of the encoded role list.
+     * @throws IOException If writing to the file fails.
+     * @throws UnsupportedOperationException If this store is {@link #isReadOnly() read-only}.
+     */
+    public void appendEncoded(long low, long high) throws IOException
+    {
+        if (readOnly)
+            throw new UnsupportedOperationException("The role list store is read-only.");
+        if (!writeBuffer.hasRemaining())
+            flush();
+
+        writeBuffer.putLong(low);
+        writeBuffer.putLong(high);
+    }
+
+    /**
+     * Writes the appended role lists that are not written to the file yet.
+     * @throws IOException If writing to the file fails.
+     */
+    public void flush() throws IOException
+    {
+        if (writeBuffer.position() == 0)
+            return;
+
+        writeBuffer.flip();
+        long appended = writeBuffer.remaining() / RoleListCodec.BytesPerRoleList;
+        writeFully(channel, writeBuffer, getOffset(flushedCount));
+        writeBuffer.clear();
+        flushedCount += appended;
+    }
+
+    /**
+     * Reads the role list with the given index into the given array, without allocating unless a new chunk of the file
+     * needs to be mapped.
+     * @param index The index of the role list.
+     * @param destination The array to store the role slots in. It must be long enough to contain all of them.
+     * @return The number of the read role slots.
+     * @throws IOException If mapping the file fails.
+     */
+    public int get(long index, RoleSlot[] destination) throws IOException
+    {
+        return codec.decode(getEncodedLow(index), getEncodedHigh(index), destination);
+    }
+    /**
+     * Reads the role list with the given index.
+     * @param index The index of the role list.
+     * @return The read role list.
+     * @throws IOException If mapping the file fails.
+     */
+    public RoleList get(long index) throws IOException
+    {
+        return codec.decode(getEncodedLow(index), getEncodedHigh(index));
+    }
+    /**
+     * Gets the low {@code long} of the encoded role list with the given index.
+     * @param index The index of the role list.
+     * @return The low {@code long} of the encoded role list.
+     * @throws IOException If mapping the file fails.
+     */
+    public long getEncodedLow(long index) throws IOException { return readLong(index, 0); }
+    /**
+     * Gets the high {@code long} of the encoded role list with the given index.
+     * @param index The index of the role list.
+     * @return The high {@code long} of the encoded role list.
+     * @throws IOException If mapping the file fails.
+     */
+    public long getEncodedHigh(long index) throws IOException { return readLong(index, Long.BYTES); }
+
+    /**
+     * Scans the role lists in the given range of indices in order, decoding every one of them into the same reused
+     * array.
+     * @param fromIndex The index of the first role list (inclusive).
+     * @param toIndex The index of the last role list (exclusive).
+     * @param sink The sink that accepts the role lists. The roles array is reused after it returns.
+     * @throws IOException If mapping the file fails.
+     */
+    public void scan(long fromIndex, long toIndex, RoleListSink sink) throws IOException
+    {
+        if (toIndex > flushedCount)
+            flush();
+
+        // Every slot count gets its own reused array, so that the sink sees arrays of the exact length
+        var buffers = new RoleSlot[RoleList.MaximumSlotCount + 1][];
+        for (long index = fromIndex; index < toIndex; )
+        {
+            var chunk = getChunk(index);
+            long chunkEnd = Math.min(toIndex, (index / RecordsPerChunk + 1) * RecordsPerChunk);
+            for (int offset = getChunkOffset(index); index < chunkEnd; index++, offset += RoleListCodec.BytesPerRoleList)
+            {
+                long low = chunk.getLong(offset);
+                long high = chunk.getLong(offset + Long.BYTES);
+                int count = codec.getSlotCount(low, high);
+                if (buffers[count] == null)
+                    buffers[count] = new RoleSlot[count];
+
+                codec.decode(low, high, buffers[count]);
+                sink.accept(index, buffers[count]);
+            }
+        }
+    }
+
+    private static long getOffset(long index) { return HeaderSize + index * RoleListCodec.BytesPerRoleList; }
+    private static int getChunkOffset(long index) { return (int)(index % RecordsPerChunk) * RoleListCodec.BytesPerRoleList; }
+
+    private long readLong(long index, int recordOffset) throws IOException
+    {
+        if (index < 0 || index >= size())
+            throw new IndexOutOfBoundsException("The index must be less than the number of stored role lists.");
+
+        // The role lists that are not flushed yet are still in the write buffer
+        if (index >= flushedCount)
+            return writeBuffer.getLong((int)(index - flushedCount) * RoleListCodec.BytesPerRoleList + recordOffset);
+        return getChunk(index).getLong(getChunkOffset(index) + recordOffset);
+    }
+
+    private MappedByteBuffer getChunk(long index) throws IOException
+    {
+        if (index < 0 || index >= flushedCount)
+            throw new IndexOutOfBoundsException("The index must be less than the number of stored role lists.");
+
+        int chunkIndex = (int)(index / RecordsPerChunk);
+        if (chunkIndex >= chunks.length)
+            chunks = Arrays.copyOf(chunks, chunkIndex + 1);
+
+        // The last chunk is remapped to the end of the file when a flushed role list past its mapped size is read
+        var chunk = chunks[chunkIndex];
+        int required = getChunkOffset(index) + RoleListCodec.BytesPerRoleList;
+        if (chunk == null || chunk.capacity() < required)
+        {
+            long start = getOffset((long)chunkIndex * RecordsPerChunk);
+            long size = Math.min(ChunkSize, getOffset(flushedCount) - start);
+            chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+            chunk.order(Order);
+            chunks[chunkIndex] = chunk;
+        }
+        return chunk;
+    }
+
+    /**
+     * Flushes the appended role lists and closes the file.
+     * @throws IOException If writing to or closing the file fails.
+     */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            flush();
+        }
+        finally
+        {
+            chunks = new MappedByteBuffer[0];
+            channel.close();
+        }
+    }
+}
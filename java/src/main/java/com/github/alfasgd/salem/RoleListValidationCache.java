@@ -0,0 +1,160 @@
+package com.github.alfasgd.salem;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Represents a bounded, concurrent cache of the validation results of role lists. Since the validity of a role list
+ * does not depend on the order of its slots, the results are keyed by the {@link RoleList#getCanonicalLow() canonical
+ * encoding} of the role list and the mask of the available roles, so that a repeated validation of an equal role list
+ * is a single hash lookup.
+ * <p>
+ * The cache is a fixed-size table where every key has a single entry; a new result replaces the one whose key shares
+ * its entry, which bounds the size of the cache without any bookkeeping. The cache is cleared when a role is
+ * registered, since the role IDs that the keys refer to then belong to a different table. Lookups do not lock, and
+ * instances may be shared across threads.
+ * </p>
+ */
+public final class RoleListValidationCache
+{
+    /**
+     * The default number of entries of a cache.
+     */
+    public static final int DefaultCapacity = 1 << 12;
+
+    private static final RoleListValidationCache sharedCache = new RoleListValidationCache(DefaultCapacity);
+
+    private final int capacity;
+    private volatile Entries entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Initializes a new instance of the {@link RoleListValidationCache} class.
+     * @param capacity The number of entries of the cache. It is rounded up to a power of two.
+     */
+    public RoleListValidationCache(int capacity)
+    {
+        if (capacity <= 0 || capacity > 1 << 30)
+            throw new IllegalArgumentException("The capacity must be positive and at most 2^30.");
+
+        this.capacity = capacity == 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+        entries = new Entries(getTable(), this.capacity);
+    }
+
+    /**
+     * Gets the cache that is shared by {@link RoleList#isValidRoleList(GamePackTypes)}.
+     * @return The shared cache.
+     */
+    public static RoleListValidationCache getSharedCache() { return sharedCache; }
+
+    /**
+     * Determines whether the given role list is valid for the given game pack types, using the cached result if there
+     * is one.
+     * @param roleList The role list.
+     * @param packTypes The game pack types where the role list is applied on.
+     * @return {@code true} if the role list is valid, otherwise {@code false}.
+     */
+    public boolean isValid(RoleList roleList, GamePackTypes packTypes)
+    {
+        return isValid(roleList, getTable().getStartableRolesMask(packTypes));
+    }
+    /**
+     * Determines whether the given role list is valid for the given available roles, using the cached result if there
+     * is one.
+     * @param roleList The role list.
+     * @param availableRoles The available roles collection.
+     * @return {@code true} if the role list is valid, otherwise {@code false}.
+     */
+    public boolean isValid(RoleList roleList, RoleCollection availableRoles)
+    {
+        return isValid(roleList, availableRoles.getRoleMask());
+    }
+
+    private boolean isValid(RoleList roleList, long availableRolesMask)
+    {
+        var table = getTable();
+        var current = entries;
+        if (current.table != table)
+            entries = current = new Entries(table, capacity);
+
+        // Role lists with unregistered roles have no canonical encoding, and are never valid
+        if (!roleList.hasCanonicalEncoding())
+            return false;
+
+        long low = roleList.getCanonicalLow();
+        long high = roleList.getCanonicalHigh();
+
+        int index = hash(low, high, availableRolesMask) & (capacity - 1);
+        var entry = current.entries.get(index);
+        if (entry != null && entry.low == low && entry.high == high && entry.availableRolesMask == availableRolesMask)
+        {
+            hits.increment();
+            return entry.valid;
+        }
+
+        misses.increment();
+        boolean valid = RoleList.validateRoleList(roleList.getRoleSlotsArray(), table, availableRolesMask,
+                new int[table.getRoleCount()], new int[Faction.values().length], new RoleListFeasibility());
+        current.entries.set(index, new Entry(low, high, availableRolesMask, valid));
+        return valid;
+    }
+
+    private static int hash(long low, long high, long mask)
+    {
+        long hash = low * 0x9E3779B97F4A7C15L ^ high * 0xC2B2AE3D27D4EB4FL ^ mask * 0x165667B19E3779F9L;
+        return (int)(hash ^ hash >>> 32);
+    }
+
+    private static RoleTypeTable getTable() { return RoleInstancePool.getInstance().getRoleTypeTable(); }
+
+    /**
+     * Gets the number of entries of this cache.
+     * @return The number of entries.
+     */
+    public int getCapacity() { return capacity; }
+    /**
+     * Gets the number of validations that were answered from this cache.
+     * @return The number of cache hits.
+     */
+    public long getHitCount() { return hits.sum(); }
+    /**
+     * Gets the number of validations that were not answered from this cache, and had to validate the role list.
+     * @return The number of cache misses.
+     */
+    public long getMissCount() { return misses.sum(); }
+
+    /**
+     * Removes all the cached results.
+     */
+    public void clear() { entries = new Entries(getTable(), capacity); }
+
+    private static final class Entries
+    {
+        private final RoleTypeTable table;
+        private final AtomicReferenceArray<Entry> entries;
+
+        private Entries(RoleTypeTable table, int capacity)
+        {
+            this.table = table;
+            entries = new AtomicReferenceArray<>(capacity);
+        }
+    }
+
+    private static final class Entry
+    {
+        private final long low;
+        private final long high;
+        private final long availableRolesMask;
+        private final boolean valid;
+
+        private Entry(long low, long high, long availableRolesMask, boolean valid)
+        {
+            this.low = low;
+            this.high = high;
+            this.availableRolesMask = availableRolesMask;
+            this.valid = valid;
+        }
+    }
+}
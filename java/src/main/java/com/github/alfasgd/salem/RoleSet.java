@@ -0,0 +1,220 @@
+package com.github.alfasgd.salem;
+
+import com.github.alfasgd.salem.common.*;
+
+/**
+ * Represents a mutable set of role types, stored as a mask of their IDs in the {@link RoleTypeTable}. Every operation
+ * is a constant-time bitwise operation and does not allocate.
+ */
+public final class RoleSet
+{
+    private long mask;
+
+    /**
+     * Initializes a new instance of the {@link RoleSet} class with no roles.
+     */
+    public RoleSet() { }
+    /**
+     * Initializes a new instance of the {@link RoleSet} class with the roles from the given mask.
+     * @param mask The mask of the role IDs to add to the set.
+     */
+    public RoleSet(long mask)
+    {
+        this.mask = mask;
+    }
+    /**
+     * Initializes a new instance of the {@link RoleSet} class from another {@link RoleSet} instance.
+     * @param other The other {@link RoleSet} instance to copy.
+     */
+    public RoleSet(RoleSet other)
+    {
+        mask = other.mask;
+    }
+
+    /**
+     * Gets the mask of the role IDs contained in this set.
+     * @return The mask of the role IDs contained in this set.
+     */
+    public long getMask() { return mask; }
+    /**
+     * Replaces the contents of this set with the roles from the given mask.
+     * @param mask The mask of the role IDs that this set will contain.
+     */
+    public void setMask(long mask) { this.mask = mask; }
+
+    /**
+     * Gets the number of roles in this set.
+     * @return The number of roles in this set.
+     */
+    public int size() { return Long.bitCount(mask); }
+    /**
+     * Determines whether this set contains no roles.
+     * @return {@code true} if this set is empty, otherwise {@code false}.
+     */
+    public boolean isEmpty() { return mask == 0; }
+
+    /**
+     * Determines whether this set contains the role with the given ID.
+     * @param id The ID of the role.
+     * @return {@code true} if the role is contained in this set, otherwise {@code false}.
+     */
+    public boolean contains(int id) { return (mask & (1L << id)) != 0; }
+    /**
+     * Determines whether this set contains all the roles of another set.
+     * @param other The other set.
+     * @return {@code true} if all the roles of the other set are contained in this set, otherwise {@code false}.
+     */
+    public boolean containsAll(RoleSet other) { return (other.mask & ~mask) == 0; }
+    /**
+     * Determines whether this set and another set have at least one role in common.
+     * @param other The other set.
+     * @return {@code true} if the sets intersect, otherwise {@code false}.
+     */
+    public boolean intersects(RoleSet other) { return (mask & other.mask) != 0; }
+
+    /**
+     * Adds the role with the given ID to this set.
+     * @param id The ID of the role to add.
+     * @return {@code true} if the role was not already contained in this set, otherwise {@code false}.
+     */
+    public boolean add(int id)
+    {
+        long previous = mask;
+        mask |= 1L << id;
+        return mask != previous;
+    }
+    /**
+     * Removes the role with the given ID from this set.
+     * @param id The ID of the role to remove.
+     * @return {@code true} if the role was contained in this set, otherwise {@code false}.
+     */
+    public boolean remove(int id)
+    {
+        long previous = mask;
+        mask &= ~(1L << id);
+        return mask != previous;
+    }
+
+    /**
+     * Adds all the roles of another set to this set.
+     * @param other The other set.
+     * @return {@code true} if this set was modified, otherwise {@code false}.
+     */
+    public boolean addAll(RoleSet other) { return addAll(other.mask); }
+    /**
+     * Adds all the roles of the given mask to this set.
+     * @param otherMask The mask of the role IDs to add.
+     * @return {@code true} if this set was modified, otherwise {@code false}.
+     */
+    public boolean addAll(long otherMask)
+    {
+        long previous = mask;
+        mask |= otherMask;
+        return mask != previous;
+    }
+    /**
+     * Removes all the roles of another set from this set.
+     * @param other The other set.
+     * @return {@code true} if this set was modified, otherwise {@code false}.
+     */
+    public boolean removeAll(RoleSet other) { return removeAll(other.mask); }
+    /**
+     * Removes all the roles of the given mask from this set.
+     * @param otherMask The mask of the role IDs to remove.
+     * @return {@code true} if this set was modified, otherwise {@code false}.
+     */
+    public boolean removeAll(long otherMask)
+    {
+        long previous = mask;
+        mask &= ~otherMask;
+        return mask != previous;
+    }
+    /**
+     * Retains only the roles of this set that are also contained in another set, i.e. intersects the two sets.
+     * @param other The other set.
+     * @return {@code true} if this set was modified, otherwise {@code false}.
+     */
+    public boolean retainAll(RoleSet other) { return retainAll(other.mask); }
+    /**
+     * Retains only the roles of this set that are also contained in the given mask, i.e. intersects the two sets.
+     * @param otherMask The mask of the role IDs to retain.
+     * @return {@code true} if this set was modified, otherwise {@code false}.
+     */
+    public boolean retainAll(long otherMask)
+    {
+        long previous = mask;
+        mask &= otherMask;
+        return mask != previous;
+    }
+
+    /**
+     * Removes all the roles from this set.
+     */
+    public void clear() { mask = 0; }
+    /**
+     * Removes all the roles that belong to the given faction from this set.
+     * @param faction The faction that the roles to remove belong to.
+     */
+    public void clearFaction(Faction faction) { mask &= ~getTable().getFactionMask(faction); }
+    /**
+     * Removes all the roles whose full alignment matches the given alignment from this set.
+     * @param alignment The alignment that the roles to remove match, as determined by
+     *                  {@link RoleAlignment#matchesFilter(RoleAlignment)}.
+     */
+    public void clearAlignment(RoleAlignment alignment) { mask &= ~getTable().getAlignmentFilterMask(alignment); }
+
+    /**
+     * Gets the mask of the roles of this set that match the given alignment filter.
+     * @param filter The alignment filter.
+     * @return The mask of the roles that match the filter.
+     */
+    public long getMatchingMask(RoleAlignment filter) { return mask & getTable().getAlignmentFilterMask(filter); }
+    /**
+     * Gets the number of roles in this set that match the given alignment filter.
+     * @param filter The alignment filter.
+     * @return The number of roles that match the filter.
+     */
+    public int count(RoleAlignment filter) { return Long.bitCount(getMatchingMask(filter)); }
+
+    /**
+     * Gets the ID of the role with the given rank in this set, where the roles are ranked by their IDs.
+     * @param rank The zero-based rank of the role. It must be less than {@link #size()}.
+     * @return The ID of the role with the given rank.
+     */
+    public int select(int rank) { return BitUtils.selectBit(mask, rank); }
+    /**
+     * Gets the ID of the role with the given rank among the roles of this set that match the given alignment filter.
+     * @param filter The alignment filter.
+     * @param rank The zero-based rank of the role. It must be less than {@link #count(RoleAlignment)}.
+     * @return The ID of the role with the given rank.
+     */
+    public int select(RoleAlignment filter, int rank) { return BitUtils.selectBit(getMatchingMask(filter), rank); }
+
+    /**
+     * Gets the smallest ID of a role in this set that is greater than or equal to the given ID. This can be used to
+     * iterate over the set without allocating.
+     * @param fromId The ID to start searching from.
+     * @return The ID of the next role in the set, or -1 if there is none.
+     */
+    public int nextId(int fromId)
+    {
+        if (fromId >= 64)
+            return -1;
+
+        long remaining = mask & (-1L << fromId);
+        return remaining == 0 ? -1 : Long.numberOfTrailingZeros(remaining);
+    }
+
+    @Override
+    public boolean equals(Object obj)
+    {
+        if (!(obj instanceof RoleSet))
+            return false;
+
+        return mask == ((RoleSet)obj).mask;
+    }
+    @Override
+    public int hashCode() { return Long.hashCode(mask); }
+
+    private static RoleTypeTable getTable() { return RoleInstancePool.getInstance().getRoleTypeTable(); }
+}
@@ -1,14 +1,14 @@
 package com.github.alfasgd.salem;
 
-import java.util.Random;
+import java.util.random.RandomGenerator;
 
 public interface RoleSlot
 {
     /**
      * Generates a random role from the provided dictionary of available roles.
      * @param availableRoles The dictionary of available roles the generated role will be from.
-     * @param random The instance of {@link Random} to use to randomly choose the role.
+     * @param random The {@link RandomGenerator} to use to randomly choose the role.
      * @return The randomly generated role.
      */
-    public Role generateRandomRole(RoleCollection availableRoles, Random random);
+    public Role generateRandomRole(RoleCollection availableRoles, RandomGenerator random);
 }
@@ -0,0 +1,175 @@
+package com.github.alfasgd.salem;
+
+/**
+ * Provides the compact codes of the role slots. Every role is coded by its ID in the {@link RoleTypeTable}, and every
+ * role alignment by its {@link RoleAlignment#getCode()} after all the possible role IDs. Since there may be at most
+ * {@link RoleTypeTable#MaximumRoleCount} roles and {@link RoleAlignment#CodeCount} role alignments, every slot fits in
+ * {@link #BitsPerSlot} bits, and a whole role list of up to {@link RoleList#MaximumSlotCount} slots fits in two
+ * {@code long}s.
+ * <p>
+ * The code 0 is reserved for the absence of a slot, so that packed role lists of different lengths never collide.
+ * </p>
+ */
+public final class RoleSlotCodes
+{
+    /**
+     * The number of bits that a slot code occupies.
+     */
+    public static final int BitsPerSlot = 7;
+    /**
+     * The mask of the bits of a slot code.
+     */
+    public static final int SlotCodeMask = (1 << BitsPerSlot) - 1;
+    /**
+     * The code that represents the absence of a slot.
+     */
+    public static final int EmptyCode = 0;
+    /**
+     * The number of slot codes that fit in the low {@code long} of a packed role list; the rest are stored in the high
+     * {@code long}.
+     */
+    public static final int SlotsPerLong = Long.SIZE / BitsPerSlot;
+
+    private static final int RoleCodeOffset = 1;
+    private static final int AlignmentCodeOffset = RoleCodeOffset + RoleTypeTable.MaximumRoleCount;
+
+    private RoleSlotCodes() { }
+
+    /**
+     * Gets the code of the given role slot.
+     * @param slot The role slot. It must be either a {@link Role} that is contained in the table, or a
+     *             {@link RoleAlignment}.
+     * @param table The role type table that the role IDs refer to.
+     * @return The code of the role slot.
+     */
+    public static int getCode(RoleSlot slot, RoleTypeTable table)
+    {
+        int code = findCode(slot, table);
+        if (code == EmptyCode)
+            throw new IllegalArgumentException("Only registered roles and role alignments can be coded.");
+        return code;
+    }
+    /**
+     * Gets the code of the given role slot, if it has one.
+     * @param slot The role slot.
+     * @param table The role type table that the role IDs refer to.
+     * @return The code of the role slot, or {@link #EmptyCode} if it is neither a {@link Role} that is contained in the
+     *         table nor a {@link RoleAlignment}.
+     */
+    public static int findCode(RoleSlot slot, RoleTypeTable table)
+    {
+        if (slot instanceof RoleAlignment)
+            return getAlignmentCode(((RoleAlignment)slot).getCode());
+
+        if (slot instanceof Role)
+        {
+            int id = table.getRoleId((Role)slot);
+            if (id >= 0)
+                return getRoleCode(id);
+        }
+        return EmptyCode;
+    }
+    /**
+     * Gets the code of the role with the given ID.
+     * @param id The ID of the role.
+     * @return The code of the role.
+     */
+    public static int getRoleCode(int id) { return RoleCodeOffset + id; }
+    /**
+     * Gets the code of the role alignment with the given {@link RoleAlignment#getCode()}.
+     * @param alignmentCode The code of the role alignment.
+     * @return The slot code of the role alignment.
+     */
+    public static int getAlignmentCode(int alignmentCode) { return AlignmentCodeOffset + alignmentCode; }
+
+    /**
+     * Gets the role slot with the given code.
+     * @param code The code of the role slot.
+     * @param table The role type table that the role IDs refer to.
+     * @return The role slot with the given code, or {@code null} if the code is {@link #EmptyCode}.
+     */
+    public static RoleSlot getSlot(int code, RoleTypeTable table)
+    {
+        if (code == EmptyCode)
+            return null;
+        if (isAlignmentCode(code))
+            return RoleAlignment.fromCode(code - AlignmentCodeOffset);
+        return table.getRole(code - RoleCodeOffset);
+    }
+    /**
+     * Determines whether the given code is the code of a role alignment.
+     * @param code The code of the role slot.
+     * @return {@code true} if the code is the code of a role alignment, otherwise {@code false}.
+     */
+    public static boolean isAlignmentCode(int code) { return code >= AlignmentCodeOffset; }
+
+    /**
+     * Stores the sorted codes of the given role slots in the given array, so that role lists with the same slots in any
+     * order have the same codes.
+     * @param slots The role slots.
+     * @param table The role type table that the role IDs refer to.
+     * @param codes The array to store the sorted codes in. It must be at least as long as the role slots array.
+     */
+    static void getSortedCodes(RoleSlot[] slots, RoleTypeTable table, int[] codes)
+    {
+        // Insertion sort, since there are at most 15 codes
+        for (int i = 0; i < slots.length; i++)
+        {
+            int code = getCode(slots[i], table);
+            int j = i;
+            for (; j > 0 && codes[j - 1] > code; j--)
+                codes[j] = codes[j - 1];
+            codes[j] = code;
+        }
+    }
+    /**
+     * Stores the sorted codes of the given role slots in the given array, unless some slot has no code.
+     * @param slots The role slots.
+     * @param table The role type table that the role IDs refer to.
+     * @param codes The array to store the sorted codes in. It must be at least as long as the role slots array.
+     * @return {@code true} if every role slot has a code, otherwise {@code false}, in which case the contents of the
+     *         array are unspecified.
+     */
+    static boolean tryGetSortedCodes(RoleSlot[] slots, RoleTypeTable table, int[] codes)
+    {
+        for (int i = 0; i < slots.length; i++)
+        {
+            int code = findCode(slots[i], table);
+            if (code == EmptyCode)
+                return false;
+
+            int j = i;
+            for (; j > 0 && codes[j - 1] > code; j--)
+                codes[j] = codes[j - 1];
+            codes[j] = code;
+        }
+        return true;
+    }
+
+    /**
+     * Packs the first codes of the given array into a {@code long}.
+     * @param codes The slot codes.
+     * @param count The number of the codes.
+     * @return The packed low {@code long}, containing up to {@link #SlotsPerLong} codes.
+     */
+    static long packLow(int[] codes, int count)
+    {
+        long packed = 0;
+        for (int i = Math.min(count, SlotsPerLong) - 1; i >= 0; i--)
+            packed = packed << BitsPerSlot | codes[i];
+        return packed;
+    }
+    /**
+     * Packs the codes of the given array after the first {@link #SlotsPerLong} into a {@code long}.
+     * @param codes The slot codes.
+     * @param count The number of the codes.
+     * @return The packed high {@code long}.
+     */
+    static long packHigh(int[] codes, int count)
+    {
+        long packed = 0;
+        for (int i = count - 1; i >= SlotsPerLong; i--)
+            packed = packed << BitsPerSlot | codes[i];
+        return packed;
+    }
+}
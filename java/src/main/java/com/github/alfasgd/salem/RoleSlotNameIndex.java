@@ -0,0 +1,151 @@
+package com.github.alfasgd.salem;
+
+import java.util.Arrays;
+
+/**
+ * Represents a case-insensitive trie of the names of the role slots, mapping every name to its
+ * {@link RoleSlotCodes slot code}. Roles are named by their {@link Role#getRoleName()} and, unless they are
+ * {@link CustomRole custom roles}, their type's simple name, and role alignments by their
+ * {@link RoleAlignment#toString()}. The trie is walked one character at a time, so that names can be matched while
+ * they are being read, without creating strings.
+ * <p>
+ * Runs of whitespace within a name must be passed as a single space. Instances are immutable.
+ * </p>
+ */
+final class RoleSlotNameIndex
+{
+    private static final int AlphabetLimit = 128;
+
+    private static volatile RoleSlotNameIndex cachedIndex;
+
+    private final RoleTypeTable table;
+    private final byte[] symbols = new byte[AlphabetLimit];
+    private final int alphabetSize;
+    private int[] transitions;
+    private short[] codes;
+    private int nodeCount = 1;
+
+    private RoleSlotNameIndex(RoleTypeTable table)
+    {
+        this.table = table;
+
+        Arrays.fill(symbols, (byte)-1);
+        int size = 0;
+        var names = new String[2 * table.getRoleCount() + RoleAlignment.CodeCount];
+        var nameCodes = new int[names.length];
+        int count = 0;
+        for (int code = 0; code < RoleAlignment.CodeCount; code++)
+        {
+            names[count] = RoleAlignment.fromCode(code).toString();
+            nameCodes[count++] = RoleSlotCodes.getAlignmentCode(code);
+        }
+        for (int id = 0; id < table.getRoleCount(); id++)
+        {
+            names[count] = table.getRoleName(id);
+            nameCodes[count++] = RoleSlotCodes.getRoleCode(id);
+
+            // Custom roles share a single type, and are only named by their role names
+            if (table.getRole(id) instanceof CustomRole)
+                continue;
+
+            names[count] = table.getRoleType(id).getSimpleName();
+            nameCodes[count++] = RoleSlotCodes.getRoleCode(id);
+        }
+
+        for (int n = 0; n < count; n++)
+        {
+            var name = names[n];
+            for (int i = 0; i < name.length(); i++)
+            {
+                char c = fold(name.charAt(i));
+                if (c < AlphabetLimit && symbols[c] < 0)
+                    symbols[c] = (byte)size++;
+            }
+        }
+        alphabetSize = size;
+
+        transitions = new int[16 * alphabetSize];
+        codes = new short[16];
+        for (int i = 0; i < count; i++)
+            insert(names[i], nameCodes[i]);
+    }
+
+    /**
+     * Gets the name index of the given role type table, which is built once and reused while the table is current.
+     * @param table The role type table.
+     * @return The name index of the table.
+     */
+    public static RoleSlotNameIndex getIndex(RoleTypeTable table)
+    {
+        var index = cachedIndex;
+        if (index == null || index.table != table)
+            cachedIndex = index = new RoleSlotNameIndex(table);
+        return index;
+    }
+
+    private void insert(String name, int code)
+    {
+        // Only ASCII names can be matched
+        for (int i = 0; i < name.length(); i++)
+            if (fold(name.charAt(i)) >= AlphabetLimit)
+                return;
+
+        int node = getRoot();
+        for (int i = 0; i < name.length(); i++)
+        {
+            int transition = node * alphabetSize + symbols[fold(name.charAt(i))];
+            if (transitions[transition] == 0)
+            {
+                if (nodeCount == codes.length)
+                {
+                    codes = Arrays.copyOf(codes, 2 * nodeCount);
+                    transitions = Arrays.copyOf(transitions, 2 * nodeCount * alphabetSize);
+                }
+                transitions[transition] = nodeCount++;
+            }
+            node = transitions[transition];
+        }
+
+        // The first name wins, so that role alignments cannot be shadowed by role names
+        if (codes[node] == RoleSlotCodes.EmptyCode)
+            codes[node] = (short)code;
+    }
+
+    private static char fold(char c) { return c >= 'A' && c <= 'Z' ? (char)(c + ('a' - 'A')) : c; }
+
+    /**
+     * Gets the role type table whose names are indexed.
+     * @return The role type table.
+     */
+    public RoleTypeTable getRoleTypeTable() { return table; }
+
+    /**
+     * Gets the root node of the trie, which represents the empty name.
+     * @return The root node.
+     */
+    public int getRoot() { return 0; }
+    /**
+     * Gets the node that follows the given node with the given character, ignoring its case.
+     * @param node The current node, or -1 if no name matches the previous characters.
+     * @param c The next character.
+     * @return The next node, or -1 if no name starts with the characters.
+     */
+    public int next(int node, char c)
+    {
+        if (node < 0)
+            return -1;
+
+        c = fold(c);
+        if (c >= AlphabetLimit || symbols[c] < 0)
+            return -1;
+
+        int next = transitions[node * alphabetSize + symbols[c]];
+        return next == 0 ? -1 : next;
+    }
+    /**
+     * Gets the slot code of the name that ends at the given node.
+     * @param node The node, or -1 if no name matches.
+     * @return The slot code of the name, or {@link RoleSlotCodes#EmptyCode} if no name ends at the node.
+     */
+    public int getCode(int node) { return node < 0 ? RoleSlotCodes.EmptyCode : codes[node]; }
+}
@@ -0,0 +1,381 @@
+package com.github.alfasgd.salem;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Represents an immutable table of the registered role types. Every role type is given a dense ID, ranging from 0
+ * (inclusive) to {@link #getRoleCount()} (exclusive), and its metadata is stored in arrays indexed by that ID, so that
+ * generation and validation can avoid hashing the role types and calling the {@link Role} interface's methods.
+ * <p>
+ * Every table is a snapshot of the registry, identified by its {@link #getVersion() version}. Registering a role
+ * publishes a new table with a greater version instead of modifying the current one, so tables may be freely shared
+ * across threads.
+ * </p>
+ * <p>
+ * {@link CustomRole Custom roles} share a single type, so they are identified by their names instead; the methods that
+ * take role types do not find them.
+ * </p>
+ */
+public final class RoleTypeTable
+{
+    /**
+     * The maximum number of role types that a table may contain.
+     */
+    public static final int MaximumRoleCount = 64;
+
+    private static final Faction[] factions = Faction.values();
+
+    private final Role[] roles;
+    private final ClassValue<Integer> roleIds = new RoleIdClassValue();
+    private final HashMap<String, Integer> roleNameIds;
+    private final Map<Class<? extends Role>, Role> roleTypeMap;
+    private final long version;
+
+    private final String[] roleNames;
+    private final byte[] alignmentCodes;
+    private final byte[] factionOrdinals;
+    private final boolean[] canStartAs;
+    private final boolean[] isUnique;
+    private final byte[] maximumOccurrences;
+    private final boolean[] covenDLCExclusive;
+    private final boolean[] unavailableInCovenDLC;
+    private final byte[] promotionTargets;
+
+    private final long allRolesMask;
+    private final long typedRolesMask;
+    private final long fingerprint;
+    private final long[] alignmentMasks = new long[RoleAlignment.CodeCount];
+    private final long[] alignmentFilterMasks = new long[RoleAlignment.CodeCount];
+    private final long[] factionMasks = new long[factions.length];
+    private final long[] startableRolesMasks = new long[GamePackTypes.values().length];
+
+    RoleTypeTable(Role[] roles)
+    {
+        this(roles, 0);
+    }
+    private RoleTypeTable(Role[] roles, long version)
+    {
+        if (roles.length > MaximumRoleCount)
+            throw new IllegalArgumentException("The table may not contain more than " + MaximumRoleCount + " role types.");
+
+        this.roles = Arrays.copyOf(roles, roles.length);
+        this.version = version;
+        int count = roles.length;
+
+        roleNameIds = new HashMap<>();
+        roleNames = new String[count];
+        alignmentCodes = new byte[count];
+        factionOrdinals = new byte[count];
+        canStartAs = new boolean[count];
+        isUnique = new boolean[count];
+        maximumOccurrences = new byte[count];
+        covenDLCExclusive = new boolean[count];
+        unavailableInCovenDLC = new boolean[count];
+        promotionTargets = new byte[count];
+
+        var roleTypes = new LinkedHashMap<Class<? extends Role>, Role>();
+        long typedMask = 0;
+        for (int id = 0; id < count; id++)
+        {
+            var role = roles[id];
+            roleNames[id] = role.getRoleName();
+            roleNameIds.putIfAbsent(roleNames[id].toLowerCase(Locale.ROOT), id);
+            if (role instanceof CustomRole)
+                continue;
+
+            roleTypes.put(role.getClass(), role);
+            typedMask |= 1L << id;
+        }
+        roleTypeMap = Collections.unmodifiableMap(roleTypes);
+        typedRolesMask = typedMask;
+
+        for (int id = 0; id < count; id++)
+        {
+            var role = roles[id];
+            alignmentCodes[id] = (byte)role.getFullAlignment().getCode();
+            factionOrdinals[id] = (byte)role.getFaction().ordinal();
+            canStartAs[id] = role.canStartAs();
+            isUnique[id] = role.isUnique();
+            maximumOccurrences[id] = (byte)role.getMaximumOccurrences();
+            covenDLCExclusive[id] = role.covenDLCExclusive();
+            unavailableInCovenDLC[id] = role.unavailableInCovenDLC();
+
+            if (role instanceof CustomRole)
+            {
+                var promotionTargetName = ((CustomRole)role).getPromotionTargetName();
+                promotionTargets[id] = (byte)(promotionTargetName == null ? -1 : getRoleId(promotionTargetName));
+            }
+            else
+            {
+                var promotionTarget = role.promotesInto();
+                promotionTargets[id] = (byte)(promotionTarget == null ? -1 : getRoleId(promotionTarget));
+            }
+
+            alignmentMasks[alignmentCodes[id]] |= 1L << id;
+            factionMasks[factionOrdinals[id]] |= 1L << id;
+        }
+
+        allRolesMask = count == MaximumRoleCount ? -1L : (1L << count) - 1;
+
+        // FNV-1a over the role type names in the order of their IDs, where custom roles are named by their role names
+        long hash = 0xCBF29CE484222325L;
+        for (var role : roles)
+        {
+            var name = role instanceof CustomRole ? role.getClass().getName() + ':' + role.getRoleName() : role.getClass().getName();
+            for (int i = 0; i < name.length(); i++)
+                hash = (hash ^ name.charAt(i)) * 0x100000001B3L;
+            hash = (hash ^ ';') * 0x100000001B3L;
+        }
+        fingerprint = hash;
+
+        for (int filterCode = 0; filterCode < RoleAlignment.CodeCount; filterCode++)
+        {
+            var filter = RoleAlignment.fromCode(filterCode);
+            for (int code = 0; code < RoleAlignment.CodeCount; code++)
+                if (RoleAlignment.fromCode(code).matchesFilter(filter))
+                    alignmentFilterMasks[filterCode] |= alignmentMasks[code];
+        }
+
+        long startableMask = 0;
+        long classicMask = 0;
+        long covenMask = 0;
+        for (int id = 0; id < count; id++)
+        {
+            if (!canStartAs[id])
+                continue;
+
+            startableMask |= 1L << id;
+            if (!covenDLCExclusive[id])
+                classicMask |= 1L << id;
+            if (!unavailableInCovenDLC[id])
+                covenMask |= 1L << id;
+        }
+
+        for (var packTypes : GamePackTypes.values())
+        {
+            long mask = startableMask;
+            if ((packTypes.code & GamePackTypes.Classic.code) != 0)
+                mask &= classicMask;
+            if ((packTypes.code & GamePackTypes.Coven.code) != 0)
+                mask &= covenMask;
+            startableRolesMasks[packTypes.ordinal()] = mask;
+        }
+    }
+
+    /**
+     * Creates a new table that contains all the role types of this table, followed by the provided roles.
+     * @param newRoles The roles to append to the table. Their IDs will follow this table's {@link #getRoleCount()}.
+     * @return The new table, whose version is the next one of this table's.
+     */
+    RoleTypeTable append(Role... newRoles)
+    {
+        var allRoles = Arrays.copyOf(roles, roles.length + newRoles.length);
+        System.arraycopy(newRoles, 0, allRoles, roles.length, newRoles.length);
+        return new RoleTypeTable(allRoles, version + 1);
+    }
+
+    /**
+     * Gets the version of the registry state that this table represents. It starts at 0 and increases by 1 every time
+     * that roles are registered, so that caches that depend on the registry can check whether they are current by
+     * comparing a single number.
+     * @return The version of this table.
+     */
+    public long getVersion() { return version; }
+
+    /**
+     * Gets the number of role types in this table.
+     * @return The number of role types in this table.
+     */
+    public int getRoleCount() { return roles.length; }
+
+    /**
+     * Gets the mask of all the role types in this table, where the bit at the position of each role's ID is set.
+     * @return The mask of all the role types in this table.
+     */
+    public long getAllRolesMask() { return allRolesMask; }
+    /**
+     * Gets the mask of the roles that are identified by their own type, which are all the roles except for the
+     * {@link CustomRole custom roles}.
+     * @return The mask of the roles that are identified by their own type.
+     */
+    public long getTypedRolesMask() { return typedRolesMask; }
+    /**
+     * Gets the fingerprint of the role types of this table and their IDs. Tables with the same role types in the same
+     * order have the same fingerprint, so that data that refers to the role IDs can be checked against the table that
+     * it is read with.
+     * @return The fingerprint of this table.
+     */
+    public long getFingerprint() { return fingerprint; }
+    /**
+     * Gets the mask of the role types whose full alignment is exactly the given one.
+     * @param alignmentCode The {@link RoleAlignment#getCode()} of the full alignment.
+     * @return The mask of the role types whose full alignment is the given one.
+     */
+    public long getAlignmentMask(int alignmentCode) { return alignmentMasks[alignmentCode]; }
+    /**
+     * Gets the mask of the role types whose full alignment matches the given filter, as determined by
+     * {@link RoleAlignment#matchesFilter(RoleAlignment)}.
+     * @param filter The alignment filter.
+     * @return The mask of the role types that match the given filter.
+     */
+    public long getAlignmentFilterMask(RoleAlignment filter) { return alignmentFilterMasks[filter.getCode()]; }
+    /**
+     * Gets the mask of the role types whose full alignment matches the filter with the given code.
+     * @param filterCode The {@link RoleAlignment#getCode()} of the alignment filter.
+     * @return The mask of the role types that match the given filter.
+     */
+    public long getAlignmentFilterMask(int filterCode) { return alignmentFilterMasks[filterCode]; }
+    /**
+     * Gets the mask of the role types that belong to the given faction.
+     * @param faction The faction. If it is {@link Faction#Any}, the mask of all the role types is returned.
+     * @return The mask of the role types that belong to the given faction.
+     */
+    public long getFactionMask(Faction faction) { return faction == Faction.Any ? allRolesMask : factionMasks[faction.ordinal()]; }
+
+    /**
+     * Gets the mask of the role types that a player can start as in a game with the given game pack types. A role type
+     * is included only if it is available in every one of the game packs, as in
+     * {@link RoleCollection#getAllStartableRoleTypesIntersection(GamePackTypes)}.
+     * @param packTypes The game pack types of the game.
+     * @return The mask of the startable role types, or 0 if the game pack types are {@code null}.
+     */
+    public long getStartableRolesMask(GamePackTypes packTypes)
+    {
+        return packTypes == null ? 0 : startableRolesMasks[packTypes.ordinal()];
+    }
+
+    /**
+     * Gets the name of the role with the given ID, as returned by {@link Role#getRoleName()}.
+     * @param id The ID of the role.
+     * @return The name of the role.
+     */
+    public String getRoleName(int id) { return roleNames[id]; }
+
+    /**
+     * Gets the ID of the given role type.
+     * @param roleType The role type whose ID to get.
+     * @return The ID of the role type, or -1 if it is not contained in this table.
+     */
+    public int getRoleId(Class<?> roleType) { return roleIds.get(roleType); }
+    /**
+     * Gets the ID of the given role's type, or of the given custom role.
+     * @param role The role whose ID to get.
+     * @return The ID of the role, or -1 if it is not contained in this table.
+     */
+    public int getRoleId(Role role)
+    {
+        if (!(role instanceof CustomRole))
+            return getRoleId(role.getClass());
+
+        int id = getRoleId(role.getRoleName());
+        return id >= 0 && roles[id].equals(role) ? id : -1;
+    }
+    /**
+     * Gets the ID of the role with the given name, as returned by {@link Role#getRoleName()}, ignoring case.
+     * @param roleName The name of the role.
+     * @return The ID of the role, or -1 if no role in this table has the given name.
+     */
+    public int getRoleId(String roleName)
+    {
+        var id = roleNameIds.get(roleName.toLowerCase(Locale.ROOT));
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Gets a read-only map of the role types of this table to their instances, in the order of their IDs. Custom roles
+     * are not included, since they share a single type.
+     * @return The map of the role types to their instances.
+     */
+    public Map<Class<? extends Role>, Role> getRoleTypeMap() { return roleTypeMap; }
+
+    /**
+     * Gets the instance of the role with the given ID.
+     * @param id The ID of the role.
+     * @return The instance of the role.
+     */
+    public Role getRole(int id) { return roles[id]; }
+    /**
+     * Gets the type of the role with the given ID.
+     * @param id The ID of the role.
+     * @return The type of the role, which is {@link CustomRole} for every custom role.
+     */
+    public Class<? extends Role> getRoleType(int id) { return roles[id].getClass(); }
+
+    /**
+     * Gets the code of the full alignment of the role with the given ID.
+     * @param id The ID of the role.
+     * @return The {@link RoleAlignment#getCode()} of the role's full alignment.
+     */
+    public int getAlignmentCode(int id) { return alignmentCodes[id]; }
+    /**
+     * Gets the faction of the role with the given ID.
+     * @param id The ID of the role.
+     * @return The faction of the role.
+     */
+    public Faction getFaction(int id) { return factions[factionOrdinals[id]]; }
+    /**
+     * Gets the ordinal of the faction of the role with the given ID.
+     * @param id The ID of the role.
+     * @return The {@link Faction#ordinal()} of the role's faction.
+     */
+    public int getFactionOrdinal(int id) { return factionOrdinals[id]; }
+    /**
+     * Determines whether a player can start as the role with the given ID.
+     * @param id The ID of the role.
+     * @return The role's {@link Role#canStartAs()}.
+     */
+    public boolean canStartAs(int id) { return canStartAs[id]; }
+    /**
+     * Determines whether the role with the given ID is unique.
+     * @param id The ID of the role.
+     * @return The role's {@link Role#isUnique()}.
+     */
+    public boolean isUnique(int id) { return isUnique[id]; }
+    /**
+     * Gets the maximum number of occurrences of the role with the given ID in a role list.
+     * @param id The ID of the role.
+     * @return The role's {@link Role#getMaximumOccurrences()}.
+     */
+    public int getMaximumOccurrences(int id) { return maximumOccurrences[id]; }
+    /**
+     * Determines whether the role with the given ID is exclusive to the Coven DLC.
+     * @param id The ID of the role.
+     * @return The role's {@link Role#covenDLCExclusive()}.
+     */
+    public boolean isCovenDLCExclusive(int id) { return covenDLCExclusive[id]; }
+    /**
+     * Determines whether the role with the given ID is unavailable in the Coven DLC.
+     * @param id The ID of the role.
+     * @return The role's {@link Role#unavailableInCovenDLC()}.
+     */
+    public boolean isUnavailableInCovenDLC(int id) { return unavailableInCovenDLC[id]; }
+    /**
+     * Gets the ID of the role that the role with the given ID promotes into.
+     * @param id The ID of the role.
+     * @return The ID of the role's {@link Role#promotesInto()}, or -1 if the role does not promote into a registered
+     *         role.
+     */
+    public int getPromotionTarget(int id) { return promotionTargets[id]; }
+
+    // Caches the ID of every role type on the type itself, so that looking it up does not hash
+    private final class RoleIdClassValue
+        extends ClassValue<Integer>
+    {
+        @Override
+        protected Integer computeValue(Class<?> type)
+        {
+            if (type == CustomRole.class)
+                return -1;
+
+            for (int id = 0; id < roles.length; id++)
+                if (roles[id].getClass() == type)
+                    return id;
+            return -1;
+        }
+    }
+}
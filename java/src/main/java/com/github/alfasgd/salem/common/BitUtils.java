@@ -0,0 +1,47 @@
+package com.github.alfasgd.salem.common;
+
+/**
+ * Provides functions for handling bit masks.
+ */
+public final class BitUtils
+{
+    /**
+     * Gets the index of the set bit of the given rank in a mask.
+     * @param mask The mask whose set bit to find.
+     * @param rank The zero-based rank of the set bit to find, counting from the least significant bit. It must be less
+     *             than the number of set bits in the mask.
+     * @return The index of the requested set bit, or 64 if the mask contains too few set bits.
+     */
+    public static int selectBit(long mask, int rank)
+    {
+        int offset = 0;
+
+        int count = Long.bitCount(mask & 0xFFFFFFFFL);
+        if (rank >= count)
+        {
+            rank -= count;
+            mask >>>= 32;
+            offset += 32;
+        }
+        count = Long.bitCount(mask & 0xFFFFL);
+        if (rank >= count)
+        {
+            rank -= count;
+            mask >>>= 16;
+            offset += 16;
+        }
+        count = Long.bitCount(mask & 0xFFL);
+        if (rank >= count)
+        {
+            rank -= count;
+            mask >>>= 8;
+            offset += 8;
+        }
+
+        for (int i = 0; i < rank; i++)
+            mask &= mask - 1;
+
+        // The offsets of the skipped parts would otherwise be added to the 64 trailing zeros of an exhausted mask
+        return Math.min(offset + Long.numberOfTrailingZeros(mask), Long.SIZE);
+    }
+}
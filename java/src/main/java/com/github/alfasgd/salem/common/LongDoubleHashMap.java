@@ -0,0 +1,147 @@
+package com.github.alfasgd.salem.common;
+
+import java.util.Arrays;
+
+/**
+ * Represents an open-addressing hash map of {@code long} keys mapped to {@code double} values, that does not box its
+ * entries. The entries are iterated by their slot index, ranging from 0 (inclusive) to {@link #capacity()} (exclusive),
+ * skipping the slots for which {@link #isOccupied(int)} returns {@code false}.
+ */
+public final class LongDoubleHashMap
+{
+    private long[] keys;
+    private double[] values;
+    private boolean[] occupied;
+    private int size;
+
+    /**
+     * Initializes a new instance of the {@link LongDoubleHashMap} class with a small initial capacity.
+     */
+    public LongDoubleHashMap()
+    {
+        this(16);
+    }
+    /**
+     * Initializes a new instance of the {@link LongDoubleHashMap} class that can store the given number of entries
+     * without growing.
+     * @param expectedSize The expected number of entries.
+     */
+    public LongDoubleHashMap(int expectedSize)
+    {
+        int capacity = Integer.highestOneBit(Math.max(expectedSize * 2 - 1, 8)) << 1;
+        keys = new long[capacity];
+        values = new double[capacity];
+        occupied = new boolean[capacity];
+    }
+
+    /**
+     * Gets the number of entries in this map.
+     * @return The number of entries in this map.
+     */
+    public int size() { return size; }
+    /**
+     * Gets the number of slots of this map, which bounds the slot indices of the entries.
+     * @return The number of slots of this map.
+     */
+    public int capacity() { return keys.length; }
+
+    /**
+     * Determines whether the slot with the given index contains an entry.
+     * @param slot The index of the slot.
+     * @return {@code true} if the slot contains an entry, otherwise {@code false}.
+     */
+    public boolean isOccupied(int slot) { return occupied[slot]; }
+    /**
+     * Gets the key of the entry in the slot with the given index.
+     * @param slot The index of an occupied slot.
+     * @return The key of the entry.
+     */
+    public long keyAt(int slot) { return keys[slot]; }
+    /**
+     * Gets the value of the entry in the slot with the given index.
+     * @param slot The index of an occupied slot.
+     * @return The value of the entry.
+     */
+    public double valueAt(int slot) { return values[slot]; }
+
+    /**
+     * Gets the value mapped to the given key.
+     * @param key The key.
+     * @param defaultValue The value to return if the key is not contained in this map.
+     * @return The value mapped to the key, or the default value if there is none.
+     */
+    public double get(long key, double defaultValue)
+    {
+        int mask = keys.length - 1;
+        for (int slot = hash(key) & mask; occupied[slot]; slot = (slot + 1) & mask)
+            if (keys[slot] == key)
+                return values[slot];
+        return defaultValue;
+    }
+
+    /**
+     * Adds a value to the value mapped to the given key, mapping the key to the value if it is not already contained.
+     * @param key The key.
+     * @param value The value to add.
+     */
+    public void add(long key, double value)
+    {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        for (; occupied[slot]; slot = (slot + 1) & mask)
+        {
+            if (keys[slot] == key)
+            {
+                values[slot] += value;
+                return;
+            }
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        occupied[slot] = true;
+        if (++size * 2 > keys.length)
+            grow();
+    }
+
+    /**
+     * Removes all the entries from this map, retaining its capacity.
+     */
+    public void clear()
+    {
+        Arrays.fill(occupied, false);
+        size = 0;
+    }
+
+    private void grow()
+    {
+        var oldKeys = keys;
+        var oldValues = values;
+        var oldOccupied = occupied;
+
+        keys = new long[oldKeys.length * 2];
+        values = new double[oldKeys.length * 2];
+        occupied = new boolean[oldKeys.length * 2];
+
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++)
+        {
+            if (!oldOccupied[i])
+                continue;
+
+            int slot = hash(oldKeys[i]) & mask;
+            while (occupied[slot])
+                slot = (slot + 1) & mask;
+
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+            occupied[slot] = true;
+        }
+    }
+
+    private static int hash(long key)
+    {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int)(mixed ^ (mixed >>> 32));
+    }
+}
@@ -14,7 +14,7 @@ public class ValueCounterHashMap<TKey>
      * @param key The key whose counter to increase by the requested value.
      * @param value The value to add.
      */
-    public void add(TKey key, int value) { put(key, get(key) + value); }
+    public void add(TKey key, int value) { put(key, getOrDefault(key, 0) + value); }
     /**
      * Adds 1 to the counter for the specified key.
      * @param key The key whose counter to increase by 1.
@@ -26,7 +26,7 @@ public class ValueCounterHashMap<TKey>
      * @param key The key whose counter to decrease by the requested value.
      * @param value The value to add.
      */
-    public void subtract(TKey key, int value) { put(key, get(key) - value); }
+    public void subtract(TKey key, int value) { put(key, getOrDefault(key, 0) - value); }
     /**
      * Subtracts 1 from the counter for the specified key.
      * @param key The key whose counter to decrease by 1.
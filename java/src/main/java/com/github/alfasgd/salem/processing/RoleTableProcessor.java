@@ -0,0 +1,123 @@
+package com.github.alfasgd.salem.processing;
+
+import javax.annotation.processing.*;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.*;
+
+/**
+ * Generates the static role table that the role instance pool is initialized from. Every public final class that
+ * implements {@code Role} and declares a public parameterless constructor is included, ordered by its simple name, so
+ * that the role instances can be created at startup without scanning the classpath or invoking constructors
+ * reflectively.
+ * <p>
+ * Incremental builds may only compile a subset of the sources. Besides the compiled sources, the processor therefore
+ * also includes the role types of the role package that are already compiled, as found through its
+ * {@link PackageElement}, so that the generated table does not lose the roles whose sources were not recompiled.
+ * Role types outside of the role package are only found when their sources are compiled.
+ * </p>
+ */
+@SupportedAnnotationTypes("*")
+public final class RoleTableProcessor
+    extends AbstractProcessor
+{
+    /** The package that the role types and the generated table belong to. */
+    public static final String RolePackage = "com.github.alfasgd.salem";
+    /** The simple name of the generated role table class. */
+    public static final String TableClassName = "GeneratedRoleTable";
+
+    private final TreeMap<String, String> roleTypeNames = new TreeMap<>();
+    private boolean generated;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() { return SourceVersion.latestSupported(); }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnvironment)
+    {
+        if (generated)
+            return false;
+
+        var roleElement = processingEnv.getElementUtils().getTypeElement(RolePackage + ".Role");
+        if (roleElement == null)
+            return false;
+
+        var roleType = processingEnv.getTypeUtils().erasure(roleElement.asType());
+        for (var type : ElementFilter.typesIn(roundEnvironment.getRootElements()))
+            addIfRegistrable(type, roleType);
+
+        // The package also contains the role types that were compiled by a previous build
+        var rolePackage = processingEnv.getElementUtils().getPackageElement(RolePackage);
+        if (rolePackage != null)
+            for (var type : ElementFilter.typesIn(rolePackage.getEnclosedElements()))
+                addIfRegistrable(type, roleType);
+
+        if (roleTypeNames.isEmpty())
+            return false;
+
+        writeTable();
+        generated = true;
+        return false;
+    }
+
+    private void addIfRegistrable(TypeElement type, TypeMirror roleType)
+    {
+        if (isRegistrableRoleType(type, roleType))
+            roleTypeNames.put(type.getSimpleName().toString(), type.getQualifiedName().toString());
+    }
+
+    private boolean isRegistrableRoleType(TypeElement type, TypeMirror roleType)
+    {
+        if (type.getKind() != ElementKind.CLASS)
+            return false;
+
+        var modifiers = type.getModifiers();
+        if (!modifiers.contains(Modifier.FINAL) || !modifiers.contains(Modifier.PUBLIC))
+            return false;
+
+        if (!processingEnv.getTypeUtils().isAssignable(type.asType(), roleType))
+            return false;
+
+        for (var constructor : ElementFilter.constructorsIn(type.getEnclosedElements()))
+            if (constructor.getParameters().isEmpty() && constructor.getModifiers().contains(Modifier.PUBLIC))
+                return true;
+
+        return false;
+    }
+
+    private void writeTable()
+    {
+        try
+        {
+            var file = processingEnv.getFiler().createSourceFile(RolePackage + "." + TableClassName);
+            try (Writer writer = file.openWriter())
+            {
+                writer.write("package " + RolePackage + ";\n\n");
+                writer.write("/**\n");
+                writer.write(" * Contains the role types that are available at compile time. Generated by {@code "
+                        + getClass().getSimpleName() + "}; do not edit.\n");
+                writer.write(" */\n");
+                writer.write("final class " + TableClassName + "\n{\n");
+                writer.write("    private " + TableClassName + "() { }\n\n");
+                writer.write("    /**\n");
+                writer.write("     * Creates a new instance of every available role type, ordered by the role type's name.\n");
+                writer.write("     * @return The array of the created role instances.\n");
+                writer.write("     */\n");
+                writer.write("    static Role[] createRoles()\n    {\n");
+                writer.write("        return new Role[]\n        {\n");
+                for (var name : roleTypeNames.values())
+                    writer.write("            new " + name + "(),\n");
+                writer.write("        };\n    }\n}\n");
+            }
+        }
+        catch (IOException e)
+        {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, "Could not generate the role table: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.github.alfasgd.salem.tests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import com.github.alfasgd.salem.*;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+public class CustomRoleTests
+{
+    private static Role watchman;
+    private static Role captain;
+    private static Role smuggler;
+    private static Role hag;
+    private static Role drifter;
+
+    @BeforeAll
+    public static void registerCustomRoles() throws IOException
+    {
+        Assertions.assertEquals(5, CustomRoleLoader.register("custom-roles.txt"));
+
+        var pool = RoleInstancePool.getInstance();
+        watchman = pool.getInstance("Watchman");
+        captain = pool.getInstance("Vigilante Captain");
+        smuggler = pool.getInstance("Smuggler");
+        hag = pool.getInstance("Hag");
+        drifter = pool.getInstance("Drifter");
+    }
+
+    @Test
+    public void roleCollectionTest()
+    {
+        var collection = RoleCollection.getAllAvailableRolesCollection();
+        int typedCount = RoleInstancePool.getInstance().getAllRoleTypes().size();
+
+        // The custom roles are only exposed by their instances
+        Assertions.assertEquals(typedCount, collection.size());
+        Assertions.assertEquals(typedCount, new HashSet<>(collection).size());
+        Assertions.assertEquals(typedCount, collection.toArray().length);
+        Assertions.assertFalse(collection.contains(CustomRole.class));
+        Assertions.assertFalse(collection.getRoleTypesByAlignment().get(RoleAlignment.TownKilling).contains(CustomRole.class));
+
+        var roles = collection.getRoles();
+        Assertions.assertEquals(typedCount + 5, roles.size());
+        Assertions.assertEquals(roles.size(), new HashSet<>(roles).size());
+        Assertions.assertTrue(roles.contains(captain));
+        Assertions.assertTrue(roles.contains(new CustomRole("vigilante captain", RoleAlignment.TownKilling)));
+        Assertions.assertTrue(new HashSet<>(List.of(collection.getRoles(RoleAlignment.TownKilling))).contains(captain));
+        Assertions.assertFalse(new HashSet<>(List.of(collection.getRoles(RoleAlignment.TownKilling))).contains(watchman));
+
+        // Filtering by types keeps the custom roles, which are not elements of the collection
+        collection.retainAll(List.of(Jailor.class));
+        Assertions.assertEquals(1, collection.size());
+        Assertions.assertEquals(6, collection.getRoles().size());
+
+        var classic = RoleCollection.getStartableRolesCollection(GamePackTypes.Classic).getRoles();
+        Assertions.assertTrue(classic.contains(smuggler));
+        Assertions.assertFalse(classic.contains(hag));
+        Assertions.assertFalse(classic.contains(drifter));
+        Assertions.assertFalse(RoleCollection.getStartableRolesCollection(GamePackTypes.Coven).getRoles().contains(smuggler));
+    }
+
+    @Test
+    public void promotionTargetTest()
+    {
+        var table = RoleInstancePool.getInstance().getRoleTypeTable();
+        Assertions.assertEquals(table.getRoleId(Jailor.class), table.getPromotionTarget(table.getRoleId(captain)));
+        Assertions.assertEquals(-1, table.getPromotionTarget(table.getRoleId(watchman)));
+    }
+
+    @Test
+    public void roleListTest()
+    {
+        var list = new RoleList(new RoleSlot[] { captain, smuggler, smuggler, watchman, RoleAlignment.TownInvestigative, RoleAlignment.MafiaSupport, RoleAlignment.Any });
+        Assertions.assertTrue(list.isValidRoleList(GamePackTypes.Classic));
+        Assertions.assertFalse(list.isValidRoleList(GamePackTypes.Coven));
+
+        var occurrences = list.getRoleInstanceOccurrences();
+        Assertions.assertEquals(3, occurrences.size());
+        Assertions.assertEquals(2, occurrences.get(smuggler));
+        Assertions.assertEquals(1, occurrences.get(captain));
+        Assertions.assertEquals(1, occurrences.get(watchman));
+        Assertions.assertEquals(3, list.getDistinctRoleInstances().size());
+
+        // The type-keyed occurrences only count the roles with their own types
+        var typed = new RoleList(new RoleSlot[] { captain, RoleInstancePool.getInstance().getInstance(Jailor.class), smuggler });
+        Assertions.assertEquals(1, typed.getRoleOccurrences().size());
+        Assertions.assertEquals(1, typed.getRoleOccurrences().get(Jailor.class));
+        Assertions.assertFalse(typed.getDistinctRoles().contains(CustomRole.class));
+
+        Assertions.assertFalse(new RoleList(new RoleSlot[] { smuggler, smuggler, smuggler }).isValidRoleList(GamePackTypes.Classic));
+        Assertions.assertFalse(new RoleList(new RoleSlot[] { captain, captain }).isValidRoleList(GamePackTypes.Classic));
+        Assertions.assertFalse(new RoleList(new RoleSlot[] { drifter }).isValidRoleList(GamePackTypes.Classic));
+
+        var availableRoles = RoleCollection.getStartableRolesCollection(GamePackTypes.Classic);
+        var generator = new RoleListGenerator(0);
+        for (int i = 0; i < 1000; i++)
+        {
+            var generated = list.generateConstrainedRoleList(availableRoles, generator);
+            Assertions.assertNotNull(generated);
+            Assertions.assertTrue(generated.isValidRoleList(GamePackTypes.Classic));
+            Assertions.assertSame(captain, generated.get(0));
+            Assertions.assertSame(smuggler, generated.get(1));
+            Assertions.assertEquals(2, generated.getRoleInstanceOccurrences().get(smuggler));
+        }
+    }
+
+    @Test
+    public void generationTest()
+    {
+        var random = new Random(0);
+        var generatedCustomRoles = new HashSet<Role>();
+        for (int i = 0; i < 1000; i++)
+        {
+            var generated = RoleListFactory.AllAny.generateRandomRoleList(GamePackTypes.Classic, random);
+            Assertions.assertNotNull(generated);
+            Assertions.assertTrue(generated.isValidRoleList(GamePackTypes.Classic));
+
+            for (var entry : generated.getRoleInstanceOccurrences().entrySet())
+            {
+                Assertions.assertTrue(entry.getValue() <= entry.getKey().getMaximumOccurrences());
+                if (entry.getKey() instanceof CustomRole)
+                    generatedCustomRoles.add(entry.getKey());
+            }
+        }
+
+        // Every startable Classic custom role is generated on its own
+        Assertions.assertEquals(new HashSet<>(List.of(watchman, captain, smuggler)), generatedCustomRoles);
+    }
+}
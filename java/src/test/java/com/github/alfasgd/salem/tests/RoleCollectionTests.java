@@ -0,0 +1,77 @@
+package com.github.alfasgd.salem.tests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import com.github.alfasgd.salem.*;
+
+import java.util.HashSet;
+import java.util.List;
+
+public class RoleCollectionTests
+{
+    @Test
+    public void mutationTest()
+    {
+        var collection = new RoleCollection();
+        Assertions.assertTrue(collection.add(Jailor.class));
+        Assertions.assertFalse(collection.add(Jailor.class));
+        Assertions.assertTrue(collection.add(Vigilante.class));
+        Assertions.assertTrue(collection.add(Godfather.class));
+        Assertions.assertEquals(3, collection.size());
+        Assertions.assertTrue(collection.contains(Jailor.class));
+        Assertions.assertFalse(collection.contains(Sheriff.class));
+
+        Assertions.assertTrue(collection.remove(Vigilante.class));
+        Assertions.assertFalse(collection.remove(Vigilante.class));
+        Assertions.assertEquals(2, collection.size());
+
+        collection.clearFaction(Faction.Mafia);
+        Assertions.assertEquals(1, collection.size());
+        Assertions.assertFalse(collection.contains(Godfather.class));
+
+        collection.retainAll(List.of(Sheriff.class));
+        Assertions.assertTrue(collection.isEmpty());
+    }
+
+    @Test
+    public void getTest()
+    {
+        var collection = RoleCollection.getAllAvailableRolesCollection();
+        var townKilling = new HashSet<>(List.of(collection.get(RoleAlignment.TownKilling)));
+        Assertions.assertEquals(new HashSet<>(List.of(Jailor.class, Veteran.class, Vigilante.class, VampireHunter.class)), townKilling);
+        Assertions.assertEquals(6, collection.get(RoleAlignment.CovenAny).length);
+        Assertions.assertEquals(collection.size(), collection.get(RoleAlignment.Any).length);
+
+        collection.clearAlignment(RoleAlignment.TownKilling);
+        Assertions.assertEquals(0, collection.get(RoleAlignment.TownKilling).length);
+
+        var iterated = new HashSet<Class<? extends Role>>();
+        for (var type : collection)
+            Assertions.assertTrue(iterated.add(type));
+        Assertions.assertEquals(collection.size(), iterated.size());
+    }
+
+    @Test
+    public void startableRolesCollectionTest()
+    {
+        var classic = RoleCollection.getStartableRolesCollection(GamePackTypes.Classic);
+        Assertions.assertSame(classic, RoleCollection.getStartableRolesCollection(GamePackTypes.Classic));
+        Assertions.assertTrue(classic.isReadOnly());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> classic.add(Jailor.class));
+
+        for (var packTypes : GamePackTypes.values())
+        {
+            var expected = RoleCollection.getAllAvailableRolesCollection().getAllStartableRoleTypesIntersection(packTypes);
+            Assertions.assertEquals(new HashSet<>(expected), new HashSet<>(RoleCollection.getStartableRolesCollection(packTypes)));
+        }
+
+        Assertions.assertFalse(classic.contains(CovenLeader.class));
+        Assertions.assertFalse(classic.contains(Pestilence.class));
+        Assertions.assertFalse(RoleCollection.getStartableRolesCollection(GamePackTypes.Coven).contains(Witch.class));
+
+        var none = RoleCollection.getStartableRolesCollection(null);
+        Assertions.assertSame(none, RoleCollection.getStartableRolesCollection(null));
+        Assertions.assertTrue(none.isEmpty());
+        Assertions.assertTrue(none.isReadOnly());
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.alfasgd.salem.tests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import com.github.alfasgd.salem.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+public class RoleInstancePoolTests
+{
+    @Test
+    public void generatedRoleTableTest()
+    {
+        var pool = RoleInstancePool.getInstance();
+        Assertions.assertEquals(50, pool.getRoleTypeCount());
+        Assertions.assertTrue(pool.getInstance(Jailor.class) instanceof Jailor);
+        Assertions.assertTrue(pool.getInstance(CovenLeader.class) instanceof CovenLeader);
+        Assertions.assertFalse(pool.register(Jailor.class));
+
+        Assertions.assertEquals(pool.getRoleTypeCount(), RoleCollection.getAllAvailableRolesCollection().size());
+    }
+
+    @Test
+    public void roleTypeTableTest()
+    {
+        var pool = RoleInstancePool.getInstance();
+        var table = pool.getRoleTypeTable();
+        for (int id = 0; id < table.getRoleCount(); id++)
+        {
+            var role = table.getRole(id);
+            Assertions.assertSame(role, pool.getInstance(id));
+            Assertions.assertEquals(id, pool.getRoleId(role.getClass()));
+            Assertions.assertEquals(role.getFullAlignment(), RoleAlignment.fromCode(table.getAlignmentCode(id)));
+            Assertions.assertEquals(role.getFaction(), table.getFaction(id));
+            Assertions.assertEquals(role.canStartAs(), table.canStartAs(id));
+            Assertions.assertEquals(role.isUnique(), table.isUnique(id));
+            Assertions.assertEquals(role.getMaximumOccurrences(), table.getMaximumOccurrences(id));
+            Assertions.assertEquals(role.covenDLCExclusive(), table.isCovenDLCExclusive(id));
+            Assertions.assertEquals(role.unavailableInCovenDLC(), table.isUnavailableInCovenDLC(id));
+        }
+
+        Assertions.assertEquals(pool.getRoleId(Godfather.class), table.getPromotionTarget(pool.getRoleId(Mafioso.class)));
+        Assertions.assertEquals(-1, table.getPromotionTarget(pool.getRoleId(Jailor.class)));
+    }
+
+    @Test
+    public void registrySnapshotTest()
+    {
+        var pool = RoleInstancePool.getInstance();
+        var table = pool.getRoleTypeTable();
+        Assertions.assertEquals(table.getVersion(), pool.getVersion());
+
+        var roleTypes = pool.getAllRoleTypes();
+        Assertions.assertSame(roleTypes, pool.getAllRoleTypes());
+        Assertions.assertEquals(pool.getRoleTypeCount(), roleTypes.size());
+        Assertions.assertSame(pool.getInstance(Jailor.class), roleTypes.get(Jailor.class));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> roleTypes.remove(Jailor.class));
+
+        // Failed registrations do not publish a new version
+        Assertions.assertFalse(pool.register(Jailor.class));
+        Assertions.assertSame(table, pool.getRoleTypeTable());
+        Assertions.assertSame(RoleCollection.getStartableRolesCollection(GamePackTypes.Coven), RoleCollection.getStartableRolesCollection(GamePackTypes.Coven));
+    }
+
+    @Test
+    public void customRoleDefinitionTest() throws IOException
+    {
+        var roles = CustomRoleLoader.load("custom-roles.txt");
+        Assertions.assertEquals(5, roles.size());
+
+        var captain = roles.get(1);
+        Assertions.assertEquals("Vigilante Captain", captain.getRoleName());
+        Assertions.assertEquals(RoleAlignment.TownKilling, captain.getFullAlignment());
+        Assertions.assertTrue(captain.isUnique());
+        Assertions.assertEquals(1, captain.getMaximumOccurrences());
+        Assertions.assertEquals("Jailor", captain.getPromotionTargetName());
+
+        var smuggler = roles.get(2);
+        Assertions.assertEquals(2, smuggler.getMaximumOccurrences());
+        Assertions.assertTrue(smuggler.unavailableInCovenDLC());
+        Assertions.assertTrue(roles.get(3).covenDLCExclusive());
+        Assertions.assertFalse(roles.get(4).canStartAs());
+
+        Assertions.assertThrows(IOException.class, () -> CustomRoleLoader.load(new StringReader("Watchman | Town Any")));
+        Assertions.assertThrows(IOException.class, () -> CustomRoleLoader.load(new StringReader("Watchman | Town Killing | unique, max=2")));
+        Assertions.assertThrows(IOException.class, () -> CustomRoleLoader.load(new StringReader("Watchman | Town Killing | fast")));
+
+        // Custom roles may not shadow the names of the registered roles
+        var pool = RoleInstancePool.getInstance();
+        var table = pool.getRoleTypeTable();
+        Assertions.assertFalse(pool.register(new CustomRole("jailor", RoleAlignment.TownKilling)));
+        Assertions.assertSame(table, pool.getRoleTypeTable());
+        Assertions.assertSame(pool.getInstance(Jailor.class), pool.getInstance("JAILOR"));
+        Assertions.assertEquals(-1, table.getRoleId(captain));
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.alfasgd.salem.tests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import com.github.alfasgd.salem.*;
+
+public class RoleListBuilderTests
+{
+    @Test
+    public void incrementalBuilderTest()
+    {
+        var builder = new RoleListBuilder(GamePackTypes.Coven);
+        builder.add(Jailor.class);
+        builder.add(RoleAlignment.TownKilling);
+        Assertions.assertTrue(builder.isFeasible());
+
+        builder.add(Jailor.class);
+        Assertions.assertFalse(builder.isFeasible());
+        builder.remove(2);
+        Assertions.assertTrue(builder.isFeasible());
+
+        // All the Coven roles are unique
+        var covenCount = RoleCollection.getStartableRolesCollection(GamePackTypes.Coven).get(Faction.Coven).length;
+        builder.add(covenCount, RoleAlignment.CovenEvil);
+        Assertions.assertTrue(builder.isFeasible());
+        builder.roleSlots.add(RoleAlignment.CovenAny);
+        Assertions.assertFalse(builder.isFeasible());
+        Assertions.assertEquals(RoleAlignment.CovenAny, builder.roleSlots.set(builder.size() - 1, RoleAlignment.TownAny));
+        Assertions.assertTrue(builder.isFeasible());
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> builder.roleSlots.iterator().remove());
+
+        // The faction bound accepts wildcard slots that compete for the same unique roles
+        var competing = new RoleListBuilder(GamePackTypes.Classic);
+        competing.add(4, RoleAlignment.MafiaKilling);
+        Assertions.assertTrue(competing.isFeasible());
+        Assertions.assertFalse(competing.isValidRoleList());
+        Assertions.assertNull(competing.toPreparedRoleList());
+
+        var prepared = builder.toPreparedRoleList();
+        Assertions.assertNotNull(prepared);
+        Assertions.assertEquals(builder.toRoleList().isValidRoleList(GamePackTypes.Coven), builder.isValidRoleList());
+        var expected = PreparedRoleList.prepare(builder.toRoleList(), GamePackTypes.Coven);
+        Assertions.assertEquals(expected.getAvailableRolesMask(), prepared.getAvailableRolesMask());
+        for (var faction : Faction.values())
+            Assertions.assertEquals(expected.getFactionCapacity(faction), prepared.getFactionCapacity(faction));
+        for (int i = 0; i < 100; i++)
+            Assertions.assertTrue(prepared.generateRandomRoleList().isValidRoleList(GamePackTypes.Coven));
+    }
+}
@@ -0,0 +1,49 @@
+package com.github.alfasgd.salem.tests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import com.github.alfasgd.salem.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+public class RoleListCodecTests
+{
+    @Test
+    public void codecTest()
+    {
+        var codec = new RoleListCodec();
+        var random = new Random(0);
+        var lists = new RoleList[100];
+        for (int i = 0; i < lists.length; i++)
+            lists[i] = i % 2 == 0 ? RoleListFactory.CovenRanked.generateRandomRoleList(GamePackTypes.Coven, random) : RoleListFactory.TownTraitor;
+
+        var buffer = ByteBuffer.allocate(lists.length * RoleListCodec.BytesPerRoleList);
+        codec.write(buffer, lists, 0, lists.length);
+        Assertions.assertFalse(buffer.hasRemaining());
+
+        buffer.flip();
+        var slots = new RoleSlot[RoleList.MaximumSlotCount];
+        for (var list : lists)
+        {
+            int count = codec.read(buffer, slots);
+            Assertions.assertArrayEquals(list.getRoleSlots(), Arrays.copyOf(slots, count));
+        }
+
+        buffer.flip();
+        var encoded = new long[2 * lists.length];
+        codec.readEncoded(buffer, encoded, 0, lists.length);
+        var copy = ByteBuffer.allocate(buffer.capacity());
+        codec.writeEncoded(copy, encoded, 0, lists.length);
+        Assertions.assertEquals(buffer.flip(), copy.flip());
+
+        var decoded = new RoleList[lists.length];
+        codec.read(copy, decoded, 0, decoded.length);
+        for (int i = 0; i < lists.length; i++)
+            Assertions.assertArrayEquals(lists[i].getRoleSlots(), decoded[i].getRoleSlots());
+
+        var shortList = new RoleList(new RoleSlot[] { RoleAlignment.Any });
+        Assertions.assertEquals(1, codec.decode(codec.encodeLow(shortList), codec.encodeHigh(shortList)).size());
+    }
+}
@@ -0,0 +1,162 @@
+package com.github.alfasgd.salem.tests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import com.github.alfasgd.salem.*;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.stream.StreamSupport;
+
+public class RoleListCompletionsTests
+{
+    @Test
+    public void countTest()
+    {
+        var jailor = RoleInstancePool.getInstance().getInstance(Jailor.class);
+
+        // The Classic Town Killing roles are Jailor and Veteran, which are unique, and Vigilante and Vampire Hunter
+        var twoSlots = new RoleList(new RoleSlot[] { RoleAlignment.TownKilling, RoleAlignment.TownKilling });
+        Assertions.assertEquals(BigInteger.valueOf(4 * 4 - 2), twoSlots.prepareCompletions(GamePackTypes.Classic).getCount());
+
+        var fixedJailor = new RoleList(new RoleSlot[] { jailor, RoleAlignment.TownKilling });
+        Assertions.assertEquals(BigInteger.valueOf(3), fixedJailor.prepareCompletions(GamePackTypes.Classic).getCount());
+
+        var fixedOnly = new RoleList(new RoleSlot[] { jailor });
+        Assertions.assertEquals(BigInteger.ONE, fixedOnly.prepareCompletions(GamePackTypes.Classic).getCount());
+
+        var invalid = new RoleList(new RoleSlot[] { jailor, jailor });
+        Assertions.assertNull(invalid.prepareCompletions(GamePackTypes.Classic));
+
+        var allAny = RoleListFactory.AllAny.prepareCompletions(GamePackTypes.Coven);
+        Assertions.assertFalse(allAny.fitsInLong());
+        Assertions.assertTrue(allAny.getCount().bitLength() > Long.SIZE);
+    }
+
+    @Test
+    public void uniformSamplingTest()
+    {
+        var list = new RoleList(new RoleSlot[] { RoleAlignment.TownKilling, RoleAlignment.TownKilling, RoleAlignment.TownInvestigative });
+        var completions = list.prepareCompletions(GamePackTypes.Classic);
+        Assertions.assertTrue(completions.fitsInLong());
+
+        int count = completions.getCount().intValueExact();
+        int samples = count * 5_000;
+        var random = new SplittableRandom(0);
+        var counts = new HashMap<List<RoleSlot>, Integer>();
+        var destination = new RoleSlot[3];
+        for (int i = 0; i < samples; i++)
+        {
+            completions.sample(random, destination);
+            Assertions.assertTrue(new RoleList(destination).isValidRoleList(GamePackTypes.Classic));
+            counts.merge(List.of(destination), 1, Integer::sum);
+        }
+
+        Assertions.assertEquals(count, counts.size());
+        for (int occurrences : counts.values())
+            Assertions.assertEquals(5_000, occurrences, 400);
+    }
+
+    @Test
+    public void largeCountSamplingTest()
+    {
+        var completions = RoleListFactory.AllAny.prepareCompletions(GamePackTypes.Coven);
+        var random = new SplittableRandom(0);
+        for (int i = 0; i < 100; i++)
+            Assertions.assertTrue(completions.generateRandomRoleList(random).isValidRoleList(GamePackTypes.Coven));
+    }
+
+    @Test
+    public void perFilterMultisetEnumerationTest()
+    {
+        // Two of the four roles, or either of the non-unique roles twice
+        var twoSlots = new RoleList(new RoleSlot[] { RoleAlignment.TownKilling, RoleAlignment.TownKilling });
+        var perFilter = twoSlots.prepareCompletions(GamePackTypes.Classic, true);
+        Assertions.assertTrue(perFilter.countsPerFilterMultisets());
+        Assertions.assertEquals(BigInteger.valueOf(6 + 2), perFilter.getCount());
+
+        var multisets = new HashSet<Map<Class<? extends Role>, Integer>>();
+        perFilter.stream(false).forEach(list ->
+        {
+            Assertions.assertTrue(list.isValidRoleList(GamePackTypes.Classic));
+            multisets.add(list.getRoleOccurrences());
+        });
+        Assertions.assertEquals(8, multisets.size());
+
+        // The parallel enumeration must produce every completion exactly once
+        var list = new RoleList(new RoleSlot[] { RoleAlignment.TownKilling, RoleAlignment.TownKilling, RoleAlignment.TownInvestigative });
+        var completions = list.prepareCompletions(GamePackTypes.Classic);
+        var enumerated = completions.stream(true).map(completion -> List.of(completion.getRoleSlots())).toList();
+        Assertions.assertEquals(completions.getCount().intValueExact(), enumerated.size());
+        Assertions.assertEquals(enumerated.size(), new HashSet<>(enumerated).size());
+
+        // Huge spaces can still be enumerated lazily
+        var allAny = RoleListFactory.AllAny.prepareCompletions(GamePackTypes.Coven, true);
+        Assertions.assertEquals(10, allAny.stream(true).limit(10).count());
+        Assertions.assertTrue(RoleListFactory.CovenRanked.prepareCompletions(GamePackTypes.Coven, true).getCount().signum() > 0);
+    }
+
+    @Test
+    public void perFilterMultisetCountTest()
+    {
+        // The filters overlap, so the same game may be counted with its roles assigned to different filters
+        var list = new RoleList(new RoleSlot[] { RoleAlignment.TownInvestigative, RoleAlignment.TownAny, RoleAlignment.TownAny, RoleAlignment.TownKilling });
+        var perFilter = list.prepareCompletions(GamePackTypes.Classic, true);
+
+        // Brute force over all the ordered completions
+        var perFilterMultisets = new HashSet<Map<RoleSlot, Map<Class<? extends Role>, Integer>>>();
+        var games = new HashSet<Map<Class<? extends Role>, Integer>>();
+        list.prepareCompletions(GamePackTypes.Classic).stream(false).forEach(completion ->
+        {
+            var byFilter = new HashMap<RoleSlot, Map<Class<? extends Role>, Integer>>();
+            for (int i = 0; i < list.size(); i++)
+                byFilter.computeIfAbsent(list.get(i), filter -> new HashMap<>()).merge(((Role)completion.get(i)).getClass(), 1, Integer::sum);
+            perFilterMultisets.add(byFilter);
+            games.add(completion.getRoleOccurrences());
+        });
+
+        Assertions.assertEquals(perFilterMultisets.size(), perFilter.getCount().intValueExact());
+        Assertions.assertTrue(games.size() < perFilterMultisets.size());
+    }
+
+    @Test
+    public void rankTest()
+    {
+        var list = new RoleList(new RoleSlot[] { RoleAlignment.TownKilling, RoleAlignment.TownKilling, RoleAlignment.TownInvestigative });
+        for (boolean distinct : new boolean[] { false, true })
+        {
+            var completions = list.prepareCompletions(GamePackTypes.Classic, distinct);
+            var destination = new RoleSlot[3];
+            for (long rank = 0; rank < completions.getCount().longValueExact(); rank++)
+            {
+                completions.unrank(rank, destination);
+                Assertions.assertEquals(rank, completions.rankLong(destination));
+            }
+
+            // The shards of the range of ranks must enumerate the same completions as the whole range
+            var half = completions.getCount().shiftRight(1);
+            var shards = new ArrayList<List<RoleSlot>>();
+            StreamSupport.stream(completions.spliterator(BigInteger.ZERO, half), false).forEach(completion -> shards.add(List.of(completion.getRoleSlots())));
+            StreamSupport.stream(completions.spliterator(half, completions.getCount()), false).forEach(completion -> shards.add(List.of(completion.getRoleSlots())));
+            Assertions.assertEquals(completions.stream(false).map(completion -> List.of(completion.getRoleSlots())).toList(), shards);
+        }
+
+        var vigilante = RoleInstancePool.getInstance().getInstance(Vigilante.class);
+        var sheriff = RoleInstancePool.getInstance().getInstance(Sheriff.class);
+        var completions = list.prepareCompletions(GamePackTypes.Classic);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> completions.rankLong(new RoleSlot[] { sheriff, vigilante, sheriff }));
+        Assertions.assertThrows(IndexOutOfBoundsException.class, () -> completions.unrank(completions.getCount(), new RoleSlot[3]));
+
+        var allAny = RoleListFactory.AllAny.prepareCompletions(GamePackTypes.Coven);
+        var random = new SplittableRandom(0);
+        var destination = new RoleSlot[RoleList.MaximumSlotCount];
+        for (int i = 0; i < 100; i++)
+        {
+            allAny.sample(random, destination);
+            var rank = allAny.rank(destination);
+            var unranked = new RoleSlot[destination.length];
+            allAny.unrank(rank, unranked);
+            Assertions.assertArrayEquals(destination, unranked);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.github.alfasgd.salem.tests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import com.github.alfasgd.salem.*;
+
+import java.util.Random;
+
+public class RoleListCorpusTests
+{
+    @Test
+    public void corpusTest()
+    {
+        var template = RoleListFactory.ClassicRanked;
+        var corpus = new RoleListCorpus(template.size());
+        var table = corpus.getRoleTypeTable();
+        var random = new Random(0);
+        var lists = new RoleList[2_000];
+        for (int i = 0; i < lists.length; i++)
+        {
+            lists[i] = template.generateRandomRoleList(GamePackTypes.Classic, random);
+            corpus.add(lists[i]);
+        }
+        Assertions.assertEquals(lists.length, corpus.size());
+
+        var expectedCounts = new long[table.getRoleCount()];
+        var expectedTownHistogram = new long[template.size() + 1];
+        long expectedJailorVigilante = 0;
+        for (var list : lists)
+        {
+            var occurrences = list.getRoleOccurrences();
+            int town = 0;
+            for (var entry : occurrences.entrySet())
+            {
+                expectedCounts[table.getRoleId(entry.getKey())] += entry.getValue();
+                if (table.getFaction(table.getRoleId(entry.getKey())) == Faction.Town)
+                    town += entry.getValue();
+            }
+            expectedTownHistogram[town]++;
+            if (occurrences.containsKey(Jailor.class) && occurrences.containsKey(Vigilante.class))
+                expectedJailorVigilante++;
+        }
+
+        Assertions.assertArrayEquals(expectedCounts, corpus.getRoleCounts());
+        Assertions.assertArrayEquals(expectedTownHistogram, corpus.getFactionCountHistograms()[Faction.Town.ordinal()]);
+        Assertions.assertEquals(expectedJailorVigilante, corpus.getCoOccurrenceCount(Jailor.class, Vigilante.class));
+
+        var matrix = corpus.getCoOccurrenceMatrix();
+        int jailor = table.getRoleId(Jailor.class);
+        int vigilante = table.getRoleId(Vigilante.class);
+        Assertions.assertEquals(expectedJailorVigilante, matrix[jailor][vigilante]);
+        Assertions.assertEquals(matrix[jailor][vigilante], matrix[vigilante][jailor]);
+        Assertions.assertEquals(lists.length, matrix[jailor][jailor]);
+    }
+}
@@ -0,0 +1,42 @@
+package com.github.alfasgd.salem.tests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import com.github.alfasgd.salem.*;
+
+import java.util.Arrays;
+
+public class RoleListGenerationLimitTests
+{
+    @Test
+    public void stateLimitTest()
+    {
+        // Pairs of roles that may occur 11 times, in alignments that no built-in role has
+        var alignments = new RoleAlignment[]
+        {
+            RoleAlignment.fromCode(Faction.Town.ordinal() * 9 + Alignment.Deception.ordinal()),
+            RoleAlignment.fromCode(Faction.Mafia.ordinal() * 9 + Alignment.Benign.ordinal()),
+            RoleAlignment.fromCode(Faction.Coven.ordinal() * 9 + Alignment.Killing.ordinal()),
+            RoleAlignment.fromCode(Faction.Neutral.ordinal() * 9 + Alignment.Support.ordinal()),
+        };
+        var pool = RoleInstancePool.getInstance();
+        for (int i = 0; i < alignments.length; i++)
+            for (int j = 0; j < 2; j++)
+                Assertions.assertTrue(pool.register(new CustomRole("Limited " + i + " " + j, alignments[i], true, false, 11, false, false, null)));
+
+        // The roles cannot run out in 11 slots, so their usage needs no state
+        var anySlots = new RoleSlot[11];
+        Arrays.fill(anySlots, RoleAlignment.Any);
+        var anyList = new RoleList(anySlots);
+        Assertions.assertNotNull(RoleListProbabilities.calculate(anyList, GamePackTypes.Coven));
+        Assertions.assertNotNull(FactionCompositionDistribution.calculate(anyList, GamePackTypes.Coven));
+
+        // With a slot of their own, every pair tracks each of its 11 levels of usage separately
+        var slots = Arrays.copyOf(anySlots, RoleList.MaximumSlotCount);
+        System.arraycopy(alignments, 0, slots, anySlots.length, alignments.length);
+        var limitedList = new RoleList(slots);
+        Assertions.assertTrue(limitedList.isValidRoleList(GamePackTypes.Coven));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> RoleListProbabilities.calculate(limitedList, GamePackTypes.Coven));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> FactionCompositionDistribution.calculate(limitedList, GamePackTypes.Coven));
+    }
+}
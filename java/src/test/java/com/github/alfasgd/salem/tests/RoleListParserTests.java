@@ -0,0 +1,52 @@
+package com.github.alfasgd.salem.tests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import com.github.alfasgd.salem.*;
+
+import java.io.StringReader;
+
+public class RoleListParserTests
+{
+    @Test
+    public void parserTest() throws Exception
+    {
+        var parser = new RoleListParser();
+        var jailor = RoleInstancePool.getInstance().getInstance(Jailor.class);
+        var vampireHunter = RoleInstancePool.getInstance().getInstance(VampireHunter.class);
+
+        var parsed = parser.parseRoleList("  jailor ,Town   investigative,VampireHunter, vampire hunter,ANY");
+        Assertions.assertArrayEquals(new RoleSlot[] { jailor, RoleAlignment.TownInvestigative, vampireHunter, vampireHunter, RoleAlignment.Any },
+                parsed.getRoleSlots());
+
+        // Every preset survives being printed and parsed again
+        var presets = new RoleList[] { RoleListFactory.AllAny, RoleListFactory.ClassicRanked, RoleListFactory.CovenRanked, RoleListFactory.TownTraitor };
+        var text = new StringBuilder();
+        for (var preset : presets)
+        {
+            for (int i = 0; i < preset.size(); i++)
+            {
+                var slot = preset.get(i);
+                text.append(i == 0 ? "" : ", ").append(slot instanceof Role ? ((Role)slot).getRoleName() : slot.toString());
+            }
+            text.append("\r\n\n");
+        }
+        var lists = parser.parseAll(new StringReader(text.toString()));
+        Assertions.assertEquals(presets.length, lists.size());
+        for (int i = 0; i < presets.length; i++)
+            Assertions.assertArrayEquals(presets[i].getRoleSlots(), lists.get(i).getRoleSlots());
+
+        var unknown = Assertions.assertThrows(RoleListParseException.class, () -> parser.parseAll(new StringReader("Jailor\nJailor, Town Jailor, Any")));
+        Assertions.assertEquals(2, unknown.getLine());
+        Assertions.assertEquals(9, unknown.getColumn());
+        var empty = Assertions.assertThrows(RoleListParseException.class, () -> parser.parseRoleList("Jailor,, Any"));
+        Assertions.assertEquals(8, empty.getColumn());
+
+        // A single role list may be surrounded by empty lines, but not followed by another one
+        Assertions.assertArrayEquals(new RoleSlot[] { jailor, RoleAlignment.Any }, parser.parseRoleList("\n Jailor, Any\r\n\n").getRoleSlots());
+        var multiple = Assertions.assertThrows(RoleListParseException.class, () -> parser.parseRoleList("Jailor, Any\n\n  Town Any"));
+        Assertions.assertEquals(3, multiple.getLine());
+        Assertions.assertEquals(3, multiple.getColumn());
+        Assertions.assertEquals(2, parser.parseAll(new StringReader("Jailor\nAny")).size());
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.alfasgd.salem.tests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import com.github.alfasgd.salem.*;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class RoleListProbabilitiesTests
+{
+    private static final double Epsilon = 1e-12;
+
+    @Test
+    public void exactProbabilitiesTest()
+    {
+        // The Classic Town Killing roles are Jailor and Veteran, which are unique, and Vigilante and Vampire Hunter
+        var list = new RoleList(new RoleSlot[] { RoleAlignment.TownKilling, RoleAlignment.TownKilling });
+        var probabilities = list.calculateProbabilities(GamePackTypes.Classic);
+
+        Assertions.assertEquals(0, probabilities.getFailureProbability(), Epsilon);
+        Assertions.assertEquals(1 / 4.0, probabilities.getSlotProbability(0, Jailor.class), Epsilon);
+        Assertions.assertEquals(5 / 24.0, probabilities.getSlotProbability(1, Jailor.class), Epsilon);
+        Assertions.assertEquals(7 / 24.0, probabilities.getSlotProbability(1, Vigilante.class), Epsilon);
+        Assertions.assertEquals(7 / 24.0, probabilities.getSlotProbability(1, VampireHunter.class), Epsilon);
+        Assertions.assertEquals(0, probabilities.getSlotProbability(1, Sheriff.class), Epsilon);
+
+        Assertions.assertEquals(11 / 24.0, probabilities.getPresenceProbability(Jailor.class), Epsilon);
+        Assertions.assertEquals(23 / 48.0, probabilities.getPresenceProbability(Vigilante.class), Epsilon);
+        Assertions.assertEquals(13 / 24.0, probabilities.getExpectedOccurrences(Vigilante.class), Epsilon);
+    }
+
+    @Test
+    public void monteCarloAgreementTest()
+    {
+        var list = RoleListFactory.ClassicRanked;
+        var probabilities = list.calculateProbabilities(GamePackTypes.Classic);
+        var table = probabilities.getRoleTypeTable();
+        var slotCount = probabilities.getSlotCount();
+
+        for (int slot = 0; slot < slotCount; slot++)
+        {
+            double sum = 0;
+            for (int id = 0; id < table.getRoleCount(); id++)
+                sum += probabilities.getSlotProbability(slot, id);
+            Assertions.assertEquals(1, sum, 1e-9);
+        }
+
+        int samples = 100_000;
+        var counts = new int[slotCount][table.getRoleCount()];
+        var presences = new int[table.getRoleCount()];
+        var generator = new RoleListGenerator(0);
+        var destination = new RoleSlot[slotCount];
+        var seen = new boolean[table.getRoleCount()];
+        for (int i = 0; i < samples; i++)
+        {
+            Assertions.assertTrue(generator.generate(list, GamePackTypes.Classic, destination));
+            Arrays.fill(seen, false);
+            for (int slot = 0; slot < slotCount; slot++)
+            {
+                int id = table.getRoleId((Role)destination[slot]);
+                counts[slot][id]++;
+                seen[id] = true;
+            }
+            for (int id = 0; id < seen.length; id++)
+                if (seen[id])
+                    presences[id]++;
+        }
+
+        for (int id = 0; id < table.getRoleCount(); id++)
+        {
+            for (int slot = 0; slot < slotCount; slot++)
+                Assertions.assertEquals(probabilities.getSlotProbability(slot, id), counts[slot][id] / (double)samples, 0.01);
+            Assertions.assertEquals(probabilities.getPresenceProbability(id), presences[id] / (double)samples, 0.01);
+        }
+    }
+
+    @Test
+    public void factionCompositionTest()
+    {
+        var single = new RoleList(new RoleSlot[] { RoleInstancePool.getInstance().getInstance(Jailor.class), RoleAlignment.Any });
+        var singleComposition = single.calculateFactionComposition(GamePackTypes.Classic);
+        var available = RoleCollection.getStartableRolesCollection(GamePackTypes.Classic);
+        double total = available.size() - 1;
+        double townKilling = available.get(RoleAlignment.TownKilling).length - 1;
+        double town = available.get(Faction.Town).length - 1;
+        Assertions.assertEquals(townKilling / total, singleComposition.getProbability(2, 0, 0, 0, 2), Epsilon);
+        Assertions.assertEquals((town - townKilling) / total, singleComposition.getProbability(2, 0, 0, 0, 1), Epsilon);
+
+        // The expected faction counts must agree with the role probabilities
+        for (var list : new RoleList[] { RoleListFactory.ClassicRanked, RoleListFactory.TownTraitor })
+        {
+            var composition = list.calculateFactionComposition(GamePackTypes.Classic);
+            var probabilities = list.calculateProbabilities(GamePackTypes.Classic);
+            var table = probabilities.getRoleTypeTable();
+
+            double sum = 0;
+            for (int i = 0; i < composition.size(); i++)
+                sum += composition.getProbability(i);
+            Assertions.assertEquals(1, sum, 1e-9);
+
+            for (var faction : new Faction[] { Faction.Town, Faction.Mafia, Faction.Coven, Faction.Neutral })
+            {
+                double expected = 0;
+                for (int id = 0; id < table.getRoleCount(); id++)
+                    if (table.getFaction(id) == faction)
+                        expected += probabilities.getExpectedOccurrences(id);
+
+                var distribution = composition.getFactionCountDistribution(faction);
+                double actual = 0;
+                for (int count = 0; count < distribution.length; count++)
+                    actual += count * distribution[count];
+                Assertions.assertEquals(expected, actual, 1e-9);
+            }
+        }
+    }
+
+    @Test
+    public void factionCompositionEnumerationTest()
+    {
+        // The Any slots pick their roles among the same ones, and they may take Mafioso, which the last slot needs
+        var slots = new RoleSlot[] { RoleInstancePool.getInstance().getInstance(Godfather.class), RoleAlignment.Any,
+                RoleAlignment.TownAny, RoleAlignment.Any, RoleAlignment.MafiaKilling };
+        var composition = new RoleList(slots).calculateFactionComposition(GamePackTypes.Classic);
+
+        var roles = RoleCollection.getStartableRolesCollection(GamePackTypes.Classic).getRoles().toArray(new Role[0]);
+        var remaining = new int[roles.length];
+        for (int i = 0; i < roles.length; i++)
+            remaining[i] = roles[i].getMaximumOccurrences() - (roles[i] instanceof Godfather ? 1 : 0);
+
+        var expected = new HashMap<Integer, Double>();
+        double success = enumerateCompositions(slots, 1, roles, remaining, getCompositionKey((Role)slots[0]), 1, expected);
+        Assertions.assertTrue(success < 1);
+        Assertions.assertEquals(1 - success, composition.getFailureProbability(), Epsilon);
+        Assertions.assertEquals(expected.size(), composition.size());
+        for (int i = 0; i < composition.size(); i++)
+        {
+            int key = composition.getFactionCount(i, Faction.Town)
+                    | composition.getFactionCount(i, Faction.Mafia) << 4
+                    | composition.getFactionCount(i, Faction.Coven) << 8
+                    | composition.getFactionCount(i, Faction.Neutral) << 12
+                    | composition.getKillingCount(i) << 16;
+            Assertions.assertEquals(expected.get(key) / success, composition.getProbability(i), Epsilon);
+        }
+    }
+
+    private static double enumerateCompositions(RoleSlot[] slots, int index, Role[] roles, int[] remaining, int key,
+                                                double probability, Map<Integer, Double> compositions)
+    {
+        if (index == slots.length)
+        {
+            compositions.merge(key, probability, Double::sum);
+            return probability;
+        }
+
+        var filter = (RoleAlignment)slots[index];
+        int candidates = 0;
+        for (int i = 0; i < roles.length; i++)
+            if (remaining[i] > 0 && roles[i].getFullAlignment().matchesFilter(filter))
+                candidates++;
+
+        double success = 0;
+        for (int i = 0; i < roles.length; i++)
+        {
+            if (remaining[i] == 0 || !roles[i].getFullAlignment().matchesFilter(filter))
+                continue;
+
+            remaining[i]--;
+            success += enumerateCompositions(slots, index + 1, roles, remaining, key + getCompositionKey(roles[i]),
+                    probability / candidates, compositions);
+            remaining[i]++;
+        }
+        return success;
+    }
+
+    private static int getCompositionKey(Role role)
+    {
+        int key = 1 << (role.getFaction().ordinal() - 1) * 4;
+        return role.getAlignment() == Alignment.Killing ? key + (1 << 16) : key;
+    }
+}
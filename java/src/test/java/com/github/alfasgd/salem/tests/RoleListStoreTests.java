@@ -0,0 +1,80 @@
+package com.github.alfasgd.salem.tests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import com.github.alfasgd.salem.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+public class RoleListStoreTests
+{
+    @TempDir
+    Path directory;
+
+    @Test
+    public void appendAndReadTest() throws IOException
+    {
+        var path = directory.resolve("corpus.bin");
+        var template = RoleListFactory.CovenRanked;
+        var random = new Random(0);
+        var lists = new RoleList[10_000];
+        for (int i = 0; i < lists.length; i++)
+            lists[i] = template.generateRandomRoleList(GamePackTypes.Coven, random);
+
+        var slots = new RoleSlot[RoleList.MaximumSlotCount];
+        try (var store = RoleListStore.create(path, GamePackTypes.Coven, template))
+        {
+            // The newest role lists are read back from the write buffer until they are flushed
+            for (int i = 0; i < lists.length / 2; i++)
+            {
+                store.append(lists[i]);
+                Assertions.assertArrayEquals(lists[i].getRoleSlots(), store.get(i).getRoleSlots());
+            }
+
+            Assertions.assertEquals(lists.length / 2, store.size());
+            int count = store.get(7, slots);
+            Assertions.assertArrayEquals(lists[7].getRoleSlots(), Arrays.copyOf(slots, count));
+
+            for (int i = lists.length / 2; i < lists.length; i++)
+                store.append(lists[i].getRoleSlots(), lists[i].size());
+            Assertions.assertArrayEquals(lists[lists.length - 1].getRoleSlots(), store.get(lists.length - 1).getRoleSlots());
+        }
+
+        // A trailing partial record is ignored
+        try (var channel = FileChannel.open(path, StandardOpenOption.WRITE, StandardOpenOption.APPEND))
+        {
+            channel.write(ByteBuffer.allocate(5));
+        }
+
+        try (var store = RoleListStore.open(path))
+        {
+            Assertions.assertEquals(lists.length, store.size());
+            Assertions.assertEquals(GamePackTypes.Coven, store.getPackTypes());
+            Assertions.assertArrayEquals(template.getRoleSlots(), store.getTemplate().getRoleSlots());
+
+            var scanned = new int[1];
+            store.scan(0, store.size(), (index, roles) ->
+            {
+                Assertions.assertArrayEquals(lists[(int)index].getRoleSlots(), roles);
+                scanned[0]++;
+            });
+            Assertions.assertEquals(lists.length, scanned[0]);
+            Assertions.assertThrows(IndexOutOfBoundsException.class, () -> store.get(lists.length));
+        }
+
+        try (var store = RoleListStore.open(path, true))
+        {
+            Assertions.assertTrue(store.isReadOnly());
+            Assertions.assertEquals(lists.length, store.size());
+            Assertions.assertArrayEquals(lists[lists.length - 1].getRoleSlots(), store.get(lists.length - 1).getRoleSlots());
+            Assertions.assertThrows(UnsupportedOperationException.class, () -> store.append(lists[0]));
+        }
+    }
+}
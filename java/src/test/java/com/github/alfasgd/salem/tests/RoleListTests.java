@@ -0,0 +1,247 @@
+package com.github.alfasgd.salem.tests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+import com.github.alfasgd.salem.*;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+public class RoleListTests
+{
+    @Test
+    public void initializeRoleListTest()
+    {
+        var list = RoleListFactory.AllAny;
+
+        // Due to randomization, ensure that the generated role lists cover a lot of cases
+        for (int i = 0; i < 50; i++)
+        {
+            var generatedList = list.generateRandomRoleList(GamePackTypes.Classic);
+            var counters = generatedList.getRoleOccurrences();
+            for (var entry : counters.entrySet())
+                Assertions.assertTrue(entry.getValue() <= RoleInstancePool.getInstance().getInstance(entry.getKey()).getMaximumOccurrences());
+        }
+    }
+
+    @Test
+    public void isValidTest()
+    {
+        var slots = RoleListFactory.AllAny.getRoleSlots();
+        for (int i = 0; i < 2; i++)
+            slots[i] = RoleInstancePool.getInstance().getInstance(Veteran.class);
+
+        var list = new RoleList(slots);
+
+        Assertions.assertFalse(list.isValidRoleList(GamePackTypes.Classic));
+        Assertions.assertFalse(list.isValidRoleList(GamePackTypes.Coven));
+        Assertions.assertFalse(list.isValidRoleList(GamePackTypes.All));
+
+        slots[1] = RoleAlignment.Any;
+
+        list = new RoleList(slots);
+
+        Assertions.assertTrue(list.isValidRoleList(GamePackTypes.Classic));
+        Assertions.assertTrue(list.isValidRoleList(GamePackTypes.Coven));
+        Assertions.assertTrue(list.isValidRoleList(GamePackTypes.All));
+
+        slots[0] = RoleInstancePool.getInstance().getInstance(CovenLeader.class);
+
+        list = new RoleList(slots);
+
+        Assertions.assertFalse(list.isValidRoleList(GamePackTypes.Classic));
+        Assertions.assertTrue(list.isValidRoleList(GamePackTypes.Coven));
+    }
+
+    @Test
+    public void feasibilityTest()
+    {
+        // Godfather, Mafioso and Ambusher are the only Mafia Killing roles, and they are all unique
+        var slots = new RoleSlot[] { RoleAlignment.MafiaKilling, RoleAlignment.MafiaKilling, RoleAlignment.MafiaAny, RoleAlignment.MafiaKilling };
+        Assertions.assertTrue(new RoleList(slots).isValidRoleList(GamePackTypes.Coven));
+
+        slots[2] = RoleAlignment.MafiaKilling;
+        Assertions.assertFalse(new RoleList(slots).isValidRoleList(GamePackTypes.Coven));
+
+        // The Any slot must leave the Mafia Killing roles to the specific slots, which the flow reroutes
+        slots = new RoleSlot[] { RoleAlignment.Any, RoleAlignment.MafiaAny, RoleAlignment.MafiaKilling, RoleAlignment.MafiaKilling, RoleAlignment.MafiaKilling };
+        Assertions.assertTrue(new RoleList(slots).isValidRoleList(GamePackTypes.Coven));
+
+        slots[0] = RoleInstancePool.getInstance().getInstance(Godfather.class);
+        Assertions.assertFalse(new RoleList(slots).isValidRoleList(GamePackTypes.Coven));
+
+        for (var packTypes : GamePackTypes.values())
+            Assertions.assertFalse(RoleListFactory.Rainbow.isValidRoleList(packTypes));
+    }
+
+    @Test
+    public void constrainedGenerationTest()
+    {
+        // The Any slot may take one of the unique Mafia Killing roles that the following slots need
+        var list = new RoleList(new RoleSlot[] { RoleAlignment.Any, RoleAlignment.MafiaKilling, RoleAlignment.MafiaKilling, RoleAlignment.MafiaKilling });
+        Assertions.assertTrue(list.isValidRoleList(GamePackTypes.Coven));
+
+        var generator = new RoleListGenerator(0);
+        var destination = new RoleSlot[4];
+        int unconstrainedFailures = 0;
+        for (int i = 0; i < 10_000; i++)
+        {
+            if (!generator.generate(list, GamePackTypes.Coven, destination))
+                unconstrainedFailures++;
+
+            Assertions.assertTrue(generator.generateConstrained(list, GamePackTypes.Coven, destination));
+            Assertions.assertNotSame(RoleAlignment.MafiaKilling, ((Role)destination[0]).getFullAlignment());
+            assertGeneratedFrom(list, new RoleList(destination));
+        }
+        Assertions.assertTrue(unconstrainedFailures > 0);
+    }
+
+    @Test
+    public void generatorAllocationTest()
+    {
+        var threadBean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threadBean.isThreadAllocatedMemorySupported());
+        threadBean.setThreadAllocatedMemoryEnabled(true);
+
+        var list = RoleListFactory.ClassicRanked;
+        var availableRoles = new RoleCollection(RoleCollection.getAllAvailableRolesCollection().getAllStartableRoleTypes(GamePackTypes.Classic));
+        var generator = new RoleListGenerator(new Random(0));
+        var destination = new RoleSlot[15];
+
+        for (int i = 0; i < 50_000; i++)
+            Assertions.assertTrue(generator.generate(list, availableRoles, destination));
+
+        int count = 10_000;
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < count; i++)
+            generator.generate(list, availableRoles, destination);
+        long after = threadBean.getThreadAllocatedBytes(threadId);
+
+        // The measurement itself may allocate, regardless of the JIT; any allocation per call would be at least an
+        // object header. The exact allocation rate is measured by the benchmarks with -prof gc.
+        Assertions.assertTrue((double)(after - before) / count < 8, "Allocated " + (after - before) + " bytes");
+    }
+
+    @Test
+    public void preparedRoleListTest()
+    {
+        var list = RoleListFactory.CovenRanked;
+        var prepared = list.prepare(GamePackTypes.Coven);
+        Assertions.assertNotNull(prepared);
+
+        // Fixed roles are filled first, and the least constrained slots last
+        Assertions.assertTrue(list.get(prepared.getSlotIndex(0)) instanceof Role);
+        Assertions.assertEquals(RoleAlignment.TownAny, list.get(prepared.getSlotIndex(prepared.getSlotCount() - 1)));
+
+        var generator = new RoleListGenerator(new Random(0));
+        for (int i = 0; i < 1000; i++)
+        {
+            var generatedList = prepared.generateRandomRoleList(generator);
+            Assertions.assertNotNull(generatedList);
+            assertGeneratedFrom(list, generatedList);
+        }
+
+        Assertions.assertNull(RoleListFactory.CovenRanked.prepare(GamePackTypes.Classic));
+    }
+
+    private static void assertGeneratedFrom(RoleList list, RoleList generatedList)
+    {
+        for (int i = 0; i < list.getRoleSlots().length; i++)
+        {
+            var slot = list.get(i);
+            var role = (Role)generatedList.get(i);
+            if (slot instanceof Role)
+                Assertions.assertSame(slot.getClass(), role.getClass());
+            else
+                Assertions.assertTrue(role.getFullAlignment().matchesFilter((RoleAlignment)slot));
+        }
+
+        for (var entry : generatedList.getRoleOccurrences().entrySet())
+            Assertions.assertTrue(entry.getValue() <= RoleInstancePool.getInstance().getInstance(entry.getKey()).getMaximumOccurrences());
+    }
+
+    @Test
+    public void bulkGenerationDeterminismTest()
+    {
+        var prepared = RoleListFactory.ClassicRanked.prepare(GamePackTypes.Classic);
+        var sequential = new RoleList[10_000];
+        var parallel = new RoleList[sequential.length];
+
+        var sequentialPool = new ForkJoinPool(1);
+        var parallelPool = new ForkJoinPool(4);
+        try
+        {
+            BulkRoleListGenerator.generate(sequentialPool, prepared, 42, sequential);
+            BulkRoleListGenerator.generate(parallelPool, prepared, 42, parallel);
+        }
+        finally
+        {
+            sequentialPool.shutdown();
+            parallelPool.shutdown();
+        }
+
+        for (int i = 0; i < sequential.length; i++)
+        {
+            Assertions.assertNotNull(sequential[i]);
+            assertGeneratedFrom(RoleListFactory.ClassicRanked, sequential[i]);
+            Assertions.assertArrayEquals(sequential[i].getRoleSlots(), parallel[i].getRoleSlots());
+        }
+    }
+
+    @Test
+    public void seededGenerationTest()
+    {
+        var list = RoleListFactory.ClassicRanked;
+        for (long seed = 0; seed < 100; seed++)
+        {
+            var first = list.generateRandomRoleList(GamePackTypes.Classic, seed);
+            var second = list.generateRandomRoleList(GamePackTypes.Classic, seed);
+            Assertions.assertArrayEquals(first.getRoleSlots(), second.getRoleSlots());
+        }
+    }
+
+    @Test
+    public void canonicalEqualityTest()
+    {
+        var jailor = RoleInstancePool.getInstance().getInstance(Jailor.class);
+        var first = new RoleList(new RoleSlot[] { jailor, RoleAlignment.TownKilling, RoleAlignment.Any });
+        var reordered = new RoleList(new RoleSlot[] { RoleAlignment.Any, jailor, new RoleAlignment(Faction.Town, Alignment.Killing) });
+        var different = new RoleList(new RoleSlot[] { jailor, RoleAlignment.TownKilling, RoleAlignment.TownAny });
+        var shorter = new RoleList(new RoleSlot[] { jailor, RoleAlignment.TownKilling });
+
+        Assertions.assertEquals(first, reordered);
+        Assertions.assertEquals(first.hashCode(), reordered.hashCode());
+        Assertions.assertNotEquals(first, different);
+        Assertions.assertNotEquals(first, shorter);
+        Assertions.assertNotEquals(RoleListFactory.AllAny, RoleListFactory.ClassicRanked);
+
+        var copy = new RoleList(RoleListFactory.CovenRanked.getRoleSlots());
+        Assertions.assertEquals(RoleListFactory.CovenRanked, copy);
+        Assertions.assertSame(RoleListFactory.CovenRanked.intern(), copy.intern());
+        var interned = reordered.intern();
+        Assertions.assertEquals(first, interned);
+        var table = RoleInstancePool.getInstance().getRoleTypeTable();
+        Assertions.assertSame(jailor, interned.get(0));
+        Assertions.assertTrue(RoleSlotCodes.getCode(interned.get(1), table) < RoleSlotCodes.getCode(interned.get(2), table));
+        Assertions.assertSame(interned, interned.intern());
+
+        // Role lists with unregistered roles are compared slot by slot
+        var unregistered = new CustomRole("Unregistered", RoleAlignment.TownSupport);
+        var withUnregistered = new RoleList(new RoleSlot[] { unregistered, jailor, RoleAlignment.Any });
+        var reorderedUnregistered = new RoleList(new RoleSlot[] { new Jailor(), RoleAlignment.Any, new CustomRole("unregistered", RoleAlignment.TownSupport) });
+        Assertions.assertFalse(withUnregistered.hasCanonicalEncoding());
+        Assertions.assertEquals(withUnregistered, reorderedUnregistered);
+        Assertions.assertEquals(withUnregistered.hashCode(), reorderedUnregistered.hashCode());
+        Assertions.assertNotEquals(withUnregistered, first);
+        Assertions.assertNotEquals(first, withUnregistered);
+        Assertions.assertThrows(IllegalArgumentException.class, withUnregistered::intern);
+
+        var view = first.getRoleSlotView();
+        Assertions.assertEquals(3, view.size());
+        Assertions.assertSame(jailor, view.get(0));
+        Assertions.assertThrows(UnsupportedOperationException.class, () -> view.set(0, RoleAlignment.Any));
+    }
+}
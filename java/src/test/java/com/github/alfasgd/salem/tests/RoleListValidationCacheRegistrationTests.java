@@ -0,0 +1,35 @@
+package com.github.alfasgd.salem.tests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import com.github.alfasgd.salem.*;
+
+public class RoleListValidationCacheRegistrationTests
+{
+    @Test
+    public void registrationInvalidationTest()
+    {
+        // Godfather, Mafioso and Ambusher are the only Mafia Killing roles, and they are all unique
+        var list = new RoleList(new RoleSlot[] { RoleAlignment.MafiaKilling, RoleAlignment.MafiaKilling, RoleAlignment.MafiaKilling, RoleAlignment.MafiaKilling });
+        var availableRoles = new RoleCollection(RoleCollection.getStartableRolesCollection(GamePackTypes.Classic));
+        var cache = new RoleListValidationCache(16);
+
+        Assertions.assertFalse(list.isValidRoleList(GamePackTypes.Classic));
+        Assertions.assertFalse(cache.isValid(list, availableRoles));
+        Assertions.assertFalse(cache.isValid(list, availableRoles));
+        Assertions.assertEquals(1, cache.getMissCount());
+        Assertions.assertEquals(1, cache.getHitCount());
+
+        Assertions.assertTrue(RoleInstancePool.getInstance().register(new CustomRole("Enforcer", RoleAlignment.MafiaKilling)));
+
+        // The shared cache answers for the new registry, whose Classic roles include the new one
+        Assertions.assertTrue(list.isValidRoleList(GamePackTypes.Classic));
+        Assertions.assertTrue(RoleListValidationCache.getSharedCache().isValid(list, GamePackTypes.Classic));
+
+        // The results of the previous registry are discarded, even for the same available roles
+        Assertions.assertFalse(cache.isValid(list, availableRoles));
+        Assertions.assertEquals(2, cache.getMissCount());
+        Assertions.assertEquals(1, cache.getHitCount());
+        Assertions.assertTrue(cache.isValid(list, GamePackTypes.Classic));
+    }
+}
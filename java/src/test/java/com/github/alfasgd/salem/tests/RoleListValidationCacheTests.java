@@ -0,0 +1,34 @@
+package com.github.alfasgd.salem.tests;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import com.github.alfasgd.salem.*;
+
+public class RoleListValidationCacheTests
+{
+    @Test
+    public void validationCacheTest()
+    {
+        var cache = new RoleListValidationCache(2);
+        var jailor = RoleInstancePool.getInstance().getInstance(Jailor.class);
+        var valid = new RoleList(new RoleSlot[] { jailor, RoleAlignment.TownKilling, RoleAlignment.Any });
+        var reordered = new RoleList(new RoleSlot[] { RoleAlignment.Any, RoleAlignment.TownKilling, jailor });
+        var invalid = new RoleList(new RoleSlot[] { jailor, jailor });
+
+        Assertions.assertTrue(cache.isValid(valid, GamePackTypes.Classic));
+        Assertions.assertTrue(cache.isValid(reordered, GamePackTypes.Classic));
+        Assertions.assertFalse(cache.isValid(invalid, GamePackTypes.Classic));
+        Assertions.assertFalse(cache.isValid(invalid, GamePackTypes.Classic));
+        Assertions.assertEquals(2, cache.getMissCount());
+        Assertions.assertEquals(2, cache.getHitCount());
+
+        // The results of different available roles are kept apart
+        Assertions.assertFalse(cache.isValid(valid, new RoleCollection()));
+        Assertions.assertTrue(cache.isValid(valid, GamePackTypes.Classic));
+
+        cache.clear();
+        Assertions.assertTrue(cache.isValid(valid, GamePackTypes.Classic));
+        Assertions.assertEquals(7, cache.getHitCount() + cache.getMissCount());
+        Assertions.assertTrue(cache.getMissCount() >= 4);
+    }
+}
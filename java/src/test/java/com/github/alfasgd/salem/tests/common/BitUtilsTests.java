@@ -0,0 +1,36 @@
+package com.github.alfasgd.salem.tests.common;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import com.github.alfasgd.salem.common.BitUtils;
+
+import java.util.Random;
+
+public class BitUtilsTests
+{
+    @Test
+    public void selectBitTest()
+    {
+        Assertions.assertEquals(0, BitUtils.selectBit(1, 0));
+        Assertions.assertEquals(63, BitUtils.selectBit(Long.MIN_VALUE, 0));
+        Assertions.assertEquals(40, BitUtils.selectBit(0b101L | (1L << 40), 2));
+
+        // Too few set bits
+        Assertions.assertEquals(64, BitUtils.selectBit(0, 0));
+        Assertions.assertEquals(64, BitUtils.selectBit(0b101L | (1L << 40), 3));
+        Assertions.assertEquals(64, BitUtils.selectBit(-1L, 64));
+        Assertions.assertEquals(64, BitUtils.selectBit(1L << 7, 1));
+
+        var random = new Random(0);
+        for (int i = 0; i < 1000; i++)
+        {
+            long mask = random.nextLong();
+            long remaining = mask;
+            for (int rank = 0; remaining != 0; rank++)
+            {
+                Assertions.assertEquals(Long.numberOfTrailingZeros(remaining), BitUtils.selectBit(mask, rank));
+                remaining &= remaining - 1;
+            }
+        }
+    }
+}